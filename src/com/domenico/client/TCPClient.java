@@ -1,5 +1,6 @@
 package com.domenico.client;
 
+import com.domenico.communication.Codec;
 import com.domenico.communication.ConnectionData;
 import com.domenico.communication.TCPConnection;
 import org.json.simple.JSONArray;
@@ -96,10 +97,14 @@ public class TCPClient {
      * @throws TimeoutException if the server doesn't reply to the request
      */
     public String login(String username, String password, int udpPort) throws TimeoutException {
-        ConnectionData request = ConnectionData.Factory.newLoginRequest(username, password, udpPort);
+        //asks to use the binary codec after the login. The server writes the codec's name if it supports it
+        ConnectionData request = ConnectionData.Factory.newLoginRequest(username, password, udpPort, Codec.BINARY.getName());
         tcpMultiplexer.sendToServer(request);
         ConnectionData response = waitResponseFromServer();
         if (ConnectionData.Validator.isSuccessResponse(response)) {
+            Codec codec = Codec.forName(response.getResponseData());
+            if (codec != null)
+                tcpMultiplexer.setCodec(codec);
             return "";
         } else if (ConnectionData.Validator.isFailResponse(response))
             return response.getResponseData();
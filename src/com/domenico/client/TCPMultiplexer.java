@@ -1,14 +1,16 @@
 package com.domenico.client;
 
+import com.domenico.communication.Codec;
 import com.domenico.communication.ConnectionData;
+import com.domenico.communication.FrameDecoder;
 import com.domenico.communication.TCPConnection;
 import com.domenico.shared.Multiplexer;
 
 import java.io.IOException;
-import java.nio.channels.ClosedChannelException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.Consumer;
 
 /** This class extends the {@link Multiplexer} class and it handles all the TCP communications from and to the
@@ -20,11 +22,12 @@ public class TCPMultiplexer extends Multiplexer implements Runnable {
 
     //Utility object that wraps all the work that should be done to send or receive a ConnectionData object
     private final TCPConnection tcpConnection;
+    //accumulates the bytes received from the server until a whole message has arrived
+    private final FrameDecoder frameDecoder = new FrameDecoder();
+    //messages completely received by the last read. Reused on each read
+    private final List<ConnectionData> received = new ArrayList<>();
     //handler method that is called when a message from the server arrives
     private final Consumer<ConnectionData> handler;
-    private final Object mutex = new Object();  //mutex to protect the queue
-    //queue with all the messages that should be sent to the server via TCP
-    private final LinkedList<ConnectionData> sendQueue = new LinkedList<>();
 
     public TCPMultiplexer(SocketChannel channel, Consumer<ConnectionData> handler) throws IOException {
         super(channel, SelectionKey.OP_READ);
@@ -32,12 +35,21 @@ public class TCPMultiplexer extends Multiplexer implements Runnable {
         this.handler = handler;
     }
 
-    /** Sends the given message to the server */
+    /** Sends the given message to the server. The message is queued and sent by this thread */
     public void sendToServer(ConnectionData connectionData) {
-        synchronized (mutex) {
-            sendQueue.push(connectionData);
-            wakeUp();
-        }
+        execute(() -> {
+            try {
+                tcpConnection.enqueueData(connectionData);
+                flush(channel.keyFor(selector));
+            } catch (IOException e) {
+                this.stopProcessing();
+            }
+        });
+    }
+
+    /** Sets the codec used to encode the messages sent to the server from now on */
+    public void setCodec(Codec codec) {
+        tcpConnection.setCodec(codec);
     }
 
     @Override
@@ -45,39 +57,29 @@ public class TCPMultiplexer extends Multiplexer implements Runnable {
 
     @Override
     protected void onReadable(SelectionKey key) throws IOException {
-        ConnectionData received = tcpConnection.receiveData();
-        handler.accept(received);
+        //a read can contain part of a message as well as more than one message
+        frameDecoder.readFrames(tcpConnection, received);
+        for (ConnectionData data : received) {
+            handler.accept(data);
+        }
+        received.clear();
     }
 
     @Override
     protected void onWritable(SelectionKey key) throws IOException {
-        ConnectionData data = null;
-        synchronized (mutex) {
-            if (!sendQueue.isEmpty()) {
-                data = sendQueue.pop(); //get the next message that should be sent
-            }
-        }
+        flush(key);
+    }
 
-        if (data != null) {
-            tcpConnection.sendData(data);   //send the data
-            key.interestOps(SelectionKey.OP_READ);  //put the interest on reading the response
-        }
+    /** Sends the queued messages without blocking */
+    private void flush(SelectionKey key) throws IOException {
+        boolean sent = tcpConnection.flush();   //send the data
+        //put the interest on reading the response, and on writing as long as some bytes are pending
+        key.interestOps(sent ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
     }
 
     @Override
     protected void onEndConnection(SelectionKey key) throws IOException { this.stopProcessing(); }
 
-    @Override
-    protected void onWakeUp() {
-        synchronized (mutex) {
-            try {
-                if (!sendQueue.isEmpty()) {
-                    channel.register(selector, SelectionKey.OP_WRITE);
-                }
-            } catch (ClosedChannelException e) { this.stopProcessing(); }
-        }
-    }
-
     @Override
     protected void onTimeout() throws IOException { }    //never invoked
 
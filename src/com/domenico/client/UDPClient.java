@@ -11,6 +11,7 @@ import java.nio.channels.ClosedChannelException;
 import java.nio.channels.DatagramChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
+import java.util.ArrayDeque;
 
 /**
  * This class extends the {@link Multiplexer} class and it handles all the UDP communications from and to the
@@ -26,14 +27,21 @@ import java.nio.channels.Selector;
  * One remote but still probable case is that a client accepts or declines a challenge while the server sends that
  * the challenge is timedout. On that case, the timeout event is more important and the user is notified that the
  * challenge has timedout without sending to the server that the user has accepted or declined the challenge.
+ * Each challenge request is acknowledged as soon as it arrives, so that the server stops sending it again. The
+ * requests sent again by the server are acknowledged as well, but the challenge handler is notified just once.
  */
 public class UDPClient extends Multiplexer implements Runnable {
 
+    //How many challenge ids of the last challenge requests are remembered, in order to ignore their retransmits
+    private static final int REMEMBERED_REQUESTS = 32;
+
     private final UDPConnection udpConnection;  //used to send and receive messages via DatagramChannel
     private final WQClient wqClient;
     private final int udpPort;  //port used to receive UDP data
     private boolean challengeTimeout = false;   //true if a challenge timeout has arrived, false otherwise
     private boolean challengeAccepted = false;  //true if the user has accepted the challenge, false otherwise
+    private long challengeId = -1;  //the challenge id of the last challenge request, sent back with the response
+    private final ArrayDeque<Long> receivedRequests = new ArrayDeque<>();  //challenge ids of the last requests received
 
     /**
      * Sets up the UDPClient.
@@ -63,8 +71,8 @@ public class UDPClient extends Multiplexer implements Runnable {
     }
 
     /**
-     * Sends to the server if the challenge has been accepted or declined by the client. Then it comes back to read
-     * from the channel.
+     * Sends to the server if the challenge has been accepted or declined by the client, together with the challenge
+     * id of the request. Then it comes back to read from the channel.
      *
      * @param key the selection key relative to that channel on which the write() method will not block the thread
      * @throws IOException when I/O error occurs
@@ -72,10 +80,7 @@ public class UDPClient extends Multiplexer implements Runnable {
     @Override
     protected void onWritable(SelectionKey key) throws IOException {
         //sends if the challenge has been accepted or declined
-        if (challengeAccepted)
-            udpConnection.sendData(ConnectionData.Factory.newSuccessResponse());
-        else
-            udpConnection.sendData(ConnectionData.Factory.newFailResponse());
+        udpConnection.sendData(ConnectionData.Factory.newChallengeResponse(challengeId, challengeAccepted));
 
         //comes back to read from the channel
         channel.register(selector, SelectionKey.OP_READ);
@@ -86,8 +91,11 @@ public class UDPClient extends Multiplexer implements Runnable {
         ConnectionData data = udpConnection.receiveData();
 
         if (ConnectionData.Validator.isChallengeRequest(data)) {
-            challengeTimeout = false;
-            wqClient.onChallengeArrived(data.getUsername());
+            if (isNewRequest(data.getChallengeId())) {
+                challengeTimeout = false;
+                challengeId = data.getChallengeId();
+                wqClient.onChallengeArrived(data.getUsername());
+            }
         } else if (ConnectionData.Validator.isFailResponse(data)) {
             challengeTimeout = true;
             wqClient.onChallengeRequestTimeout();
@@ -96,30 +104,42 @@ public class UDPClient extends Multiplexer implements Runnable {
     }
 
     /**
-     * Called when the challenge has been accepted or declined by the client. It wakes up the thread if it is waiting
-     * by the effects of a {@link Selector#select()} call. On wake up, the thread will first do reading operations and
-     * then it is possible to receive a challenge timeout before sending that the challenge has been accepted or declined.
+     * Acknowledges the challenge request with the given challenge id and tells if it is arrived for the first time.
+     * The request is always acknowledged, because the previous ack could have been lost.
      *
-     * @param accepted true is the user has accepted, false otherwise
+     * @param challengeId the challenge id of the challenge request or -1 if the server doesn't need an ack
+     * @return true if the request has not been received before, false if it has been sent again by the server
+     * @throws IOException when I/O error occurs
      */
-    public void onChallengeResponse(Boolean accepted) {
-        this.challengeAccepted = accepted;
-        wakeUp();
+    private boolean isNewRequest(long challengeId) throws IOException {
+        if (challengeId < 0)
+            return true;
+        udpConnection.sendData(ConnectionData.Factory.newChallengeAck(challengeId));
+        if (receivedRequests.contains(challengeId))
+            return false;
+        if (receivedRequests.size() == REMEMBERED_REQUESTS)
+            receivedRequests.removeFirst();
+        receivedRequests.addLast(challengeId);
+        return true;
     }
 
     /**
-     * Called if the thread has been woke up. When the client accepts or decline a challenge, the method
-     * {@link #onChallengeResponse(Boolean)} is called and it will wake up the thread. On wake up, this method is called
-     * after handling some readable and writable keys, so it is possible that a challenge timeout has arrived. In that
-     * case the challenge response is not sent.
+     * Called when the challenge has been accepted or declined by the client. It hands the response over to this thread,
+     * waking it up if it is waiting by the effects of a {@link Selector#select()} call. The response is handled after
+     * the readable and writable keys, so it is possible that a challenge timeout has arrived before. In that case the
+     * challenge response is not sent.
+     *
+     * @param accepted true is the user has accepted, false otherwise
      */
-    @Override
-    protected void onWakeUp() {
-        try {
-            if (!challengeTimeout) {
-                channel.register(selector, SelectionKey.OP_WRITE);
-            }
-        } catch (ClosedChannelException ignored) {}
+    public void onChallengeResponse(Boolean accepted) {
+        execute(() -> {
+            this.challengeAccepted = accepted;
+            try {
+                if (!challengeTimeout) {
+                    channel.register(selector, SelectionKey.OP_WRITE);
+                }
+            } catch (ClosedChannelException ignored) {}
+        });
     }
 
     @Override
@@ -0,0 +1,255 @@
+package com.domenico.communication;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compact codec that represents a ConnectionData object with a one byte opcode, which is the ordinal of the command,
+ * followed by the command's fields. A string is written as its UTF-8 length, as a varint, followed by its UTF-8 bytes.
+ * The numbers of the challenge start and end messages are written as zigzag varints instead of strings.
+ * The data that cannot be represented by this codec is encoded with the text codec, which can be recognized by the
+ * receiver because it never starts with a control character.
+ */
+class BinaryCodec implements Codec {
+
+    private static final ConnectionData.CMD[] COMMANDS = ConnectionData.CMD.values();
+    private static final int FIRST_TEXT_BYTE = 0x20;
+    private static final String INVALID_COMMAND = "Invalid command";
+
+    /** Returns true if a frame that starts with the given byte has been encoded by this codec */
+    static boolean isBinary(byte first) {
+        return (first & 0xff) < FIRST_TEXT_BYTE;
+    }
+
+    @Override
+    public String getName() {
+        return "binary";
+    }
+
+    @Override
+    public boolean encodeInto(ConnectionData data, ByteBuffer buffer) {
+        int start = buffer.position();
+        try {
+            if (writeBinary(data, buffer))
+                return true;
+            buffer.position(start);
+            return TEXT.encodeInto(data, buffer);
+        } catch (BufferOverflowException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Writes the given data into the given buffer with this codec
+     * @return true if the data has been written, false if it cannot be represented by this codec
+     * @throws BufferOverflowException if the buffer has no room for the data
+     */
+    private static boolean writeBinary(ConnectionData data, ByteBuffer buffer) {
+        ConnectionData.CMD cmd = data.getCmd();
+        buffer.put((byte) cmd.ordinal());
+        switch (cmd) {
+            case LOGIN_REQUEST:
+                int udpPort;
+                try {
+                    udpPort = Integer.parseUnsignedInt(data.getResponseData());
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+                writeString(buffer, data.getUsername());
+                writeString(buffer, data.getPassword());
+                writeVarint(buffer, udpPort);
+                writeString(buffer, data.getCodecName());
+                break;
+            case LOGOUT_REQUEST:
+            case FRIEND_LIST_REQUEST:
+            case SCORE_REQUEST:
+            case LEADERBOARD_REQUEST:
+                writeString(buffer, data.getUsername());
+                break;
+            case CHALLENGE_REQUEST:
+                if (data.getChallengeId() >= 0)    //only sent via UDP, which always uses the text codec
+                    return false;
+                writeString(buffer, data.getUsername());
+                writeString(buffer, data.getFriendUsername());
+                break;
+            case ADD_FRIEND_REQUEST:
+                writeString(buffer, data.getUsername());
+                writeString(buffer, data.getFriendUsername());
+                break;
+            case CHALLENGE_START:
+                long[] settings = data.getNumbers();
+                String[] splitted = data.splitResponseData();
+                if (settings == null || splitted.length != 3)
+                    return false;
+                writeSignedVarint(buffer, settings[0]);
+                writeSignedVarint(buffer, settings[1]);
+                writeString(buffer, splitted[2]);
+                break;
+            case CHALLENGE_END:
+                long[] stats = data.getNumbers();
+                if (stats == null)
+                    return false;
+                for (long stat : stats) {
+                    writeSignedVarint(buffer, stat);
+                }
+                break;
+            case CHALLENGE_WORD:
+                writeString(buffer, data.getResponseData());
+                break;
+            case SUCCESS_RESPONSE:
+            case FAIL_RESPONSE:
+                if (data.getResponseData() != null)
+                    writeString(buffer, data.getResponseData());
+                break;
+            default:
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public ConnectionData decode(ByteBuffer frame) {
+        if (!frame.hasRemaining())
+            return ConnectionData.Factory.newFailResponse(INVALID_COMMAND);
+        int opcode = frame.get() & 0xff;
+        if (opcode >= COMMANDS.length)
+            return ConnectionData.Factory.newFailResponse(INVALID_COMMAND);
+
+        String username, friendUsername, data;
+        switch (COMMANDS[opcode]) {
+            case LOGIN_REQUEST:
+                username = readString(frame);
+                String password = readString(frame);
+                long udpPort = readVarint(frame);
+                String codecName = readString(frame);
+                if (username != null && password != null && udpPort >= 0 && udpPort <= 0xFFFF && codecName != null)
+                    return ConnectionData.Factory.newLoginRequest(username, password, (int) udpPort,
+                            codecName.isEmpty() ? null : codecName);
+                break;
+            case LOGOUT_REQUEST:
+                if ((username = readString(frame)) != null)
+                    return ConnectionData.Factory.newLogoutRequest(username);
+                break;
+            case FRIEND_LIST_REQUEST:
+                if ((username = readString(frame)) != null)
+                    return ConnectionData.Factory.newFriendListRequest(username);
+                break;
+            case SCORE_REQUEST:
+                if ((username = readString(frame)) != null)
+                    return ConnectionData.Factory.newScoreRequest(username);
+                break;
+            case LEADERBOARD_REQUEST:
+                if ((username = readString(frame)) != null)
+                    return ConnectionData.Factory.newLeaderboardRequest(username);
+                break;
+            case ADD_FRIEND_REQUEST:
+                username = readString(frame);
+                friendUsername = readString(frame);
+                if (username != null && friendUsername != null)
+                    return ConnectionData.Factory.newAddFriendRequest(username, friendUsername);
+                break;
+            case CHALLENGE_REQUEST:
+                username = readString(frame);
+                friendUsername = readString(frame);
+                if (username != null && friendUsername != null)
+                    return ConnectionData.Factory.newChallengeRequest(username, friendUsername);
+                break;
+            case CHALLENGE_START:
+                long maxChallengeLength = readVarint(frame);
+                long challengeWords = readVarint(frame);
+                String nextItWord = readString(frame);
+                if (maxChallengeLength >= 0 && challengeWords >= 0 && nextItWord != null)
+                    return ConnectionData.Factory.newChallengeStart(zigzag(maxChallengeLength), (int) zigzag(challengeWords), nextItWord);
+                break;
+            case CHALLENGE_END:
+                int[] stats = new int[6];
+                boolean valid = true;
+                for (int i = 0; i < stats.length; i++) {
+                    long stat = readVarint(frame);
+                    valid &= stat >= 0;
+                    stats[i] = (int) zigzag(stat);
+                }
+                if (valid)
+                    return ConnectionData.Factory.newChallengeEnd(stats[0], stats[1], stats[2], stats[3], stats[4], stats[5]);
+                break;
+            case CHALLENGE_WORD:
+                if ((data = readString(frame)) != null)
+                    return ConnectionData.Factory.newChallengeWord(data);
+                break;
+            case SUCCESS_RESPONSE:
+                if (!frame.hasRemaining())
+                    return ConnectionData.Factory.newSuccessResponse();
+                if ((data = readString(frame)) != null)
+                    return ConnectionData.Factory.newSuccessResponse(data);
+                break;
+            case FAIL_RESPONSE:
+                if (!frame.hasRemaining())
+                    return ConnectionData.Factory.newFailResponse();
+                if ((data = readString(frame)) != null)
+                    return ConnectionData.Factory.newFailResponse(data);
+                break;
+        }
+        return ConnectionData.Factory.newFailResponse(INVALID_COMMAND);
+    }
+
+    /** Reads an unsigned varint. Returns -1 if the frame ends before the varint or if the varint is too long */
+    private static long readVarint(ByteBuffer frame) {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE - 1; shift += 7) {
+            if (!frame.hasRemaining())
+                return -1;
+            byte b = frame.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        return -1;
+    }
+
+    /** Decodes a signed number from the unsigned varint read from a zigzag varint */
+    private static long zigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /** Reads a string. Returns null if the frame ends before the string */
+    private static String readString(ByteBuffer frame) {
+        long length = readVarint(frame);
+        if (length < 0 || length > frame.remaining())
+            return null;
+        int len = (int) length;
+        String string;
+        if (frame.hasArray()) {
+            string = new String(frame.array(), frame.arrayOffset() + frame.position(), len, StandardCharsets.UTF_8);
+        } else {
+            byte[] bytes = new byte[len];
+            frame.duplicate().get(bytes);
+            string = new String(bytes, StandardCharsets.UTF_8);
+        }
+        frame.position(frame.position() + len);
+        return string;
+    }
+
+    private static void writeVarint(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static void writeSignedVarint(ByteBuffer buffer, long value) {
+        writeVarint(buffer, (value << 1) ^ (value >> 63));
+    }
+
+    /** Writes the given string, without encoding it into a temporary array. A null string is written as an empty
+     * string */
+    private static void writeString(ByteBuffer buffer, String string) {
+        if (string == null) {
+            writeVarint(buffer, 0);
+            return;
+        }
+        writeVarint(buffer, TextCodec.utf8Length(string));
+        TextCodec.putUtf8(buffer, string);
+    }
+}
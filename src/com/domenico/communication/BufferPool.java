@@ -0,0 +1,130 @@
+package com.domenico.communication;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pool of direct buffers used by the connections to send and receive the frames, so that a buffer is not allocated for
+ * each message and the channels don't copy the data into a temporary direct buffer. The buffers are grouped by size
+ * class: each class contains the buffers whose capacity is a power of two between {@link #MIN_SIZE} and
+ * {@link #MAX_SIZE}. A bigger buffer is allocated on the heap and it is never pooled. The pool is thread safe and it
+ * counts how many requests have been satisfied by a pooled buffer, so that the amount of buffers kept can be tuned.
+ */
+public class BufferPool {
+
+    public static final int MIN_SIZE = 256;
+    public static final int MAX_SIZE = 64 * 1024;
+    //How many buffers are kept by each size class by default. The others are left to the garbage collector
+    public static final int DEFAULT_BUFFERS_PER_CLASS = 128;
+
+    private static final int MIN_SHIFT = Integer.numberOfTrailingZeros(MIN_SIZE);
+    private static final int CLASSES = Integer.numberOfTrailingZeros(MAX_SIZE) - MIN_SHIFT + 1;
+    private static BufferPool instance = null;
+
+    private final ConcurrentLinkedQueue<ByteBuffer>[] pooled;   //The free buffers of each size class
+    private final AtomicInteger[] pooledCount;  //How many free buffers each size class has
+    private final int buffersPerClass;
+    private final LongAdder hits = new LongAdder();         //Requests satisfied by a pooled buffer
+    private final LongAdder misses = new LongAdder();       //Requests that needed a new direct buffer
+    private final LongAdder oversized = new LongAdder();    //Requests bigger than the biggest size class
+    private final LongAdder dropped = new LongAdder();      //Released buffers not kept because their class was full
+
+    /** Returns the pool shared by all the connections of this process */
+    public static synchronized BufferPool getInstance() {
+        if (instance == null)
+            instance = new BufferPool(DEFAULT_BUFFERS_PER_CLASS);
+        return instance;
+    }
+
+    /**
+     * Creates a pool that keeps at most the given amount of free buffers for each size class.
+     * @param buffersPerClass how many free buffers each size class can keep
+     */
+    @SuppressWarnings("unchecked")
+    public BufferPool(int buffersPerClass) {
+        this.buffersPerClass = buffersPerClass;
+        this.pooled = (ConcurrentLinkedQueue<ByteBuffer>[]) new ConcurrentLinkedQueue<?>[CLASSES];
+        this.pooledCount = new AtomicInteger[CLASSES];
+        for (int i = 0; i < CLASSES; i++) {
+            pooled[i] = new ConcurrentLinkedQueue<>();
+            pooledCount[i] = new AtomicInteger(0);
+        }
+    }
+
+    /**
+     * Returns a cleared buffer whose capacity is at least the given size. The buffer should be given back with
+     * {@link #release(ByteBuffer)} when it is not used anymore.
+     * @param size the minimum capacity of the buffer
+     * @return a cleared buffer, direct if the size is not bigger than {@link #MAX_SIZE}
+     */
+    public ByteBuffer acquire(int size) {
+        if (size > MAX_SIZE) {
+            oversized.increment();
+            return ByteBuffer.allocate(size);
+        }
+        int index = classIndex(size);
+        ByteBuffer buffer = pooled[index].poll();
+        if (buffer == null) {
+            misses.increment();
+            return ByteBuffer.allocateDirect(MIN_SIZE << index);
+        }
+        pooledCount[index].decrementAndGet();
+        hits.increment();
+        return buffer;
+    }
+
+    /**
+     * Gives back a buffer returned by {@link #acquire(int)}. The buffer must not be used after calling this method.
+     * The buffers that don't belong to a size class are ignored.
+     * @param buffer the buffer that is not used anymore
+     */
+    public void release(ByteBuffer buffer) {
+        int capacity = buffer.capacity();
+        if (!buffer.isDirect() || capacity < MIN_SIZE || capacity > MAX_SIZE || Integer.bitCount(capacity) != 1)
+            return;
+        int index = classIndex(capacity);
+        if (pooledCount[index].incrementAndGet() > buffersPerClass) {
+            pooledCount[index].decrementAndGet();
+            dropped.increment();
+            return;
+        }
+        buffer.clear();
+        pooled[index].offer(buffer);
+    }
+
+    /** Returns the index of the smallest size class that contains the buffers of the given size */
+    private static int classIndex(int size) {
+        if (size <= MIN_SIZE)
+            return 0;
+        return Integer.SIZE - Integer.numberOfLeadingZeros(size - 1) - MIN_SHIFT;
+    }
+
+    /** Returns how many requests have been satisfied by a pooled buffer */
+    public long getHits() { return hits.sum(); }
+
+    /** Returns how many requests have allocated a new direct buffer */
+    public long getMisses() { return misses.sum(); }
+
+    /** Returns how many requests were bigger than the biggest size class */
+    public long getOversized() { return oversized.sum(); }
+
+    /** Returns how many released buffers have been dropped because their size class was full */
+    public long getDropped() { return dropped.sum(); }
+
+    /** Returns how many free buffers are kept by the pool */
+    public int getPooled() {
+        int count = 0;
+        for (AtomicInteger classCount : pooledCount) {
+            count += classCount.get();
+        }
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("BufferPool{hits=%d, misses=%d, oversized=%d, dropped=%d, pooled=%d}",
+                getHits(), getMisses(), getOversized(), getDropped(), getPooled());
+    }
+}
@@ -0,0 +1,75 @@
+package com.domenico.communication;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Interface of the codecs that transform a {@link ConnectionData} object into the bytes sent through the network and
+ * vice versa. A codec works on the frame's data only, the data's length is handled by the {@link Connection}.
+ * The text codec is the one used by default and it is the one understood by every client. The binary codec is more
+ * compact and it is used by a TCP connection after it has been negotiated by the login request. The first byte of a
+ * binary frame is always a control character, so the codec of a received frame is recognized by looking at it.
+ */
+public interface Codec {
+
+    Codec TEXT = new TextCodec();
+    Codec BINARY = new BinaryCodec();
+
+    /** Returns the name of this codec, as written in the login request */
+    String getName();
+
+    /**
+     * Encodes the given data into the given buffer, from its position, without allocating any temporary array. So a
+     * connection encodes each frame straight into a pooled buffer, after the data's length.
+     * @param data the data that should be encoded
+     * @param buffer where the data is written
+     * @return true if the data has been written and the position is after it, false if the buffer has no room for the
+     * whole data. Then the content of the buffer after its first position is undefined
+     */
+    boolean encodeInto(ConnectionData data, ByteBuffer buffer);
+
+    /**
+     * Encodes the given data into a new heap buffer.
+     * @param data the data that should be encoded
+     * @return a buffer, ready to be read, that contains the encoded data
+     */
+    default ByteBuffer encode(ConnectionData data) {
+        for (int size = 64; ; size *= 2) {
+            ByteBuffer buffer = ByteBuffer.allocate(size);
+            if (encodeInto(data, buffer))
+                return buffer.flip();
+        }
+    }
+
+    /**
+     * Decodes the data contained between the position and the limit of the given buffer. The position of the buffer
+     * can be changed by this method.
+     * @param frame the buffer that contains the encoded data
+     * @return the ConnectionData object decoded or a fail response if the data doesn't represent a valid object
+     */
+    ConnectionData decode(ByteBuffer frame);
+
+    /**
+     * Returns the codec that has the given name or null if there isn't such a codec.
+     * @param name the codec's name, it can be null
+     * @return the codec with the given name or null
+     */
+    static Codec forName(String name) {
+        if (TEXT.getName().equals(name))
+            return TEXT;
+        if (BINARY.getName().equals(name))
+            return BINARY;
+        return null;
+    }
+
+    /**
+     * Decodes the data contained between the position and the limit of the given buffer with the codec that has
+     * encoded it.
+     * @param frame the buffer that contains the encoded data
+     * @return the ConnectionData object decoded or a fail response if the data doesn't represent a valid object
+     */
+    static ConnectionData decodeFrame(ByteBuffer frame) {
+        if (frame.hasRemaining() && BinaryCodec.isBinary(frame.get(frame.position())))
+            return BINARY.decode(frame);
+        return TEXT.decode(frame);
+    }
+}
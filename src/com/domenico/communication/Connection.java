@@ -2,59 +2,114 @@ package com.domenico.communication;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.charset.StandardCharsets;
 
 /**
  * Abstract class that represents a connection between a client and a server or in general between two endpoints.
  * It implements the protocol used by the two parts to communicate. The protocol is the following: first thing sent is
- * the data's length and then the data itself. This class uses ConnectionData objects to represent the data
- * that should be sent or which is received.
+ * the data's length and then the data itself, encoded by a {@link Codec}. This class uses ConnectionData objects to
+ * represent the data that should be sent or which is received.
  * A subclass of this class should implement the write(), read() and endConnection() method. That methods are dependent
  * of the network protocol used (TCP or UDP for example).
  */
 public abstract class Connection {
 
+    //The biggest datagram that can be received by receiveData()
+    static final int MAX_DATAGRAM_SIZE = 64 * 1024;
+    private static final String INVALID_FRAME = "Invalid frame";
+
+    //The pool from which the buffers used to send and receive the frames are taken
+    protected final BufferPool pool;
+
+    //The codec used to encode the data sent. The data received is decoded by the codec that has encoded it
+    private volatile Codec codec = Codec.TEXT;
+
+    /** Creates a connection that uses the buffers of the shared {@link BufferPool} */
+    protected Connection() {
+        this.pool = BufferPool.getInstance();
+    }
+
+    /** Returns the codec used to encode the data sent */
+    public Codec getCodec() {
+        return codec;
+    }
+
+    /** Sets the codec used to encode the data sent from now on */
+    public void setCodec(Codec codec) {
+        this.codec = codec;
+    }
+
     /**
-     * Sends the data given as argument.
+     * Sends the data given as argument. The data's length and the data itself are written with a single write, so a
+     * datagram connection sends the whole frame in one datagram.
      * @param connectionData the data that should be sent
      * @throws IOException if an I/O error occurs
      */
     public void sendData(ConnectionData connectionData) throws IOException {
-        String line = connectionData.toString();
-        byte[] data = line.getBytes(StandardCharsets.UTF_8);
-
-        ByteBuffer lenBuf = ByteBuffer.allocate(Integer.BYTES);
-        lenBuf.putInt(data.length);
-        lenBuf.flip();
-        write(lenBuf);
-
-        write(ByteBuffer.wrap(data));
+        ByteBuffer frame = encode(connectionData);
+        try {
+            write(frame);
+        } finally {
+            pool.release(frame);
+        }
     }
 
     /**
-     * Reads and then it returns the received data
-     * @return a ConnectionData object that represents the data received. It can be a request or a response.
-     * @throws IOException if an I/O error occurs
+     * Encodes the given data into a single pooled buffer that contains the data's length followed by the data itself.
+     * The buffer should be given back to the pool when it has been sent.
+     * @param connectionData the data that should be encoded
+     * @return a buffer, ready to be read, that contains the whole frame
      */
-    public ConnectionData receiveData() throws IOException {
-        ByteBuffer lenBuffer = receiveByLength(Integer.BYTES);
-        ByteBuffer dataBuffer = receiveByLength(lenBuffer.getInt());
+    ByteBuffer encode(ConnectionData connectionData) {
+        Codec codec = this.codec;
+        //most frames fit into the smallest buffers, the others are encoded again into a buffer twice as big
+        for (int size = BufferPool.MIN_SIZE; ; size *= 2) {
+            ByteBuffer frame = pool.acquire(size);
+            if (encodeFrame(codec, connectionData, frame))
+                return frame;
+            size = frame.capacity();
+            pool.release(frame);
+        }
+    }
 
-        String line = new String(dataBuffer.array(), StandardCharsets.UTF_8);
-        return ConnectionData.Factory.parseLine(line);
+    /**
+     * Encodes the given data into the given cleared buffer, after the data's length, and then writes the length
+     * @param codec the codec that encodes the data
+     * @param connectionData the data that should be encoded
+     * @param frame the buffer where the frame is written
+     * @return true if the buffer, ready to be read, contains the whole frame, false if it has no room for it
+     */
+    static boolean encodeFrame(Codec codec, ConnectionData connectionData, ByteBuffer frame) {
+        frame.position(Integer.BYTES);
+        if (!codec.encodeInto(connectionData, frame))
+            return false;
+        frame.putInt(0, frame.position() - Integer.BYTES);
+        frame.flip();
+        return true;
     }
 
     /**
-     * Reads and receive the given amount of bytes
-     * @param bufferLength how many bytes should be read
-     * @return a buffer with bufferLength size that contains the bytes read
+     * Reads a single frame and then it returns the received data. The whole frame should be received by a single
+     * read, which is true for a datagram but not for a stream: in that case a {@link FrameDecoder} should be used
+     * instead.
+     * @return a ConnectionData object that represents the data received. It can be a request or a response. It is a
+     * fail response if the frame is not valid.
      * @throws IOException if an I/O error occurs
      */
-    private ByteBuffer receiveByLength(int bufferLength) throws IOException {
-        ByteBuffer buffer = ByteBuffer.allocate(bufferLength);
-        read(buffer);
-        buffer.flip();
-        return buffer;
+    public ConnectionData receiveData() throws IOException {
+        ByteBuffer buffer = pool.acquire(MAX_DATAGRAM_SIZE);
+        try {
+            read(buffer);
+            buffer.flip();
+            if (buffer.remaining() < Integer.BYTES)
+                return ConnectionData.Factory.newFailResponse(INVALID_FRAME);
+            int length = buffer.getInt();
+            if (length < 0 || length > buffer.remaining())
+                return ConnectionData.Factory.newFailResponse(INVALID_FRAME);
+            buffer.limit(buffer.position() + length);
+            return Codec.decodeFrame(buffer);
+        } finally {
+            pool.release(buffer);
+        }
     }
 
     /**
@@ -67,9 +122,10 @@ public abstract class Connection {
     /**
      * Reads the data from the other endpoint and writes it inside the given buffer.
      * @param buffer the buffer that should contain the data read
+     * @return how many bytes have been read, possibly zero, or -1 if the endpoint has closed the connection
      * @throws IOException if an I/O error occurs
      */
-    abstract void read(ByteBuffer buffer) throws IOException;
+    abstract int read(ByteBuffer buffer) throws IOException;
 
     /**
      * Ends the connection with the endpoint
@@ -12,7 +12,8 @@ import java.util.Arrays;
  */
 public class ConnectionData {
 
-    private enum CMD {
+    //The ordinal of each command is its opcode in the binary codec, so new commands should be added at the end
+    enum CMD {
         LOGIN_REQUEST,
         LOGOUT_REQUEST,
         ADD_FRIEND_REQUEST,
@@ -24,17 +25,24 @@ public class ConnectionData {
         SCORE_REQUEST,
         LEADERBOARD_REQUEST,
         SUCCESS_RESPONSE,
-        FAIL_RESPONSE
+        FAIL_RESPONSE,
+        CHALLENGE_ACK,
+        CHALLENGE_RESPONSE
     }
 
     private static final String PARAMETERS_DIVIDER = " ";
     private static final String RESPONSE_DATA_DIVIDER = ";";
+    private static final String CHALLENGE_ACCEPTED = "accepted";
+    private static final String CHALLENGE_DECLINED = "declined";
     private final CMD cmd;                //The command of the request/response
     private final String[] params;        //The parameters of the request/response
     private String senderUsername;  //The username of who sent the message. It is always used
     private String senderPassword;  //The password of who sent the message.
     private String friendUsername;  //The friend's username. Used for the ADD_FRIEND request
     private String responseData;    //The data which is attached to a message (used as failure message by the fail response or by the success response)
+    private long[] numbers;         //The numbers attached to a challenge start or end. Parsed from responseData when needed
+    private String codecName;       //The codec that the sender of a login request wants to use after the login
+    private long challengeId;       //The id of the challenge which the UDP messages refer to. -1 if there isn't one
 
     /**
      * Private constructor. It creates this by using the given parameters. The attributes are set as null. The only way
@@ -49,6 +57,9 @@ public class ConnectionData {
         senderPassword = null;
         friendUsername = null;
         responseData = null;
+        numbers = null;
+        codecName = null;
+        challengeId = -1;
     }
 
     public String getUsername() { return senderUsername; }
@@ -59,6 +70,39 @@ public class ConnectionData {
 
     public String getResponseData() { return responseData; }
 
+    /** Returns the name of the codec requested by a login request or null if the sender wants the text codec */
+    public String getCodecName() { return codecName; }
+
+    /** Returns the id of the challenge which a message sent via UDP refers to, or -1 if there isn't one */
+    public long getChallengeId() { return challengeId; }
+
+    /** Returns the command of this message */
+    CMD getCmd() { return cmd; }
+
+    /** Returns the parameters of this message, as they are written by {@link #toString()}. They must not be changed */
+    String[] getParams() { return params; }
+
+    /** Returns the numbers attached to a challenge start or end message. It returns null if the message doesn't have
+     * valid numbers */
+    long[] getNumbers() {
+        if (numbers == null && responseData != null && (cmd == CMD.CHALLENGE_START || cmd == CMD.CHALLENGE_END)) {
+            String[] splitted = splitResponseData();
+            int count = cmd == CMD.CHALLENGE_START ? 2 : 6;
+            if (splitted.length < count)
+                return null;
+            long[] parsed = new long[count];
+            try {
+                for (int i = 0; i < count; i++) {
+                    parsed[i] = Long.parseLong(splitted[i]);
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            numbers = parsed;
+        }
+        return numbers;
+    }
+
     /** Splits the response data into an array. Used when the message is that kind of custom messages */
     public String[] splitResponseData() { return responseData.split(RESPONSE_DATA_DIVIDER); }
 
@@ -100,6 +144,8 @@ public class ConnectionData {
                     case LOGIN_REQUEST:
                         if (params.length == 3)
                             return newLoginRequest(params[0], params[1], Integer.parseUnsignedInt(params[2]));
+                        if (params.length == 4)
+                            return newLoginRequest(params[0], params[1], Integer.parseUnsignedInt(params[2]), params[3]);
                         break;
                     case LOGOUT_REQUEST:
                         if (params.length == 1)
@@ -116,6 +162,8 @@ public class ConnectionData {
                     case CHALLENGE_REQUEST:
                         if (params.length == 2)
                             return newChallengeRequest(params[0], params[1]);
+                        if (params.length == 3)
+                            return newChallengeRequest(params[0], params[1], parseChallengeId(params[2]));
                         break;
                     case CHALLENGE_START:
                         if (params.length == 1)
@@ -148,11 +196,28 @@ public class ConnectionData {
                     case FAIL_RESPONSE:
                         String paramsRow = Utils.stringify(params, " ");
                         return newFailResponse(paramsRow);
+                    case CHALLENGE_ACK:
+                        if (params.length == 1)
+                            return newChallengeAck(parseChallengeId(params[0]));
+                        break;
+                    case CHALLENGE_RESPONSE:
+                        if (params.length != 2)
+                            break;
+                        if (params[1].equals(CHALLENGE_ACCEPTED) || params[1].equals(CHALLENGE_DECLINED))
+                            return newChallengeResponse(parseChallengeId(params[0]), params[1].equals(CHALLENGE_ACCEPTED));
+                        break;
                 }
             } catch (IllegalArgumentException ignored) {}   //ignored because it will return Invalid Command
             return newFailResponse("Invalid command");
         }
 
+        /** Parses a challenge id, which is a non negative long. Throws NumberFormatException if it is not valid */
+        private static long parseChallengeId(String string) {
+            if (string.startsWith("-"))
+                throw new NumberFormatException(string);
+            return Long.parseLong(string);
+        }
+
         /**
          * Builds a ConnectionData object that represents a login request
          * @param username the username of who is sending the request
@@ -161,10 +226,26 @@ public class ConnectionData {
          * @return a ConnectionData object that represents a login request
          */
         public static ConnectionData newLoginRequest(String username, String password, int udpPort) {
-            ConnectionData connectionData = new ConnectionData(CMD.LOGIN_REQUEST, new String[]{username, password, ""+udpPort});
+            return newLoginRequest(username, password, udpPort, null);
+        }
+
+        /**
+         * Builds a ConnectionData object that represents a login request which also asks to use the given codec after
+         * the login. A server that supports the codec puts its name into the success response.
+         * @param username the username of who is sending the request
+         * @param password the password of who is sending the request
+         * @param udpPort the udpPort on which the user can receive data via UDP protocol
+         * @param codecName the name of the codec that should be used after the login or null to keep the text codec
+         * @return a ConnectionData object that represents a login request
+         */
+        public static ConnectionData newLoginRequest(String username, String password, int udpPort, String codecName) {
+            String[] params = codecName == null ? new String[]{username, password, ""+udpPort}
+                    : new String[]{username, password, ""+udpPort, codecName};
+            ConnectionData connectionData = new ConnectionData(CMD.LOGIN_REQUEST, params);
             connectionData.senderUsername = username;
             connectionData.senderPassword = password;
             connectionData.responseData = ""+udpPort;
+            connectionData.codecName = codecName;
             return connectionData;
         }
 
@@ -217,6 +298,49 @@ public class ConnectionData {
             return connectionData;
         }
 
+        /**
+         * Builds a ConnectionData object that represents a challenge request forwarded via UDP. The challenged user
+         * acknowledges it with the same challenge id, so that it can be sent again if it gets lost.
+         * @param username the username of who is sending the request
+         * @param friendUsername the friend's username
+         * @param challengeId the challenge id of the request. Must be non negative
+         * @return a ConnectionData object that represents a challenge request
+         */
+        public static ConnectionData newChallengeRequest(String username, String friendUsername, long challengeId) {
+            ConnectionData connectionData = new ConnectionData(CMD.CHALLENGE_REQUEST,
+                    new String[]{username, friendUsername, Long.toString(challengeId)});
+            connectionData.senderUsername = username;
+            connectionData.friendUsername = friendUsername;
+            connectionData.challengeId = challengeId;
+            return connectionData;
+        }
+
+        /**
+         * Builds a ConnectionData object that acknowledges the challenge request with the given challenge id
+         * @param challengeId the challenge id of the challenge request received
+         * @return a ConnectionData object that represents a challenge ack
+         */
+        public static ConnectionData newChallengeAck(long challengeId) {
+            ConnectionData connectionData = new ConnectionData(CMD.CHALLENGE_ACK, new String[]{Long.toString(challengeId)});
+            connectionData.challengeId = challengeId;
+            return connectionData;
+        }
+
+        /**
+         * Builds a ConnectionData object that represents the answer of the challenged user to a challenge request
+         * @param challengeId the challenge id of the challenge request received
+         * @param accepted true if the user has accepted the challenge, false otherwise
+         * @return a ConnectionData object that represents a challenge response
+         */
+        public static ConnectionData newChallengeResponse(long challengeId, boolean accepted) {
+            String answer = accepted ? CHALLENGE_ACCEPTED : CHALLENGE_DECLINED;
+            ConnectionData connectionData = new ConnectionData(CMD.CHALLENGE_RESPONSE,
+                    new String[]{Long.toString(challengeId), answer});
+            connectionData.challengeId = challengeId;
+            connectionData.responseData = answer;
+            return connectionData;
+        }
+
         /**
          * Builds a ConnectionData object that represents a challenge start response
          *
@@ -224,7 +348,9 @@ public class ConnectionData {
          */
         public static ConnectionData newChallengeStart(long maxChallengeLength, int challengeWords, String nextItWord) {
             String data = Utils.stringify(RESPONSE_DATA_DIVIDER, maxChallengeLength, challengeWords, nextItWord);
-            return newCustomFromData(CMD.CHALLENGE_START, data);
+            ConnectionData connectionData = newCustomFromData(CMD.CHALLENGE_START, data);
+            connectionData.numbers = new long[]{maxChallengeLength, challengeWords};
+            return connectionData;
         }
 
         /**
@@ -243,7 +369,9 @@ public class ConnectionData {
          */
         public static ConnectionData newChallengeEnd(int correct, int wrong, int notransl, int yourscore, int otherscore, int extrapoints) {
             String data = Utils.stringify(RESPONSE_DATA_DIVIDER, correct, wrong, notransl, yourscore, otherscore, extrapoints);
-            return newCustomFromData(CMD.CHALLENGE_END, data);
+            ConnectionData connectionData = newCustomFromData(CMD.CHALLENGE_END, data);
+            connectionData.numbers = new long[]{correct, wrong, notransl, yourscore, otherscore, extrapoints};
+            return connectionData;
         }
 
         /**
@@ -495,5 +623,36 @@ public class ConnectionData {
         public static boolean isFailResponse(ConnectionData response) {
             return hasSameCMD(CMD.FAIL_RESPONSE, response.cmd);
         }
+
+        /**
+         * Checks if the given data represents a valid challenge ack, which means it has the right CMD and a challenge id.
+         *
+         * @param data the data that should be evaluated
+         * @return true if the data has the challenge ack's cmd and a challenge id, false otherwise.
+         */
+        public static boolean isChallengeAck(ConnectionData data) {
+            return hasSameCMD(CMD.CHALLENGE_ACK, data.cmd) && data.challengeId >= 0;
+        }
+
+        /**
+         * Checks if the given data represents a valid challenge response, which means it has the right CMD and a
+         * challenge id.
+         *
+         * @param data the data that should be evaluated
+         * @return true if the data has the challenge response's cmd and a challenge id, false otherwise.
+         */
+        public static boolean isChallengeResponse(ConnectionData data) {
+            return hasSameCMD(CMD.CHALLENGE_RESPONSE, data.cmd) && data.challengeId >= 0;
+        }
+
+        /**
+         * Checks if the given data is a challenge response by which the challenged user has accepted the challenge.
+         *
+         * @param data the data that should be evaluated
+         * @return true if the data is a valid challenge response that accepts the challenge, false otherwise.
+         */
+        public static boolean isChallengeAccepted(ConnectionData data) {
+            return isChallengeResponse(data) && CHALLENGE_ACCEPTED.equals(data.responseData);
+        }
     }
 }
@@ -0,0 +1,132 @@
+package com.domenico.communication;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Incremental decoder of the frames sent through a stream connection. Each frame is made by the data's length (an int)
+ * followed by the data itself, as written by {@link Connection#sendData(ConnectionData)}. The stream can split a frame
+ * in several reads or merge several frames in a single read, so this decoder accumulates the bytes read across the
+ * calls and it returns a frame only when it has been completely received. The bytes of a frame that is not complete
+ * yet are kept until the next read. Each frame is decoded by the codec that has encoded it. There must be one decoder
+ * for each connection.
+ */
+public class FrameDecoder {
+
+    //The biggest frame that is accepted. A bigger length means that the endpoint is not speaking this protocol
+    public static final int MAX_FRAME_LENGTH = 1 << 20;
+    private static final int INITIAL_CAPACITY = 512;
+
+    //Buffer that accumulates the bytes read. It is always in write mode between the calls
+    private ByteBuffer buffer;
+
+    public FrameDecoder() {
+        this.buffer = ByteBuffer.allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Reads from the given connection all the bytes that are available without blocking and keeps them until the
+     * frames are decoded by {@link #nextFrame()}.
+     * @param connection the connection from which the bytes should be read
+     * @return how many bytes have been read
+     * @throws EOFException if the endpoint has closed the connection
+     * @throws IOException if an I/O error occurs
+     */
+    public int readFrom(Connection connection) throws IOException {
+        int total = 0;
+        int read;
+        do {
+            read = readOnce(connection);
+            total += read;
+        } while (read > 0 && !buffer.hasRemaining());   //the buffer was filled, there can be more bytes to read
+        return total;
+    }
+
+    /**
+     * Reads from the given connection once. It should be used instead of {@link #readFrom(Connection)} when the
+     * connection is blocking, because a second read would wait for more bytes even if some frames are complete.
+     * @param connection the connection from which the bytes should be read
+     * @return how many bytes have been read
+     * @throws EOFException if the endpoint has closed the connection
+     * @throws IOException if an I/O error occurs
+     */
+    public int readOnce(Connection connection) throws IOException {
+        if (!buffer.hasRemaining()) {
+            if (buffer.capacity() >= MAX_FRAME_LENGTH + Integer.BYTES)
+                return 0;   //it contains at least a complete frame, the rest is read after decoding it
+            grow(Math.min(buffer.capacity() * 2, MAX_FRAME_LENGTH + Integer.BYTES));
+        }
+        int read = connection.read(buffer);
+        if (read < 0)
+            throw new EOFException("Connection closed by the endpoint");
+        return read;
+    }
+
+    /**
+     * Returns the next frame that has been completely received or null if there isn't one. It doesn't read from the
+     * connection.
+     * @return the next complete frame or null if the bytes received so far don't contain a complete frame
+     * @throws IOException if the endpoint has sent an invalid frame length
+     */
+    public ConnectionData nextFrame() throws IOException {
+        buffer.flip();
+        try {
+            if (buffer.remaining() < Integer.BYTES)
+                return null;
+            int length = buffer.getInt(buffer.position());
+            if (length < 0 || length > MAX_FRAME_LENGTH)
+                throw new IOException("Invalid frame length: " + length);
+            if (buffer.remaining() < Integer.BYTES + length) {
+                if (buffer.capacity() < Integer.BYTES + length)
+                    ensureCapacity(Integer.BYTES + length);
+                return null;
+            }
+            int start = buffer.position() + Integer.BYTES;
+            int limit = buffer.limit();
+            buffer.limit(start + length).position(start);
+            ConnectionData frame = Codec.decodeFrame(buffer);
+            buffer.limit(limit).position(start + length);
+            return frame;
+        } finally {
+            buffer.compact();
+        }
+    }
+
+    /**
+     * Reads all the bytes available from the given connection and adds to the given list each frame that has been
+     * completely received. It can add zero or more frames.
+     * @param connection the connection from which the bytes should be read
+     * @param frames the list where the complete frames are added
+     * @return how many frames have been added
+     * @throws EOFException if the endpoint has closed the connection
+     * @throws IOException if an I/O error occurs or if the endpoint has sent an invalid frame
+     */
+    public int readFrames(Connection connection, List<ConnectionData> frames) throws IOException {
+        readFrom(connection);
+        int count = 0;
+        ConnectionData frame;
+        while ((frame = nextFrame()) != null) {
+            frames.add(frame);
+            count++;
+        }
+        return count;
+    }
+
+    /** Grows the buffer, which is in read mode, in order to contain at least the given amount of bytes */
+    private void ensureCapacity(int capacity) {
+        ByteBuffer bigger = ByteBuffer.allocate(Math.max(capacity, buffer.capacity() * 2));
+        bigger.put(buffer);
+        bigger.flip();
+        buffer = bigger;
+    }
+
+    /** Grows the buffer, which is in write mode, to the given capacity */
+    private void grow(int capacity) {
+        ByteBuffer bigger = ByteBuffer.allocate(capacity);
+        buffer.flip();
+        bigger.put(buffer);
+        buffer = bigger;
+    }
+}
@@ -0,0 +1,97 @@
+package com.domenico.communication;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * Bounded queue of the encoded frames that should be sent to an endpoint through a stream connection. The frames are
+ * sent in the same order they have been added and as many of them as possible are written with a single gathering
+ * write. A frame that has been written partially stays at the head of the queue and its remaining bytes are written by
+ * the next flush. The frames that have been sent are given back to the pool they have been taken from. The queue is
+ * not thread safe: it should be used by the thread that owns the connection.
+ */
+public class OutboundQueue {
+
+    //How many frames can wait to be sent before the endpoint is considered too slow
+    public static final int DEFAULT_CAPACITY = 64;
+    //How many frames are given to a single gathering write at most
+    private static final int MAX_GATHERED = 16;
+
+    private final ArrayDeque<ByteBuffer> frames;
+    private final BufferPool pool;
+    private final int capacity;
+    //Reused array that contains the frames given to the gathering write
+    private final ByteBuffer[] gathered;
+
+    public OutboundQueue(BufferPool pool) {
+        this(pool, DEFAULT_CAPACITY);
+    }
+
+    public OutboundQueue(BufferPool pool, int capacity) {
+        this.pool = pool;
+        this.capacity = capacity;
+        this.frames = new ArrayDeque<>(capacity);
+        this.gathered = new ByteBuffer[MAX_GATHERED];
+    }
+
+    /**
+     * Adds the given frame at the end of the queue.
+     * @param frame the encoded frame, ready to be read
+     * @throws IOException if the queue is full, which means that the endpoint is not reading what is sent to it
+     */
+    public void add(ByteBuffer frame) throws IOException {
+        if (frames.size() == capacity) {
+            pool.release(frame);
+            throw new IOException("Too many frames are waiting to be sent");
+        }
+        frames.add(frame);
+    }
+
+    /**
+     * Writes the queued frames into the given channel until the queue is empty or until the channel cannot accept
+     * more bytes without blocking.
+     * @param channel the channel on which the frames are written
+     * @return true if all the frames have been written, false if some bytes are still pending
+     * @throws IOException if an I/O error occurs
+     */
+    public boolean flush(GatheringByteChannel channel) throws IOException {
+        while (!frames.isEmpty()) {
+            int count = 0;
+            for (ByteBuffer frame : frames) {
+                gathered[count++] = frame;
+                if (count == gathered.length) break;
+            }
+            channel.write(gathered, 0, count);
+            Arrays.fill(gathered, 0, count, null);
+
+            int written = 0;
+            while (!frames.isEmpty() && !frames.peek().hasRemaining()) {
+                pool.release(frames.poll());
+                written++;
+            }
+            if (written < count)    //the channel is full, the rest is written when it is writable again
+                return false;
+        }
+        return true;
+    }
+
+    /** Removes all the frames that are waiting to be sent and gives them back to the pool */
+    public void clear() {
+        while (!frames.isEmpty()) {
+            pool.release(frames.poll());
+        }
+    }
+
+    /** Returns true if there are no bytes waiting to be sent */
+    public boolean isEmpty() {
+        return frames.isEmpty();
+    }
+
+    /** Returns how many frames are waiting to be sent */
+    public int size() {
+        return frames.size();
+    }
+}
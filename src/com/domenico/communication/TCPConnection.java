@@ -6,7 +6,8 @@ import java.nio.channels.SocketChannel;
 
 /**
  * Implements a TCP communication with an endpoint (which can be a client or a server).
- * It extends the Connection abstract class.
+ * It extends the Connection abstract class. When the channel is non-blocking, the data should be sent by queueing it
+ * with {@link #enqueueData(ConnectionData)} and then by calling {@link #flush()} until there is nothing pending.
  */
 public class TCPConnection extends Connection {
 
@@ -14,6 +15,7 @@ public class TCPConnection extends Connection {
     public static final String SERVER_HOST = "localhost";
 
     private final SocketChannel channel;  //The channel on which the TCP communication is done
+    private final OutboundQueue outboundQueue;  //The frames that are waiting to be sent
 
     /**
      * Instantiates a TCPConnection object that communicates with the other endpoint via the given channel
@@ -21,6 +23,30 @@ public class TCPConnection extends Connection {
      */
     public TCPConnection(SocketChannel channel) {
         this.channel = channel;
+        this.outboundQueue = new OutboundQueue(pool);
+    }
+
+    /**
+     * Queues the given data. It is sent by the next calls to {@link #flush()}.
+     * @param connectionData the data that should be sent
+     * @throws IOException if too much data is waiting to be sent to the endpoint
+     */
+    public void enqueueData(ConnectionData connectionData) throws IOException {
+        outboundQueue.add(encode(connectionData));
+    }
+
+    /**
+     * Writes as much queued data as possible without blocking.
+     * @return true if all the queued data has been sent, false if some data is still pending
+     * @throws IOException if an I/O error occurs
+     */
+    public boolean flush() throws IOException {
+        return outboundQueue.flush(channel);
+    }
+
+    /** Returns true if some queued data is still waiting to be sent */
+    public boolean hasPendingData() {
+        return !outboundQueue.isEmpty();
     }
 
     @Override
@@ -29,12 +55,13 @@ public class TCPConnection extends Connection {
     }
 
     @Override
-    void read(ByteBuffer buffer) throws IOException {
-        channel.read(buffer);
+    int read(ByteBuffer buffer) throws IOException {
+        return channel.read(buffer);
     }
 
     @Override
     public void endConnection() throws IOException {
+        outboundQueue.clear();
         channel.close();
     }
 }
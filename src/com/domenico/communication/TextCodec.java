@@ -0,0 +1,267 @@
+package com.domenico.communication;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Codec that represents a ConnectionData object with the string returned by {@link ConnectionData#toString()}: the
+ * command's name followed by the parameters, separated by a blank character. It is the codec used by default.
+ * The string is written in UTF-8 straight into the buffer of the frame, without being built.
+ * The frames are decoded by scanning their bytes in place, without building the whole line, so that only the strings
+ * of the parameters are created. It accepts the same lines accepted by {@link ConnectionData.Factory#parseLine(String)}.
+ */
+class TextCodec implements Codec {
+
+    private static final ConnectionData.CMD[] COMMANDS = ConnectionData.CMD.values();
+    //The name of each command, indexed by the command's ordinal
+    private static final byte[][] COMMAND_NAMES = new byte[COMMANDS.length][];
+    private static final byte DIVIDER = ' ';
+    private static final String INVALID_COMMAND = "Invalid command";
+
+    static {
+        for (ConnectionData.CMD cmd : COMMANDS) {
+            COMMAND_NAMES[cmd.ordinal()] = cmd.name().getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "text";
+    }
+
+    @Override
+    public boolean encodeInto(ConnectionData data, ByteBuffer buffer) {
+        try {
+            buffer.put(COMMAND_NAMES[data.getCmd().ordinal()]);
+            for (String param : data.getParams()) {
+                buffer.put(DIVIDER);
+                putUtf8(buffer, String.valueOf(param));
+            }
+            return true;
+        } catch (BufferOverflowException e) {
+            return false;
+        }
+    }
+
+    /** Returns how many bytes the given string takes in UTF-8, as encoded by {@link #putUtf8(ByteBuffer, String)} */
+    static int utf8Length(String string) {
+        int length = 0;
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < string.length()
+                    && Character.isLowSurrogate(string.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += Character.isSurrogate(c) ? 1 : 3;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Writes the given string in UTF-8 into the given buffer, without encoding it into a temporary array. A lone
+     * surrogate is written as '?', as {@link String#getBytes} does.
+     * @throws BufferOverflowException if the buffer has no room for the string
+     */
+    static void putUtf8(ByteBuffer buffer, String string) {
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | c >> 6));
+                buffer.put((byte) (0x80 | c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < string.length()
+                    && Character.isLowSurrogate(string.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, string.charAt(++i));
+                buffer.put((byte) (0xF0 | codePoint >> 18));
+                buffer.put((byte) (0x80 | codePoint >> 12 & 0x3F));
+                buffer.put((byte) (0x80 | codePoint >> 6 & 0x3F));
+                buffer.put((byte) (0x80 | codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                buffer.put((byte) '?');
+            } else {
+                buffer.put((byte) (0xE0 | c >> 12));
+                buffer.put((byte) (0x80 | c >> 6 & 0x3F));
+                buffer.put((byte) (0x80 | c & 0x3F));
+            }
+        }
+    }
+
+    @Override
+    public ConnectionData decode(ByteBuffer frame) {
+        int start = frame.position();
+        int end = frame.limit();
+        frame.position(end);
+        while (end > start && frame.get(end - 1) == DIVIDER) end--;    //the trailing blanks are ignored
+
+        int cmdEnd = indexOfDivider(frame, start, end);
+        ConnectionData.CMD cmd = matchCommand(frame, start, cmdEnd);
+        if (cmd == null)
+            return ConnectionData.Factory.newFailResponse(INVALID_COMMAND);
+
+        int from = cmdEnd + 1;      //where the parameters start
+        int params = cmdEnd == end ? 0 : countParams(frame, from, end);
+        int first, second, third;   //where the first, the second and the third parameters end
+        switch (cmd) {
+            case LOGIN_REQUEST:
+                if (params != 3 && params != 4)
+                    break;
+                first = indexOfDivider(frame, from, end);
+                second = indexOfDivider(frame, first + 1, end);
+                third = indexOfDivider(frame, second + 1, end);
+                long udpPort = parseUnsignedInt(frame, second + 1, third);
+                if (udpPort < 0)
+                    break;
+                String codecName = params == 4 ? string(frame, third + 1, end) : null;
+                return ConnectionData.Factory.newLoginRequest(string(frame, from, first),
+                        string(frame, first + 1, second), (int) udpPort, codecName);
+            case LOGOUT_REQUEST:
+                if (params == 1)
+                    return ConnectionData.Factory.newLogoutRequest(string(frame, from, end));
+                break;
+            case ADD_FRIEND_REQUEST:
+                if (params != 2)
+                    break;
+                first = indexOfDivider(frame, from, end);
+                return ConnectionData.Factory.newAddFriendRequest(string(frame, from, first),
+                        string(frame, first + 1, end));
+            case FRIEND_LIST_REQUEST:
+                if (params == 1)
+                    return ConnectionData.Factory.newFriendListRequest(string(frame, from, end));
+                break;
+            case CHALLENGE_REQUEST:
+                if (params != 2 && params != 3)
+                    break;
+                first = indexOfDivider(frame, from, end);
+                if (params == 2)
+                    return ConnectionData.Factory.newChallengeRequest(string(frame, from, first),
+                            string(frame, first + 1, end));
+                second = indexOfDivider(frame, first + 1, end);
+                long challengeId = parseUnsignedLong(frame, second + 1, end);
+                if (challengeId < 0)
+                    break;
+                return ConnectionData.Factory.newChallengeRequest(string(frame, from, first),
+                        string(frame, first + 1, second), challengeId);
+            case CHALLENGE_START:
+                if (params == 1)
+                    return ConnectionData.Factory.newChallengeStart(string(frame, from, end));
+                break;
+            case CHALLENGE_END:
+                if (params == 1)
+                    return ConnectionData.Factory.newChallengeEnd(string(frame, from, end));
+                break;
+            case CHALLENGE_WORD:
+                if (params >= 1)
+                    return ConnectionData.Factory.newChallengeWord(string(frame, from, end));
+                break;
+            case SCORE_REQUEST:
+                if (params == 1)
+                    return ConnectionData.Factory.newScoreRequest(string(frame, from, end));
+                break;
+            case LEADERBOARD_REQUEST:
+                if (params == 1)
+                    return ConnectionData.Factory.newLeaderboardRequest(string(frame, from, end));
+                break;
+            case SUCCESS_RESPONSE:
+                if (params == 0)
+                    return ConnectionData.Factory.newSuccessResponse();
+                return ConnectionData.Factory.newSuccessResponse(string(frame, from, end));
+            case FAIL_RESPONSE:
+                return ConnectionData.Factory.newFailResponse(params == 0 ? "" : string(frame, from, end));
+            case CHALLENGE_ACK:
+                if (params != 1)
+                    break;
+                long acked = parseUnsignedLong(frame, from, end);
+                if (acked >= 0)
+                    return ConnectionData.Factory.newChallengeAck(acked);
+                break;
+            case CHALLENGE_RESPONSE:
+                if (params != 2)
+                    break;
+                first = indexOfDivider(frame, from, end);
+                long answered = parseUnsignedLong(frame, from, first);
+                String answer = string(frame, first + 1, end);
+                if (answered >= 0 && (answer.equals("accepted") || answer.equals("declined")))
+                    return ConnectionData.Factory.newChallengeResponse(answered, answer.equals("accepted"));
+                break;
+        }
+        return ConnectionData.Factory.newFailResponse(INVALID_COMMAND);
+    }
+
+    /** Returns the command whose name is between the given indexes or null if there isn't such a command */
+    private static ConnectionData.CMD matchCommand(ByteBuffer frame, int from, int to) {
+        int length = to - from;
+        for (int i = 0; i < COMMAND_NAMES.length; i++) {
+            byte[] name = COMMAND_NAMES[i];
+            if (name.length != length)
+                continue;
+            int j = 0;
+            while (j < length && frame.get(from + j) == name[j]) j++;
+            if (j == length)
+                return COMMANDS[i];
+        }
+        return null;
+    }
+
+    /** Returns the index of the first divider between the given indexes or the second index if there isn't one */
+    private static int indexOfDivider(ByteBuffer frame, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (frame.get(i) == DIVIDER)
+                return i;
+        }
+        return to;
+    }
+
+    /** Counts the parameters between the given indexes. Two consecutive dividers delimit an empty parameter */
+    private static int countParams(ByteBuffer frame, int from, int to) {
+        int count = 1;
+        for (int i = from; i < to; i++) {
+            if (frame.get(i) == DIVIDER)
+                count++;
+        }
+        return count;
+    }
+
+    /**
+     * Parses the unsigned int written between the given indexes, in the same way as {@link Integer#parseUnsignedInt(String)}.
+     * Returns -1 if the bytes are not a valid unsigned int.
+     */
+    private static long parseUnsignedInt(ByteBuffer frame, int from, int to) {
+        long value = parseUnsignedLong(frame, from, to);
+        return value > 0xFFFFFFFFL ? -1 : value;
+    }
+
+    /**
+     * Parses the non negative long written between the given indexes. Returns -1 if the bytes are not a valid
+     * non negative long.
+     */
+    private static long parseUnsignedLong(ByteBuffer frame, int from, int to) {
+        if (from < to && frame.get(from) == '+') from++;
+        if (from == to)
+            return -1;
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = frame.get(i) - '0';
+            if (digit < 0 || digit > 9 || value > (Long.MAX_VALUE - digit) / 10)
+                return -1;
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /** Creates the string whose UTF-8 bytes are between the given indexes */
+    private static String string(ByteBuffer frame, int from, int to) {
+        if (frame.hasArray())
+            return new String(frame.array(), frame.arrayOffset() + from, to - from, StandardCharsets.UTF_8);
+        byte[] bytes = new byte[to - from];
+        frame.get(from, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -13,8 +13,13 @@ public class UDPConnection extends Connection {
     public static final int PORT = 9999;
     public static final String HOST_NAME = "localhost";
 
+    //The initial size of the buffer reused by trySendData(). It grows if a frame doesn't fit
+    private static final int SEND_BUFFER_SIZE = 1024;
+
     private final DatagramChannel channel;    //UDP channel on which the communication is done
     private SocketAddress address;  //The endpoint address
+    //The buffer in which trySendData() encodes each frame. It is owned by the thread that sends
+    private ByteBuffer sendBuffer;
 
     /**
      * Builds a new UDPConnection object that uses the given channel for the communication between this and the endpoint
@@ -33,6 +38,26 @@ public class UDPConnection extends Connection {
         sendData(data);
     }
 
+    /**
+     * Sends the specified data to the given address without waiting if the channel is non-blocking. The frame is
+     * encoded in a buffer that is reused by each call, so it must be called by a single thread.
+     * @param data the data that should be sent
+     * @param address the endpoint address
+     * @return true if the datagram has been sent, false if there was no room for it in the socket's buffer and it
+     * should be sent again when the channel is writable
+     * @throws IOException if an I/O error occurs
+     */
+    public boolean trySendData(ConnectionData data, SocketAddress address) throws IOException {
+        if (sendBuffer == null)
+            sendBuffer = ByteBuffer.allocateDirect(SEND_BUFFER_SIZE);
+        sendBuffer.clear();
+        while (!encodeFrame(getCodec(), data, sendBuffer)) {
+            sendBuffer = ByteBuffer.allocateDirect(sendBuffer.capacity() * 2);
+        }
+        this.address = address;
+        return channel.send(sendBuffer, address) > 0;
+    }
+
     /** Returns the address to which the UDP data is sent */
     public SocketAddress getAddress() {
         return address;
@@ -44,8 +69,10 @@ public class UDPConnection extends Connection {
     }
 
     @Override
-    void read(ByteBuffer buffer) throws IOException {
+    int read(ByteBuffer buffer) throws IOException {
+        int position = buffer.position();
         address = channel.receive(buffer);
+        return buffer.position() - position;
     }
 
     @Override
@@ -0,0 +1,170 @@
+package com.domenico.server;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+
+/** The answers accepted for the words of a challenge, computed once when the words are set. Each translation gives
+ * its alternates, separated by slashes, commas or semicolons as in "dog, hound", besides the whole translation, and
+ * each alternate is kept in its normalized form: lower case, without accents and punctuation, without a leading
+ * article or "to". An answer is then checked by normalizing it once and looking it up once into a small
+ * open-addressing hash table, whose slots are the normalized answers together with the index of the word they belong
+ * to. It is immutable and it can be used by any thread. */
+public class AcceptedAnswers {
+
+    //The articles and the infinitive marker that can start an answer, followed by a space
+    private static final String[] PREFIXES = {"the ", "an ", "a ", "to "};
+    private static final String ALTERNATES_SEPARATORS = "/,;";
+    //The most words that can be indexed by a slot
+    private static final int MAX_WORDS = 256;
+
+    //The normalized answer in each slot or null if the slot is empty
+    private final String[] answers;
+    //The index of the word of each slot
+    private final byte[] indexes;
+    private final int words;
+
+    private AcceptedAnswers(String[] answers, byte[] indexes, int words) {
+        this.answers = answers;
+        this.indexes = indexes;
+        this.words = words;
+    }
+
+    /**
+     * Computes the answers accepted for the words whose translations are given
+     * @param translations the english translation of each word, with its alternates. A null translation accepts no
+     *                     answer
+     * @return the accepted answers
+     */
+    public static AcceptedAnswers of(String[] translations) {
+        if (translations.length > MAX_WORDS)
+            throw new IllegalArgumentException("Too many words: " + translations.length);
+        String[][] alternates = new String[translations.length][];
+        int count = 0;
+        for (int i = 0; i < translations.length; i++) {
+            alternates[i] = translations[i] == null ? new String[0] : split(translations[i]);
+            count += alternates[i].length;
+        }
+        //a power of two which is at most three quarters full
+        int length = 2;
+        while (length * 3 < count * 4) {
+            length <<= 1;
+        }
+        String[] answers = new String[length];
+        byte[] indexes = new byte[length];
+        int mask = length - 1;
+        for (int i = 0; i < alternates.length; i++) {
+            for (String answer : alternates[i]) {
+                int slot = slotOf(answers, indexes, mask, answer, i);
+                answers[slot] = answer;
+                indexes[slot] = (byte) i;
+            }
+        }
+        return new AcceptedAnswers(answers, indexes, translations.length);
+    }
+
+    /** Returns the distinct normalized alternates of the given translation. When it has many alternates, the whole
+     * translation is accepted as well, so that typing it exactly as it is stays right */
+    private static String[] split(String translation) {
+        String[] alternates = new String[4];
+        int count = 0;
+        int start = 0;
+        for (int end = 0; end <= translation.length(); end++) {
+            if (end < translation.length() && ALTERNATES_SEPARATORS.indexOf(translation.charAt(end)) < 0)
+                continue;
+            String alternate = normalize(translation.substring(start, end));
+            start = end + 1;
+            if (alternate.isEmpty() || contains(alternates, count, alternate))
+                continue;
+            if (count == alternates.length)
+                alternates = Arrays.copyOf(alternates, count * 2);
+            alternates[count++] = alternate;
+        }
+        if (count > 1) {
+            String whole = normalize(translation);
+            if (!contains(alternates, count, whole)) {
+                if (count == alternates.length)
+                    alternates = Arrays.copyOf(alternates, count + 1);
+                alternates[count++] = whole;
+            }
+        }
+        return Arrays.copyOf(alternates, count);
+    }
+
+    private static boolean contains(String[] strings, int count, String string) {
+        for (int i = 0; i < count; i++) {
+            if (strings[i].equals(string))
+                return true;
+        }
+        return false;
+    }
+
+    /** Returns the slot of the given answer of the given word: the one which holds it or the empty one where it
+     * should be put */
+    private static int slotOf(String[] answers, byte[] indexes, int mask, String answer, int index) {
+        int hash = answer.hashCode();
+        int slot = (hash ^ hash >>> 16) & mask;
+        while (answers[slot] != null && !(indexes[slot] == (byte) index && answers[slot].equals(answer))) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Returns true if the given answer is accepted for the word with the given index
+     * @param index the index of the word into the challenge
+     * @param answer the answer given by a player. It can be null
+     */
+    public boolean accepts(int index, String answer) {
+        if (answer == null || index < 0 || index >= words)
+            return false;
+        String normalized = normalize(answer);
+        return !normalized.isEmpty() && answers[slotOf(answers, indexes, answers.length - 1, normalized, index)] != null;
+    }
+
+    /** Returns how many words have their answers */
+    public int getWords() {
+        return words;
+    }
+
+    /**
+     * Returns the normalized form of the given answer, in one pass: the accents are removed, the letters are lower
+     * case, the other characters become single spaces between the words and a leading article or "to" is removed.
+     * @param answer any answer
+     * @return the normalized answer, which is empty if the answer has no letters or digits
+     */
+    public static String normalize(String answer) {
+        //the accented letters are split into a letter and its accent, which is then skipped
+        if (!isAscii(answer))
+            answer = Normalizer.normalize(answer, Normalizer.Form.NFD);
+        StringBuilder normalized = new StringBuilder(answer.length());
+        boolean space = false;
+        for (int i = 0; i < answer.length(); i++) {
+            char c = answer.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (space && normalized.length() > 0)
+                    normalized.append(' ');
+                normalized.append(Character.toLowerCase(c));
+                space = false;
+            } else if (Character.getType(c) != Character.NON_SPACING_MARK) {
+                space = true;
+            }
+        }
+        //an answer which is already normalized is kept, so that its string is shared rather than copied
+        String result = normalized.length() == answer.length() && normalized.indexOf(answer) == 0 ? answer :
+                normalized.toString();
+        for (String prefix : PREFIXES) {
+            //the prefix alone is an answer as well
+            if (result.length() > prefix.length() && result.startsWith(prefix))
+                return result.substring(prefix.length());
+        }
+        return result;
+    }
+
+    private static boolean isAscii(String string) {
+        for (int i = 0; i < string.length(); i++) {
+            if (string.charAt(i) > 0x7F)
+                return false;
+        }
+        return true;
+    }
+}
@@ -1,214 +1,197 @@
 package com.domenico.server;
 
-import java.util.List;
-import java.util.TimerTask;
+import com.domenico.shared.TimingWheel;
+
+import java.security.SecureRandom;
+import java.util.concurrent.CompletableFuture;
 
 /** Implementation of a Word Quizzle challenge between two users. It manages all the data related for the request
- * phase as well as the playing phase.
+ * phase as well as the playing phase. The request phase can be used by any thread, while the playing phase is guarded
+ * by the lock of this object: who plays holds it, so the challenges are played in parallel with each other.
+ * The state is kept compact, since a server can have many challenges at the same time: the words are ids of the
+ * shared {@link Dictionary} and the players are addressed by their slot, {@link #FROM} or {@link #TO}, whose counters
+ * are in a single array.
  * */
 public class Challenge {
 
+    //Gives the challenge ids, which are random so that they cannot be guessed from the ones seen before
+    private static final SecureRandom IDS = new SecureRandom();
+
+    //The slots of the players
+    public static final int FROM = 0;   //who sent the challenge
+    public static final int TO = 1;     //who was challenged
+
+    //The counters of each player, at the offset of the player's slot times COUNTERS
+    private static final int NEXT = 0;      //index to the next word
+    private static final int POINTS = 1;    //points scored
+    private static final int RIGHT = 2;     //how many words have been translated correctly
+    private static final int WRONG = 3;     //how many bad translations has the user sent
+    private static final int COUNTERS = 4;
+
+    /** How the challenge request has ended */
+    public enum Response {
+        ACCEPTED, DECLINED, TIMED_OUT
+    }
+
     //General info
+    private final long id;  //identifies the challenge in the UDP messages
     private final String from;
     private final String to;
 
     //Related to the request phase
-    private final Object mutex = new Object();
-    private boolean responseArrived;    //true if the challenge request has a response
-    private boolean requestAccepted;    //true if the challenge request has been accepted
-    private boolean requestTimedOut;    //true if the challenge request timed out
+    //Completed by the challenged user's response or by the timeout, whichever comes first
+    private final CompletableFuture<Response> response = new CompletableFuture<>();
 
     //Related to the gaming phase
-    private List<String> itWords = null;
-    private List<String> enWords = null;
+    private int[] words = null;             //the ids of the italian words
+    private AcceptedAnswers answers = null; //the answers accepted for each word
+    private final int[] counters = new int[2 * COUNTERS];
     private boolean ended;  //true if the challenge is ended
-    private int fromIndex;  //index to the next word
-    private int toIndex;
-    private int fromPoints; //points scores
-    private int toPoints;
-    private int fromRight;  //how many words have been translated correctly
-    private int toRight;
-    private int fromWrong;  //how many bad translations has the user sent
-    private int toWrong;
-    private TimerTask timer;    //timer that handle the challenge timeout
+    private TimingWheel.Timeout timer;  //timer that handle the challenge timeout
 
     public Challenge(String from, String to) {
+        this.id = IDS.nextLong() & Long.MAX_VALUE;   //the ids are never negative
         this.from = from;
         this.to = to;
     }
 
-    /** Waits that the challenge response arrives or until the challenge times out. It doesn't wait more than the given
-     * milliseconds
+    /** Returns the response to the challenge request, which completes when the challenged user answers or when the
+     * given milliseconds have passed. It doesn't wait: the timeout is applied by the {@link TimingWheel} shared by all
+     * the challenges, so a pending request doesn't hold any thread.
      * @param millis how many milliseconds is the timeout long
-     * @throws InterruptedException if any thread interrupted the current thread before or while the current thread was
-     * waiting.
+     * @return the future response, completed with {@link Response#TIMED_OUT} if the user doesn't answer in time
      */
-    public void waitResponseOrTimeout(long millis) throws InterruptedException {
-        synchronized (mutex) {
-            long now = System.currentTimeMillis();
-            long end = now + millis;
-            while (!responseArrived && now < end) {
-                mutex.wait(end - now);
-                now = System.currentTimeMillis();
-            }
-
-            if (!responseArrived) { //timeout
-                requestTimedOut = true;
-                requestAccepted = false;
-            }
-        }
+    public CompletableFuture<Response> responseOrTimeout(long millis) {
+        TimingWheel.Timeout timeout = TimingWheel.getDefault().schedule(() -> response.complete(Response.TIMED_OUT), millis);
+        response.whenComplete((value, e) -> timeout.cancel());
+        return response;
     }
 
-    /** Sets if the challenge request has been accepted or declined */
+    /** Sets if the challenge request has been accepted or declined. It does nothing if the request has timed out */
     public void setRequestAccepted(boolean requestAccepted) {
-        synchronized (mutex) {
-            if (this.responseArrived || this.requestTimedOut)
-                return;
-
-            this.requestAccepted = requestAccepted;
-            this.responseArrived = true;
-            mutex.notify();
-        }
+        response.complete(requestAccepted ? Response.ACCEPTED : Response.DECLINED);
     }
 
     /** Returns true if the challenge request has been accepted, false otherwise */
     public boolean isRequestAccepted() {
-        synchronized (mutex) {
-            return requestAccepted;
-        }
+        return response.getNow(null) == Response.ACCEPTED;
     }
 
     /** Returns true if the challenge request has timed out, false otherwise */
     public boolean isRequestTimedOut() {
-        synchronized (mutex) {
-            return requestTimedOut;
-        }
+        return response.getNow(null) == Response.TIMED_OUT;
     }
 
-    /** Sets all the italian words and each translation */
-    public void setWords(List<String> itWords, List<String> enWords) {
-        synchronized (mutex) {
-            if (this.itWords == null && this.enWords == null) {
-                this.itWords = itWords;
-                this.enWords = enWords;
-            }
+    /**
+     * Sets the words of the challenge, if they have not been set before
+     * @param words the ids of the italian words
+     * @param translations the english translation of each word, in the same order. Some of them can be null
+     */
+    public void setWords(int[] words, String[] translations) {
+        setWords(words, AcceptedAnswers.of(translations));
+    }
+
+    /**
+     * Sets the words of the challenge, if they have not been set before
+     * @param words the ids of the italian words
+     * @param answers the answers accepted for each word, in the same order
+     */
+    public synchronized void setWords(int[] words, AcceptedAnswers answers) {
+        if (this.words == null) {
+            this.words = words;
+            this.answers = answers;
         }
     }
 
+    /** Returns the id of this challenge */
+    public long getId() { return id; }
+
     /** Returns who sent the challenge */
     public String getFrom() { return from; }
 
     /** Returns who was challenged */
     public String getTo() { return to; }
 
-    /** Returns the next italian word that the given user should translate */
-    public String getNextItWord(String username) {
-        if (username.equals(from) && fromIndex < itWords.size())
-            return itWords.get(fromIndex);
-        if (username.equals(to) && toIndex < itWords.size())
-            return itWords.get(toIndex);
-        return null;
+    /** Returns the slot of the given user, {@link #FROM} or {@link #TO}, or -1 if the user is not playing */
+    public int playerOf(String username) {
+        if (username.equals(from))
+            return FROM;
+        if (username.equals(to))
+            return TO;
+        return -1;
+    }
+
+    /** Returns the slot of the other player */
+    public static int opponentOf(int player) {
+        return 1 - player;
     }
 
-    /** Checks if the given user has given the right translation or not. It updates the user's score and then it goes
-     * to the next word.
-     * @param username user's username
-     * @param enWord the translation given by the user for its current word
+    /** Returns the next italian word that the given player should translate or null if there are no more words */
+    public String getNextItWord(Dictionary dictionary, int player) {
+        int next = counters[player * COUNTERS + NEXT];
+        return next < words.length ? dictionary.getWord(words[next]) : null;
+    }
+
+    /** Checks if the given player has given the right translation or not, by looking up its normalized form among
+     * the accepted answers of the word. It updates the player's score and then it goes to the next word.
+     * @param player the player's slot
+     * @param enWord the translation given by the player for its current word
      */
-    public void checkAndGoNext(String username, String enWord) {
-        boolean isRight;
-        String rightEnWord;
-        if (username.equals(from)) {
-            rightEnWord = enWords.get(fromIndex);
-            fromIndex++;
-            isRight = rightEnWord != null && rightEnWord.equalsIgnoreCase(enWord);
-            if (isRight) {
-                fromRight++;
-                fromPoints += Settings.getPointsRightTranslation();
-            } else {
-                fromWrong++;
-                fromPoints -= Settings.getPointsErrorPenalty();
-            }
-        } else if (username.equals(to)) {
-            rightEnWord = enWords.get(toIndex);
-            isRight = rightEnWord != null && rightEnWord.equalsIgnoreCase(enWord);
-            toIndex++;
-            if (isRight) {
-                toRight++;
-                toPoints += Settings.getPointsRightTranslation();
-            } else {
-                toWrong++;
-                toPoints -= Settings.getPointsErrorPenalty();
-            }
-        } else {
+    public void checkAndGoNext(int player, String enWord) {
+        int base = player * COUNTERS;
+        int next = counters[base + NEXT];
+        if (next >= words.length)
             return;
+        counters[base + NEXT] = next + 1;
+        if (answers.accepts(next, enWord)) {
+            counters[base + RIGHT]++;
+            counters[base + POINTS] += Settings.getPointsRightTranslation();
+        } else {
+            counters[base + WRONG]++;
+            counters[base + POINTS] -= Settings.getPointsErrorPenalty();
         }
 
-        if (hasPlayerEnded(from) && hasPlayerEnded(to))
+        if (hasPlayerEnded(FROM) && hasPlayerEnded(TO))
             onChallengeEnded();
     }
 
-    /** Returns true if the given player has ended the challenge, false otherwise. A user has ended the challenge if
+    /** Returns true if the given player has ended the challenge, false otherwise. A player has ended the challenge if
      * it has sent all the translations */
-    public boolean hasPlayerEnded(String username) {
-        if (username.equals(from)) {
-            return fromIndex == itWords.size();
-        } else if (username.equals(to)) {
-            return toIndex == itWords.size();
-        }
-        return true;
+    public boolean hasPlayerEnded(int player) {
+        return counters[player * COUNTERS + NEXT] == words.length;
     }
 
     /** Returns true if the challenge ended because of the timeout or because both users have sent all the translations */
     public boolean isGameEnded() {
-        return ended || (hasPlayerEnded(from) && hasPlayerEnded(to));
+        return ended || (hasPlayerEnded(FROM) && hasPlayerEnded(TO));
     }
 
-    /** Returns the points scored by the given user */
-    public int getPoints(String username) {
-        if (username.equals(from)) {
-            return fromPoints;
-        } else if (username.equals(to)) {
-            return toPoints;
-        }
-        return 0;
+    /** Returns the points scored by the given player */
+    public int getPoints(int player) {
+        return counters[player * COUNTERS + POINTS];
     }
 
-    /** Returns the points scored by opponent of the given user */
-    public int getOtherPoints(String username) {
-        if (username.equals(from)) {
-            return toPoints;
-        } else if (username.equals(to)) {
-            return fromPoints;
-        }
-        return 0;
+    /** Returns the points scored by opponent of the given player */
+    public int getOtherPoints(int player) {
+        return getPoints(opponentOf(player));
     }
 
-    /** Returns the points scored by the given user. If the user has won, it returns its points plus the extra points */
-    public int getFinalPoints(String username) {
-        int points = getPoints(username);
-        if (hasWon(username)) points += Settings.getExtraPoints();
+    /** Returns the points scored by the given player. If the player has won, it returns its points plus the extra
+     * points */
+    public int getFinalPoints(int player) {
+        int points = getPoints(player);
+        if (hasWon(player)) points += Settings.getExtraPoints();
         return points;
     }
 
-    /** Returns how many words has the given user translated correctly */
-    public int getRightCounter(String username) {
-        if (username.equals(from)) {
-            return fromRight;
-        } else if (username.equals(to)) {
-            return toRight;
-        }
-        return 0;
+    /** Returns how many words has the given player translated correctly */
+    public int getRightCounter(int player) {
+        return counters[player * COUNTERS + RIGHT];
     }
 
-    /** Returns how many words has the given user translated wrongly */
-    public int getWrongCounter(String username) {
-        if (username.equals(from)) {
-            return fromWrong;
-        } else if (username.equals(to)) {
-            return toWrong;
-        }
-        return 0;
+    /** Returns how many words has the given player translated wrongly */
+    public int getWrongCounter(int player) {
+        return counters[player * COUNTERS + WRONG];
     }
 
     /** Invoked when challenge ends */
@@ -217,17 +200,13 @@ public class Challenge {
         this.ended = true;
     }
 
-    /** Returns true if the given user has won the challenge, false otherwise */
-    public boolean hasWon(String username) {
-        if (username.equals(from))
-            return fromPoints > toPoints;
-        else if (username.equals(to))
-            return toPoints > fromPoints;
-        return false;
+    /** Returns true if the given player has won the challenge, false otherwise */
+    public boolean hasWon(int player) {
+        return getPoints(player) > getOtherPoints(player);
     }
 
     /** Sets the timer that will handle the challenge timeout */
-    public void setTimer(TimerTask timer) {
+    public void setTimer(TimingWheel.Timeout timer) {
         this.timer = timer;
     }
 
@@ -0,0 +1,148 @@
+package com.domenico.server;
+
+import com.domenico.shared.RandomSampler;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/** The words that can be used by the challenges, shared by all of them. Each word is identified by its index, so a
+ * challenge keeps just the ids of its words. It is immutable and it can be used by any thread.
+ * The words are kept in the binary dictionary format: a header with a magic number and the number of words, a table
+ * with the offset of each word and one more offset for the end, and then the words, packed and encoded in UTF-8.
+ * A dictionary file in this format is memory-mapped, so it is loaded without reading it and without copying it into
+ * the heap, and each word is found in constant time. The files in the text format, with a word on each line, can be
+ * converted with the {@link DictionaryConverter}. */
+public class Dictionary {
+
+    public static final String FILE_EXTENSION = ".wqd";
+    private static final int MAGIC = 0x57514431;    //"WQD1"
+    private static final int HEADER_LENGTH = 8;     //the magic number and the number of words
+
+    //The whole dictionary. It is only read with absolute gets, so it can be shared by the threads
+    private final ByteBuffer buffer;
+    private final int size;
+    //Where the words start
+    private final int dataStart;
+
+    private Dictionary(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer.order(ByteOrder.BIG_ENDIAN);
+        if (buffer.limit() < HEADER_LENGTH || buffer.getInt(0) != MAGIC)
+            throw new IOException("Not a dictionary file");
+        this.size = buffer.getInt(4);
+        this.dataStart = HEADER_LENGTH + (size + 1) * Integer.BYTES;
+        if (size < 0 || dataStart > buffer.limit() || dataStart + buffer.getInt(offsetPosition(size)) > buffer.limit())
+            throw new IOException("The dictionary file is truncated");
+    }
+
+    /** Returns a dictionary with the given words, kept into the heap */
+    public static Dictionary of(List<String> words) {
+        try {
+            return new Dictionary(ByteBuffer.wrap(encode(words)));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);   //the words have just been encoded
+        }
+    }
+
+    /**
+     * Memory-maps the given dictionary file
+     * @param file a file in the binary dictionary format
+     * @return the dictionary, whose words are read from the file when they are used
+     * @throws IOException if the file cannot be read or it is not a dictionary file
+     */
+    public static Dictionary map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            //the mapping stays valid after the channel has been closed
+            return new Dictionary(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Reads the words in the text format, a word on each line. The empty lines and the repeated words are skipped, so
+     * that the distinct ids of a challenge are distinct words as well
+     * @param inputStream where the words are read from. It is closed at the end
+     * @return the words read, in the order of their first line
+     * @throws IOException if an I/O error occurs
+     */
+    public static List<String> readText(InputStream inputStream) throws IOException {
+        Set<String> words = new LinkedHashSet<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.strip();
+                if (!line.isEmpty())
+                    words.add(line);
+            }
+        }
+        return new ArrayList<>(words);
+    }
+
+    /**
+     * Writes the given words into a file in the binary dictionary format
+     * @param words the words, whose ids will be their indexes
+     * @param file the file to write. It is replaced if it exists
+     * @throws IOException if an I/O error occurs
+     */
+    public static void write(List<String> words, Path file) throws IOException {
+        Files.write(file, encode(words));
+    }
+
+    /** Returns the given words in the binary dictionary format */
+    private static byte[] encode(List<String> words) {
+        int dataStart = HEADER_LENGTH + (words.size() + 1) * Integer.BYTES;
+        ByteArrayOutputStream data = new ByteArrayOutputStream(dataStart + words.size() * 8);
+        ByteBuffer table = ByteBuffer.allocate(dataStart);
+        table.putInt(MAGIC).putInt(words.size());
+        for (String word : words) {
+            table.putInt(data.size());
+            data.writeBytes(word.getBytes(StandardCharsets.UTF_8));
+        }
+        table.putInt(data.size());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(dataStart + data.size());
+        out.writeBytes(table.array());
+        out.writeBytes(data.toByteArray());
+        return out.toByteArray();
+    }
+
+    /** Returns how many words are in the dictionary */
+    public int size() {
+        return size;
+    }
+
+    /** Returns the word with the given id */
+    public String getWord(int id) {
+        if (id < 0 || id >= size)
+            throw new IndexOutOfBoundsException("No word with id " + id);
+        int start = buffer.getInt(offsetPosition(id));
+        int end = buffer.getInt(offsetPosition(id + 1));
+        byte[] bytes = new byte[end - start];
+        buffer.get(dataStart + start, bytes, 0, bytes.length);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Returns where the offset of the word with the given id is */
+    private static int offsetPosition(int id) {
+        return HEADER_LENGTH + id * Integer.BYTES;
+    }
+
+    /**
+     * Chooses random words, each one different from the others, in O(count) time whatever the dictionary's size is.
+     * @param count how many words should be chosen
+     * @return the ids of the chosen words
+     */
+    public int[] randomIds(int count) {
+        if (count > size)
+            throw new IllegalArgumentException("The dictionary has less words than the ones required");
+        return RandomSampler.sample(size, count);
+    }
+}
@@ -0,0 +1,38 @@
+package com.domenico.server;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/** Converts a file of words in the text format, with a word on each line like the 1000_common_italian_words.txt
+ * resource, into a file in the binary format of the {@link Dictionary}, which can be memory-mapped by the server.
+ * Usage: DictionaryConverter input.txt [output.wqd] */
+public class DictionaryConverter {
+
+    public static void main(String[] args) {
+        if (args.length < 1 || args.length > 2) {
+            System.out.println("Usage: DictionaryConverter input.txt [output" + Dictionary.FILE_EXTENSION + "]");
+            System.exit(1);
+        }
+        Path input = Paths.get(args[0]);
+        Path output = Paths.get(args.length == 2 ? args[1] : outputName(args[0]));
+        try {
+            List<String> words = Dictionary.readText(Files.newInputStream(input));
+            Dictionary.write(words, output);
+            System.out.printf("Converted %d words from %s to %s (%d bytes)%n", words.size(), input, output,
+                    Files.size(output));
+        } catch (IOException e) {
+            System.out.println("Cannot convert " + input + ": " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** Returns the name of the converted file: the name of the input file with the dictionary extension */
+    private static String outputName(String input) {
+        int dot = input.lastIndexOf('.');
+        String base = dot > input.lastIndexOf('/') ? input.substring(0, dot) : input;
+        return base + Dictionary.FILE_EXTENSION;
+    }
+}
@@ -1,47 +1,62 @@
 package com.domenico.server;
 
+import com.domenico.communication.BufferPool;
 import com.domenico.server.network.RMIServer;
+import com.domenico.shared.AsyncLogWriter;
+import com.domenico.shared.Logger;
+import com.domenico.shared.TimingWheel;
 
 import java.io.*;
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.file.Paths;
 
-/** Starting point for the WordQuizzle server. It loads the settings and all the italian words from the resources.
- * It also start the RMI service and the WordQuizzle server. */
+/** Starting point for the WordQuizzle server. It loads the settings and all the italian words, from the dictionary
+ * file if there is one or otherwise from the resources. It also start the RMI service and the WordQuizzle server. */
 public class MainClassWQServer {
 
     public static final String SETTINGS_FILE = "resources/wordquizzle.properties";
+    private static final Logger LOG = Logger.getLogger("Main");
 
     public static void main(String[] args) {
         try {
             //Load settings
             InputStream settingsStream = getFileFromResources(SETTINGS_FILE);
             Settings.loadSettings(settingsStream);
-            System.out.println("Settings loaded from "+SETTINGS_FILE+" file");
+            Logger.setLevel(Settings.getLogLevel());
+            LOG.info("Settings loaded from %s file", SETTINGS_FILE);
             //Load italian words
-            InputStream inputStream = getFileFromResources("resources/"+Settings.getItalianWordsFilename());
-            List<String> italianWords = loadItalianWords(inputStream);
-            System.out.println("Loaded "+ italianWords.size() +" italian words");
+            Dictionary dictionary = loadDictionary();
             //Run server
-            WQServer server = new WQServer(italianWords);
+            WQServer server = new WQServer(dictionary);
+            //Logs how the pooled buffers, the UDP server, the timers, the translations and the word sets have been
+            //used, in order to size them. They are logged at shutdown, before the log writer stops
+            AsyncLogWriter.getDefault().runBeforeClose(() -> {
+                LOG.info(BufferPool.getInstance().toString());
+                LOG.info(server.getUdpServer().toString());
+                LOG.info(TimingWheel.getDefault().toString());
+                LOG.info(server.getTranslationProvider().toString());
+                LOG.info(server.getWordSetPool().toString());
+            });
             server.start();
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
-    /** Loads from the local file all the italian words.
-     *  File downloaded from https://github.com/napolux/paroleitaliane/tree/master/paroleitaliane
+    /** Memory-maps the dictionary file, if it has been set, otherwise it loads all the italian words from the text
+     *  file in the resources, downloaded from https://github.com/napolux/paroleitaliane/tree/master/paroleitaliane
      * */
-    private static List<String> loadItalianWords(InputStream inputStream) throws IOException {
-        ArrayList<String> words = new ArrayList<>();
-        BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(inputStream));
-        String line;
-        while ((line = bufferedReader.readLine()) != null) {
-            words.add(line);
+    private static Dictionary loadDictionary() throws IOException {
+        Dictionary dictionary;
+        String dictionaryFile = Settings.getDictionaryFile();
+        if (dictionaryFile != null) {
+            dictionary = Dictionary.map(Paths.get(dictionaryFile));
+            LOG.info("Mapped %d italian words from %s", dictionary.size(), dictionaryFile);
+        } else {
+            InputStream inputStream = getFileFromResources("resources/"+Settings.getItalianWordsFilename());
+            dictionary = Dictionary.of(Dictionary.readText(inputStream));
+            LOG.info("Loaded %d italian words", dictionary.size());
         }
-        bufferedReader.close();
-        return words;
+        return dictionary;
     }
 
     /** Returns the input stream related to the file specified by its name which is inside the server's resources folder */
@@ -1,5 +1,11 @@
 package com.domenico.server;
 
+import com.domenico.server.network.TCPFrontEnd;
+import com.domenico.server.network.TCPServer;
+import com.domenico.server.network.TranslationProvider;
+import com.domenico.server.network.Translations;
+import com.domenico.shared.Logger;
+
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Properties;
@@ -23,6 +29,42 @@ public class Settings {
     private static int pointsErrorPenalty;
     //how many points the user gets when it wins the challenge
     private static int extraPoints;
+    //how many selector loops serve the TCP clients
+    private static int tcpSelectorLoops;
+    //how the TCP acceptor chooses the selector loop for a new connection
+    private static TCPServer.LoopBalancing tcpLoopBalancing;
+    //which threads handle the TCP requests
+    private static TCPServer.Dispatch tcpDispatch;
+    //how many threads handle the TCP requests when they are not handled by the selector loops
+    private static int tcpHandlerThreads;
+    //which front end serves the TCP clients
+    private static TCPFrontEnd.Mode tcpFrontEnd;
+    //the minimum level of the messages that are logged
+    private static Logger.Level logLevel;
+    //after how many milliseconds without requests a connection is closed. 0 if the connections are never closed
+    private static long idleTimeout;
+    //the path of the dictionary file in the binary format or null if the words are read from the text resource
+    private static String dictionaryFile;
+    //where the translations of the words are got from
+    private static TranslationProvider.Backend translationProvider;
+    //the path of the bilingual dictionary file used by the local translation provider
+    private static String translationDictionaryFile;
+    //how many sets of translated words are kept ready for the challenges. 0 if they are made when they are needed
+    private static int wordSetPoolSize;
+    //how many milliseconds pass at least between two sets of words made for the pool
+    private static long wordSetPoolInterval;
+    //the URL of the translation service, without the query
+    private static String translationUrl;
+    //how many milliseconds a connection to the translation service can take
+    private static long translationConnectTimeout;
+    //how many milliseconds the translation service can take to respond
+    private static long translationRequestTimeout;
+    //how many translations are cached into memory
+    private static int translationCacheSize;
+    //the path of the file where the translations are saved or null if they are not saved on disk
+    private static String translationCacheFile;
+    //true if all the words of the dictionary are translated when the server starts
+    private static boolean translationPrewarm;
 
     public static void loadSettings(InputStream inputStream) throws IOException {
         Properties prop = new Properties();
@@ -34,6 +76,37 @@ public class Settings {
         pointsRightTranslation = Integer.parseUnsignedInt((String) prop.get("points_right_translation"));
         pointsErrorPenalty = Integer.parseUnsignedInt((String) prop.get("points_error_penalty"));
         extraPoints = Integer.parseUnsignedInt((String) prop.get("extra_points"));
+        tcpSelectorLoops = Integer.parseUnsignedInt(prop.getProperty("tcp_selector_loops", "1"));
+        if (tcpSelectorLoops == 0) //one loop for each available core
+            tcpSelectorLoops = Runtime.getRuntime().availableProcessors();
+        tcpLoopBalancing = TCPServer.LoopBalancing.valueOf(prop.getProperty("tcp_loop_balancing", "round_robin").toUpperCase());
+        tcpDispatch = TCPServer.Dispatch.valueOf(prop.getProperty("tcp_dispatch", "inline").toUpperCase());
+        tcpHandlerThreads = Integer.parseUnsignedInt(prop.getProperty("tcp_handler_threads", "0"));
+        if (tcpHandlerThreads == 0) //one thread for each available core
+            tcpHandlerThreads = Runtime.getRuntime().availableProcessors();
+        tcpFrontEnd = TCPFrontEnd.Mode.valueOf(prop.getProperty("tcp_front_end", "nio").toUpperCase());
+        logLevel = Logger.Level.valueOf(prop.getProperty("log_level", "info").toUpperCase());
+        idleTimeout = Long.parseUnsignedLong(prop.getProperty("idle_timeout", "0"));
+        dictionaryFile = prop.getProperty("dictionary_file", "").strip();
+        if (dictionaryFile.isEmpty())
+            dictionaryFile = null;
+        translationProvider = TranslationProvider.Backend.valueOf(
+                prop.getProperty("translation_provider", "mymemory").strip().toUpperCase());
+        translationDictionaryFile = prop.getProperty("translation_dictionary_file", "").strip();
+        if (translationProvider == TranslationProvider.Backend.LOCAL && translationDictionaryFile.isEmpty())
+            throw new IOException("The local translation provider needs the translation_dictionary_file setting");
+        wordSetPoolSize = Integer.parseUnsignedInt(prop.getProperty("word_set_pool_size", "0"));
+        wordSetPoolInterval = Long.parseUnsignedLong(prop.getProperty("word_set_pool_interval", "1000"));
+        translationUrl = prop.getProperty("translation_url", Translations.MYMEMORY_URL).strip();
+        translationConnectTimeout = Long.parseUnsignedLong(prop.getProperty("translation_connect_timeout",
+                String.valueOf(Translations.DEFAULT_CONNECT_TIMEOUT)));
+        translationRequestTimeout = Long.parseUnsignedLong(prop.getProperty("translation_request_timeout",
+                String.valueOf(Translations.DEFAULT_REQUEST_TIMEOUT)));
+        translationCacheSize = Integer.parseUnsignedInt(prop.getProperty("translation_cache_size", "10000"));
+        translationCacheFile = prop.getProperty("translation_cache_file", "").strip();
+        if (translationCacheFile.isEmpty())
+            translationCacheFile = null;
+        translationPrewarm = Boolean.parseBoolean(prop.getProperty("translation_prewarm", "false").strip());
     }
 
     public static String getItalianWordsFilename() {
@@ -63,4 +136,76 @@ public class Settings {
     public static int getExtraPoints() {
         return extraPoints;
     }
+
+    public static int getTcpSelectorLoops() {
+        return tcpSelectorLoops;
+    }
+
+    public static TCPServer.LoopBalancing getTcpLoopBalancing() {
+        return tcpLoopBalancing;
+    }
+
+    public static TCPServer.Dispatch getTcpDispatch() {
+        return tcpDispatch;
+    }
+
+    public static int getTcpHandlerThreads() {
+        return tcpHandlerThreads;
+    }
+
+    public static TCPFrontEnd.Mode getTcpFrontEnd() {
+        return tcpFrontEnd;
+    }
+
+    public static Logger.Level getLogLevel() {
+        return logLevel;
+    }
+
+    public static long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public static String getDictionaryFile() {
+        return dictionaryFile;
+    }
+
+    public static TranslationProvider.Backend getTranslationProvider() {
+        return translationProvider;
+    }
+
+    public static String getTranslationDictionaryFile() {
+        return translationDictionaryFile;
+    }
+
+    public static int getWordSetPoolSize() {
+        return wordSetPoolSize;
+    }
+
+    public static long getWordSetPoolInterval() {
+        return wordSetPoolInterval;
+    }
+
+    public static String getTranslationUrl() {
+        return translationUrl;
+    }
+
+    public static long getTranslationConnectTimeout() {
+        return translationConnectTimeout;
+    }
+
+    public static long getTranslationRequestTimeout() {
+        return translationRequestTimeout;
+    }
+
+    public static int getTranslationCacheSize() {
+        return translationCacheSize;
+    }
+
+    public static String getTranslationCacheFile() {
+        return translationCacheFile;
+    }
+
+    public static boolean isTranslationPrewarm() {
+        return translationPrewarm;
+    }
 }
@@ -1,10 +1,10 @@
 package com.domenico.server;
 
 import com.domenico.communication.ConnectionData;
+import com.domenico.server.network.UserAttachment;
 import com.domenico.server.usersmanagement.UsersManagementException;
 
 import java.net.InetAddress;
-import java.nio.channels.SelectionKey;
 
 /**
  * Interface with all the methods that should be implemented to build a WordQuizzle handler which can handle all the
@@ -16,12 +16,12 @@ public interface WQHandler {
     /**
      * Invoked when a login request has arrived.
      * @param received the message arrived
-     * @param key who has sent the request
+     * @param user who has sent the request
      * @param inetAddress the remote address of the sender
      * @return the response to send back
      * @throws UsersManagementException if it's not possible to do the login
      */
-    ConnectionData handleLoginRequest(ConnectionData received, SelectionKey key, InetAddress inetAddress) throws UsersManagementException;
+    ConnectionData handleLoginRequest(ConnectionData received, UserAttachment user, InetAddress inetAddress) throws UsersManagementException;
 
     /**
      * Invoked when a logout request has arrived.
@@ -50,11 +50,11 @@ public interface WQHandler {
     /**
      * Invoked when a challenge request has arrived.
      * @param received the message arrived
-     * @param key who has sent the request
+     * @param user who has sent the request
      * @return the response to send back
      * @throws UsersManagementException if it's not possible forward the challenge
      */
-    ConnectionData handleChallengeRequest(ConnectionData received, SelectionKey key) throws UsersManagementException;
+    ConnectionData handleChallengeRequest(ConnectionData received, UserAttachment user) throws UsersManagementException;
 
     /**
      * Invoked when a score request has arrived.
@@ -75,30 +75,30 @@ public interface WQHandler {
     /**
      * Invoked when a translation has arrived.
      * @param received the message arrived
-     * @param key who has sent the request
+     * @param user who has sent the request
      * @return the response to send back
      */
-    ConnectionData handleTranslationArrived(ConnectionData received, SelectionKey key);
+    ConnectionData handleTranslationArrived(ConnectionData received, UserAttachment user);
 
     /**
      * Invoked when a challenge response has arrived.
      * @param challenge the challenge between the two users
-     * @param fromKey who has sent the request
-     * @param toKey who has received the request
+     * @param fromUser who has sent the request
+     * @param toUser who has received the request
      */
-    void handleChallengeResponse(Challenge challenge, SelectionKey fromKey, SelectionKey toKey);
+    void handleChallengeResponse(Challenge challenge, UserAttachment fromUser, UserAttachment toUser);
 
     /**
      * Invoked when the translation of the challenge's words is available.
      * @param challenge the challenge between the two users
-     * @param fromKey who has sent the request
-     * @param toKey who has received the request
+     * @param fromUser who has sent the request
+     * @param toUser who has received the request
      */
-    void handleChallengeWordsReady(Challenge challenge, SelectionKey fromKey, SelectionKey toKey);
+    void handleChallengeWordsReady(Challenge challenge, UserAttachment fromUser, UserAttachment toUser);
 
     /**
      * Invoked when the user disconnects.
-     * @param key user's key
+     * @param user the user that has disconnected
      */
-    void handleUserDisconnected(SelectionKey key);
+    void handleUserDisconnected(UserAttachment user);
 }
@@ -4,12 +4,16 @@ import com.domenico.communication.*;
 import com.domenico.server.network.*;
 import com.domenico.server.usersmanagement.UsersManagement;
 import com.domenico.server.usersmanagement.UsersManagementException;
+import com.domenico.shared.Logger;
+import com.domenico.shared.TimingWheel;
+import com.domenico.shared.VirtualThreads;
 import org.json.simple.JSONObject;
 
 import java.io.IOException;
 import java.net.*;
-import java.nio.channels.SelectionKey;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -20,46 +24,97 @@ import java.util.concurrent.Executors;
  */
 public class WQServer implements WQHandler {
 
+    private static final Logger LOG = Logger.getLogger("WQ");
+
     private final UsersManagement usersManagement = UsersManagement.getInstance();
-    private final List<String> italianWords;            //list of italian words
-    private final ExecutorService executors;            //executors that will run the ChallengeRequests. One of them also runs the UDP server
-    private final TCPServer tcpServer;                  //thread that handles all the tcp communications
+    private final Dictionary dictionary;                //the italian words of the challenges
+    private final ExecutorService executors;            //executors that translate the words of the challenges
+    private final TranslationProvider translations;     //where the translations of the words are got from
+    private final WordSetPool wordSets;                 //the words for the challenges, translated in background
+    private final TCPFrontEnd tcpServer;                //front end that handles all the tcp communications
     private final UDPServer udpServer;                  //thread that handles all the udp communications
-    private final Map<String, SelectionKey> mapToKey;   //maps username -> client's tcp key
+    private final Map<String, UserAttachment> mapToUser;    //maps username -> client's attachment
 
-    public WQServer(List<String> italianWords) throws IOException {
+    public WQServer(Dictionary dictionary) throws IOException {
         //Run registration service via RMI
         RMIServer.newRegistrationService();
-        this.executors = Executors.newCachedThreadPool();
-        this.udpServer = new UDPServer();
-        this.tcpServer = new TCPServer(this);
-        this.mapToKey = new HashMap<>();
-        this.italianWords = italianWords;
+        this.udpServer = new UDPServer(Settings.getChallengeRequestTimeout());
+        if (Settings.getTcpFrontEnd() == TCPFrontEnd.Mode.BLOCKING) {
+            //the translations block on the translation service, so they run on virtual threads as well
+            this.executors = VirtualThreads.newThreadPerTaskExecutor("challenge-request");
+            this.tcpServer = new BlockingTCPServer(this, Settings.getIdleTimeout());
+        } else {
+            this.executors = Executors.newCachedThreadPool();
+            this.tcpServer = new TCPServer(this, Settings.getTcpSelectorLoops(), Settings.getTcpLoopBalancing(),
+                    Settings.getTcpDispatch(), Settings.getTcpHandlerThreads(), Settings.getIdleTimeout());
+        }
+        this.mapToUser = new ConcurrentHashMap<>();
+        this.dictionary = dictionary;
+        this.translations = newTranslationProvider();
+        this.wordSets = new WordSetPool(dictionary, translations, Settings.getChallengeWords(),
+                Settings.getWordSetPoolSize(), Settings.getWordSetPoolInterval());
+    }
+
+    /** Returns the translation provider chosen by the settings. The cache in front of the translation service is
+     * prewarmed in background, if required */
+    private TranslationProvider newTranslationProvider() throws IOException {
+        if (Settings.getTranslationProvider() == TranslationProvider.Backend.LOCAL)
+            return LocalTranslations.load(dictionary, Paths.get(Settings.getTranslationDictionaryFile()));
+        String cacheFile = Settings.getTranslationCacheFile();
+        Translations service = new Translations(Settings.getTranslationUrl(), Settings.getTranslationConnectTimeout(),
+                Settings.getTranslationRequestTimeout());
+        TranslationCache cache = new TranslationCache(service, dictionary, Settings.getTranslationCacheSize(),
+                cacheFile == null ? null : Paths.get(cacheFile));
+        if (Settings.isTranslationPrewarm())
+            executors.execute(cache::prewarm);
+        return cache;
     }
 
     public void start() {
-        executors.execute(udpServer);
+        new Thread(udpServer, "udp-server").start();
+        wordSets.start();
         tcpServer.startProcessing();
         udpServer.stopProcessing();
+        wordSets.stop();
+        executors.shutdown();
+        try {
+            translations.close();
+        } catch (IOException e) {
+            LOG.warn("Cannot close the translations file: %s", e.getMessage());
+        }
+    }
+
+    /** Returns the server that handles the UDP communications, whose metrics show how the forwards are going */
+    public UDPServer getUdpServer() {
+        return udpServer;
+    }
+
+    /** Returns the pool of the words for the challenges, whose metrics show how often it has been found empty */
+    public WordSetPool getWordSetPool() {
+        return wordSets;
+    }
+
+    /** Returns the provider of the translations, whose metrics show how the translations have been got */
+    public TranslationProvider getTranslationProvider() {
+        return translations;
     }
 
     @Override
-    public ConnectionData handleLoginRequest(ConnectionData connectionData, SelectionKey key, InetAddress inetAddress) throws UsersManagementException {
-        UserAttachment attachment = (UserAttachment) key.attachment();
+    public ConnectionData handleLoginRequest(ConnectionData connectionData, UserAttachment attachment, InetAddress inetAddress) throws UsersManagementException {
         String username = connectionData.getUsername();
         String password = connectionData.getPassword();
         usersManagement.login(username, password);
         int udpPort = Integer.parseUnsignedInt(connectionData.getResponseData());
         attachment.setAddress(inetAddress, udpPort);
         attachment.setUsername(username);
-        mapToKey.put(username, key);
+        mapToUser.put(username, attachment);
         return ConnectionData.Factory.newSuccessResponse(); //Response is already available
     }
 
     @Override
     public ConnectionData handleLogoutRequest(ConnectionData received) throws UsersManagementException {
         usersManagement.logout(received.getUsername());
-        mapToKey.remove(received.getUsername());
+        mapToUser.remove(received.getUsername());
 
         return ConnectionData.Factory.newSuccessResponse(); //Response is already available
     }
@@ -81,22 +136,20 @@ public class WQServer implements WQHandler {
     }
 
     @Override
-    public ConnectionData handleChallengeRequest(ConnectionData received, SelectionKey key) throws UsersManagementException {
+    public synchronized ConnectionData handleChallengeRequest(ConnectionData received, UserAttachment fromUser) throws UsersManagementException {
         //Throws an exception if the request is not valid and the error is sent back to who requested the challenge
         String from = received.getUsername();
         String to = received.getFriendUsername();
-        System.out.println("Challenge arrived: "+from+" wants to challenge "+to);
+        LOG.info("Challenge arrived: %s wants to challenge %s", from, to);
 
         if (from.equals(to))
             throw new UsersManagementException("Non puoi sfidare te stesso");
         if (!usersManagement.areFriends(from, to))
             throw new UsersManagementException("Tu e "+to+" non siete amici");
-        if (!usersManagement.isOnline(to))
+        UserAttachment toUser = mapToUser.get(to);
+        if (!usersManagement.isOnline(to) || toUser == null)
             throw new UsersManagementException(to+" non è online in questo momento");
 
-        UserAttachment fromUser = (UserAttachment) key.attachment();
-        SelectionKey toKey = mapToKey.get(to);
-        UserAttachment toUser = (UserAttachment) toKey.attachment();
         //Il the user has already sent a challenge which is not timedout yet or it has not been accepted yet
         if (toUser.getChallenge() != null)
             throw new UsersManagementException(to+" ha una sfida in questo momento");
@@ -104,10 +157,10 @@ public class WQServer implements WQHandler {
             throw new UsersManagementException("Non puoi avviare più sfide contemporaneamente");
 
         Challenge challenge = new Challenge(from, to);
-        fromUser.setChallenge(challenge);
-        toUser.setChallenge(challenge);
+        fromUser.setChallenge(challenge, Challenge.FROM);
+        toUser.setChallenge(challenge, Challenge.TO);
         //Handling the challenge request via udp
-        executors.execute(new ChallengeRequest(this, udpServer, key, toKey, italianWords));
+        new ChallengeRequest(this, udpServer, fromUser, toUser, dictionary, wordSets, executors).start();
 
         //success because the challenge will be forwarded
         return ConnectionData.Factory.newSuccessResponse(); //Response is already available
@@ -115,9 +168,7 @@ public class WQServer implements WQHandler {
 
     //Async call
     @Override
-    public void handleChallengeResponse(Challenge challenge, SelectionKey fromKey, SelectionKey toKey) {
-        UserAttachment fromUser = (UserAttachment) fromKey.attachment();
-        UserAttachment toUser = (UserAttachment) toKey.attachment();
+    public void handleChallengeResponse(Challenge challenge, UserAttachment fromUser, UserAttachment toUser) {
         ConnectionData response;
         if (challenge.isRequestTimedOut()) {
             response = ConnectionData.Factory.newFailResponse("Tempo scaduto");
@@ -129,7 +180,7 @@ public class WQServer implements WQHandler {
             response = ConnectionData.Factory.newFailResponse(challenge.getTo() + " ha rifiutato la sfida");
         }
         //notify via tcp who has sent the challenge
-        tcpServer.sendToClient(response, fromKey);
+        fromUser.sendToClient(response);
         //Remove the challenge if it has not been accepted or it has timedout
         if (!challenge.isRequestAccepted()) {
             toUser.setChallenge(null);
@@ -138,23 +189,29 @@ public class WQServer implements WQHandler {
     }
 
     @Override
-    public void handleChallengeWordsReady(Challenge challenge, SelectionKey fromKey, SelectionKey toKey) {
-        UserAttachment fromUser = (UserAttachment) fromKey.attachment();
-        UserAttachment toUser = (UserAttachment) toKey.attachment();
-        String nextItWordFrom = challenge.getNextItWord(fromUser.getUsername());
-        String nextItWordTo = challenge.getNextItWord(toUser.getUsername());
+    public void handleChallengeWordsReady(Challenge challenge, UserAttachment fromUser, UserAttachment toUser) {
+        //the first translations can arrive before the timer has been set
+        synchronized (challenge) {
+            startChallenge(challenge, fromUser, toUser);
+        }
+    }
+
+    /** Sends the first word to both the users and starts the challenge timer. It holds the challenge's lock */
+    private void startChallenge(Challenge challenge, UserAttachment fromUser, UserAttachment toUser) {
+        String nextItWordFrom = challenge.getNextItWord(dictionary, Challenge.FROM);
+        String nextItWordTo = challenge.getNextItWord(dictionary, Challenge.TO);
         //Sends the first word via tcp to both
         if (nextItWordFrom != null && nextItWordTo != null) {
             long maxChallengeLength = Settings.getMaxChallengeLength();
             int challengeWords = Settings.getChallengeWords();
-            tcpServer.sendToClient(
-                    ConnectionData.Factory.newChallengeStart(maxChallengeLength, challengeWords, nextItWordFrom),
-                    fromKey);
-            tcpServer.sendToClient(
-                    ConnectionData.Factory.newChallengeStart(maxChallengeLength, challengeWords, nextItWordTo),
-                    toKey);
-            TimerTask timer = TimeIsUp.schedule(this::handleChallengeTimeout, maxChallengeLength, fromKey, toKey);
-            fromUser.getChallenge().setTimer(timer);
+            fromUser.sendToClient(
+                    ConnectionData.Factory.newChallengeStart(maxChallengeLength, challengeWords, nextItWordFrom));
+            toUser.sendToClient(
+                    ConnectionData.Factory.newChallengeStart(maxChallengeLength, challengeWords, nextItWordTo));
+            //the timeout is handled by the executor of who has sent the challenge, as the rest of the challenge
+            TimingWheel.Timeout timer = TimingWheel.getDefault().schedule(() -> fromUser.getExecutor().execute(
+                    () -> handleChallengeTimeout(challenge, fromUser, toUser)), maxChallengeLength);
+            challenge.setTimer(timer);
         } else {
             toUser.setChallenge(null);
             fromUser.setChallenge(null);
@@ -176,36 +233,45 @@ public class WQServer implements WQHandler {
     }
 
     @Override
-    public void handleUserDisconnected(SelectionKey key) {
-        UserAttachment attachment = (UserAttachment) key.attachment();
+    public void handleUserDisconnected(UserAttachment attachment) {
         try {
             usersManagement.logout(attachment.getUsername());
-            mapToKey.remove(attachment.getUsername());
+            mapToUser.remove(attachment.getUsername());
         } catch (UsersManagementException ignored) { }
     }
 
+    /** Handles a translation while holding the lock of its challenge only, so that the translations of different
+     * challenges are handled in parallel. The translations that arrive after the challenge has ended are ignored. */
     @Override
-    public synchronized ConnectionData handleTranslationArrived(ConnectionData received, SelectionKey key) {
-        UserAttachment thisAttch = (UserAttachment) key.attachment();
+    public ConnectionData handleTranslationArrived(ConnectionData received, UserAttachment thisAttch) {
         Challenge challenge = thisAttch.getChallenge();
-        challenge.checkAndGoNext(thisAttch.getUsername(), received.getResponseData());
+        if (challenge == null)
+            return null;
+        synchronized (challenge) {
+            //the challenge could have ended while waiting for the lock
+            if (thisAttch.getChallenge() != challenge)
+                return null;
+            return checkTranslation(challenge, received, thisAttch);
+        }
+    }
+
+    /** Checks the translation and replies with the next word or the challenge's end. It holds the challenge's lock */
+    private ConnectionData checkTranslation(Challenge challenge, ConnectionData received, UserAttachment thisAttch) {
+        int player = thisAttch.getPlayer();
+        challenge.checkAndGoNext(player, received.getResponseData());
         //If the challenge is ended for both
         if (challenge.isGameEnded()) {
-            SelectionKey otherKey;
-            if (challenge.getFrom().equals(thisAttch.getUsername()))
-                otherKey = mapToKey.get(challenge.getTo());
-            else
-                otherKey = mapToKey.get(challenge.getFrom());
+            int other = Challenge.opponentOf(player);
+            UserAttachment otherAttach = mapToUser.get(other == Challenge.FROM ? challenge.getFrom() : challenge.getTo());
             challenge.cancelTimer();
-            UserAttachment otherAttach = (UserAttachment) otherKey.attachment();
             handleChallengeEnd(thisAttch, otherAttach);
 
             //Sends to the other that the challenge ended
-            tcpServer.sendToClient(getChallengeEndByUsername(otherAttach.getUsername(), challenge), otherKey);
+            otherAttach.sendToClient(getChallengeEnd(other, challenge));
             //Sends to this player that the challenge ended
-            return getChallengeEndByUsername(thisAttch.getUsername(), challenge);
-        } else if (!challenge.hasPlayerEnded(thisAttch.getUsername())) { //If this was not the last word then sends the next one
-            String nextItWord = challenge.getNextItWord(thisAttch.getUsername());
+            return getChallengeEnd(player, challenge);
+        } else if (!challenge.hasPlayerEnded(player)) { //If this was not the last word then sends the next one
+            String nextItWord = challenge.getNextItWord(dictionary, player);
             //Sends the next word
             return ConnectionData.Factory.newChallengeWord(nextItWord);
         }
@@ -215,42 +281,46 @@ public class WQServer implements WQHandler {
         return null;
     }
 
-    /** Handle the end of the challenged between the given two users */
+    /** Handle the end of the challenged between the given two users. It holds the challenge's lock */
     private void handleChallengeEnd(UserAttachment first, UserAttachment second) {
-        System.out.printf("Challenge ended (%s vs %s)\n", first.getUsername(), second.getUsername());
+        LOG.info("Challenge ended (%s vs %s)", first.getUsername(), second.getUsername());
         Challenge challenge = first.getChallenge(); // first.chellenge == second.challenge
         if (challenge != null && second.getChallenge() != null) {
             challenge.onChallengeEnded(); //first.challenge == second.challenge
             try {
-                usersManagement.addScore(first.getUsername(), challenge.getFinalPoints(first.getUsername()));
-                usersManagement.addScore(second.getUsername(), challenge.getFinalPoints(second.getUsername()));
+                usersManagement.addScore(challenge.getFrom(), challenge.getFinalPoints(Challenge.FROM));
+                usersManagement.addScore(challenge.getTo(), challenge.getFinalPoints(Challenge.TO));
             } catch (UsersManagementException ignored) {}
             first.setChallenge(null);
             second.setChallenge(null);
         }
     }
 
-    /** Handle the challenge timeout. It does just small work because it is called by a timer.
-     * @param users the users involved into a challenge timeout
+    /** Handle the challenge timeout. It is called when the timer expires, unless the challenge is already ended.
+     * @param challenge the challenge that has timed out
+     * @param fromUser who has sent the challenge
+     * @param toUser who was challenged
      * */
-    private synchronized void handleChallengeTimeout(SelectionKey ...users) {
-        UserAttachment first = (UserAttachment) users[0].attachment();
-        UserAttachment second = (UserAttachment) users[1].attachment();
-        Challenge challenge = first.getChallenge(); //first.challenge == second.challenge
-        handleChallengeEnd(first, second);
-        tcpServer.sendToClient(getChallengeEndByUsername(first.getUsername(), challenge), users[0]);
-        tcpServer.sendToClient(getChallengeEndByUsername(second.getUsername(), challenge), users[1]);
+    private void handleChallengeTimeout(Challenge challenge, UserAttachment fromUser, UserAttachment toUser) {
+        synchronized (challenge) {
+            //the challenge could have ended while the timeout was handed over to this thread
+            if (fromUser.getChallenge() != challenge)
+                return;
+            handleChallengeEnd(fromUser, toUser);
+            fromUser.sendToClient(getChallengeEnd(Challenge.FROM, challenge));
+            toUser.sendToClient(getChallengeEnd(Challenge.TO, challenge));
+        }
     }
 
-    /** By giving the username and the chellenge, it returns a ConnectionData which contains the stats of
-     * the ended challenge.
+    /** By giving the player's slot and the chellenge, it returns a ConnectionData which contains the stats of
+     * the ended challenge. It holds the challenge's lock.
      * */
-    private synchronized ConnectionData getChallengeEndByUsername(String username, Challenge challenge) {
-        int correct = challenge.getRightCounter(username);
-        int wrong = challenge.getWrongCounter(username);
+    private ConnectionData getChallengeEnd(int player, Challenge challenge) {
+        int correct = challenge.getRightCounter(player);
+        int wrong = challenge.getWrongCounter(player);
         int notransl = Settings.getChallengeWords() - (correct + wrong);
-        int yourscore = challenge.getPoints(username);
-        int otherscore = challenge.getOtherPoints(username);
+        int yourscore = challenge.getPoints(player);
+        int otherscore = challenge.getOtherPoints(player);
         int extrapoints = yourscore > otherscore ? Settings.getExtraPoints() : 0;
 
         return ConnectionData.Factory.newChallengeEnd(correct, wrong, notransl, yourscore, otherscore, extrapoints);
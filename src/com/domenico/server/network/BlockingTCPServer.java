@@ -0,0 +1,187 @@
+package com.domenico.server.network;
+
+import com.domenico.communication.Codec;
+import com.domenico.communication.ConnectionData;
+import com.domenico.communication.FrameDecoder;
+import com.domenico.communication.TCPConnection;
+import com.domenico.server.WQHandler;
+import com.domenico.shared.Logger;
+import com.domenico.shared.SerialExecutor;
+import com.domenico.shared.TimingWheel;
+import com.domenico.shared.VirtualThreads;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.locks.ReentrantLock;
+
+/** TCP front end that serves each client with its own thread by using blocking I/O. The threads are virtual when the
+ * JVM supports them, otherwise they are platform threads. Each thread reads the client's requests, calls the handler
+ * and writes back the responses. The async messages are written by a serial executor of each client, so that who
+ * sends them never blocks on a slow client. It is an alternative to the {@link TCPServer} and it uses the same handler.
+ */
+public class BlockingTCPServer implements TCPFrontEnd {
+
+    private static final Logger LOG = Logger.getLogger("TCP");
+
+    //The handler that will handle the received message
+    private final WQHandler handler;
+    //The channel on which the connections are accepted. It is blocking
+    private final ServerSocketChannel serverChannel;
+    //Runs the thread of each connection and the writes of the async messages
+    private final ExecutorService threads;
+    //After how many milliseconds without requests a client is disconnected. 0 if the clients are never disconnected
+    private final long idleTimeout;
+    private volatile boolean running;
+
+    /**
+     * Instantiates the front end, bound to the server port
+     * @param handler the handler that will handle the received messages
+     * @param idleTimeout after how many milliseconds without requests a connection is closed. 0 never closes it
+     * @throws IOException if an I/O error occurs
+     */
+    public BlockingTCPServer(WQHandler handler, long idleTimeout) throws IOException {
+        this.handler = handler;
+        this.idleTimeout = idleTimeout;
+        this.serverChannel = ServerSocketChannel.open();
+        this.serverChannel.bind(new InetSocketAddress(TCPConnection.SERVER_PORT));
+        this.threads = VirtualThreads.newThreadPerTaskExecutor("tcp-client");
+        String kind = VirtualThreads.isAvailable() ? "virtual" : "platform";
+        LOG.info("Listening on port %d with a %s thread for each connection", TCPConnection.SERVER_PORT, kind);
+    }
+
+    /** Accepts the connections on the calling thread and starts a new thread for each of them */
+    @Override
+    public void startProcessing() {
+        running = true;
+        while (running) {
+            try {
+                SocketChannel client = serverChannel.accept();
+                try {
+                    LOG.info("Accepted connection for %s", client.getRemoteAddress());
+                    threads.execute(new Client(client));
+                } catch (IOException | RuntimeException e) {
+                    //the connection cannot be served, so it is closed rather than left open
+                    LOG.warn("Cannot serve a connection: %s", e);
+                    client.close();
+                }
+            } catch (IOException e) {
+                if (running)
+                    LOG.warn("Cannot accept a connection: %s", e.getMessage());
+                running = serverChannel.isOpen();
+            }
+        }
+        threads.shutdown();
+    }
+
+    @Override
+    public void stopProcessing() {
+        running = false;
+        try {
+            serverChannel.close();
+        } catch (IOException ignored) {}
+    }
+
+    /** The thread that serves a client until it disconnects */
+    private class Client implements Runnable {
+        private final SocketChannel channel;
+        private final TCPConnection connection;
+        private final UserAttachment attachment;
+        private final SocketAddress address;
+        //Serializes the writes. It is not a monitor, so a virtual thread blocked on a slow client doesn't pin its
+        //carrier thread
+        private final ReentrantLock writeLock = new ReentrantLock();
+
+        Client(SocketChannel channel) throws IOException {
+            this.channel = channel;
+            this.address = channel.getRemoteAddress();
+            this.connection = new TCPConnection(channel);
+            SerialExecutor writer = new SerialExecutor(threads);
+            //there is no loop that owns the client, so its asynchronous work runs in order with its messages
+            this.attachment = new UserAttachment(connection, data -> writer.execute(() -> sendAsync(data)), null,
+                    writer);
+        }
+
+        @Override
+        public void run() {
+            FrameDecoder frameDecoder = attachment.getFrameDecoder();
+            //closing the channel makes the blocked read fail, so this thread ends the connection as usual
+            IdleTimer idleTimer = idleTimeout > 0 ? new IdleTimer(TimingWheel.getDefault(), idleTimeout, this::closeIdle) : null;
+            try {
+                if (idleTimer != null)
+                    idleTimer.start();
+                while (true) {
+                    frameDecoder.readOnce(connection);
+                    if (idleTimer != null)
+                        idleTimer.touch();
+                    ConnectionData request;
+                    while ((request = frameDecoder.nextFrame()) != null) {
+                        handle(request);
+                    }
+                }
+            } catch (IOException ignored) {
+                //the client has disconnected or it cannot be reached anymore
+            } finally {
+                if (idleTimer != null)
+                    idleTimer.stop();
+                handler.handleUserDisconnected(attachment);
+                LOG.info("Ended connection with %s", address);
+                try {
+                    connection.endConnection();
+                } catch (IOException ignored) {}
+            }
+        }
+
+        /** Closes the connection, which has been idle for too long */
+        private void closeIdle() {
+            LOG.info("Closing idle connection with %s", address);
+            try {
+                channel.close();
+            } catch (IOException ignored) {}
+        }
+
+        /** Handles the given request and writes back its response, if any */
+        private void handle(ConnectionData request) throws IOException {
+            ConnectionData response = RequestDispatcher.dispatch(handler, request, attachment,
+                    channel.socket().getInetAddress());
+            LOG.debug("%s <- %s (%s)", request, address, attachment.getUsername());
+            if (response == null)
+                return;
+            writeLock.lock();
+            try {
+                send(response);
+                //the login response is still encoded with the previous codec, the new one is used from the next message
+                Codec codec = RequestDispatcher.negotiatedCodec(request, response);
+                if (codec != null)
+                    connection.setCodec(codec);
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        /** Writes the given message. The writes are serialized by the write lock */
+        private void send(ConnectionData data) throws IOException {
+            writeLock.lock();
+            try {
+                LOG.debug("%s -> %s (%s)", data, address, attachment.getUsername());
+                connection.sendData(data);
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        /** Writes an async message. If it cannot be written, the connection is closed and the client's thread ends */
+        private void sendAsync(ConnectionData data) {
+            try {
+                send(data);
+            } catch (IOException e) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {}
+            }
+        }
+    }
+}
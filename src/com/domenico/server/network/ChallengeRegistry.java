@@ -0,0 +1,102 @@
+package com.domenico.server.network;
+
+import com.domenico.server.Challenge;
+
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Registry of the challenge requests that are waiting for the challenged user's response, by challenge id. The
+ * responses are matched by the challenge id that they carry, so two users behind the same address cannot get each
+ * other's challenge, and by the address of the challenged user, so no one else can answer for it. It can be used by
+ * any thread. Each request expires after a given time: a response that arrives later, or that refers to a challenge
+ * which is not registered, is dropped and counted.
+ */
+class ChallengeRegistry {
+
+    //The requests waiting for a response, by challenge id
+    private final Map<Long, Entry> pending = new ConcurrentHashMap<>();
+    //How long a request waits for its response, in nanoseconds
+    private final long ttlNanos;
+    private final LongAdder unknown = new LongAdder();  //Responses to challenges that are not registered
+    private final LongAdder late = new LongAdder();     //Responses arrived after the request had expired
+    private final LongAdder expired = new LongAdder();  //Requests removed because no response has arrived in time
+
+    /** A request waiting for its response */
+    private static class Entry {
+        final Challenge challenge;
+        final InetSocketAddress address;    //the address of the challenged user, the only one that can answer
+        final long deadline;    //when the request expires, as given by System.nanoTime()
+
+        Entry(Challenge challenge, InetSocketAddress address, long deadline) {
+            this.challenge = challenge;
+            this.address = address;
+            this.deadline = deadline;
+        }
+    }
+
+    /**
+     * Creates an empty registry
+     * @param ttlMillis how many milliseconds a request waits for its response before expiring
+     */
+    ChallengeRegistry(long ttlMillis) {
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+    }
+
+    /** Registers the request of the given challenge, which is waiting for a response from the given address from now
+     * on */
+    void register(Challenge challenge, InetSocketAddress address) {
+        pending.put(challenge.getId(), new Entry(challenge, address, System.nanoTime() + ttlNanos));
+    }
+
+    /** Removes the request of the given challenge, for example because it has timed out */
+    void remove(Challenge challenge) {
+        pending.remove(challenge.getId());
+    }
+
+    /**
+     * Removes the request which a response refers to and returns its challenge. A response that doesn't come from
+     * the challenged user is counted as unknown and the request keeps waiting.
+     * @param challengeId the challenge id carried by the response
+     * @param from the address that sent the response
+     * @return the challenge or null if the response should be dropped, because the request is unknown or expired
+     */
+    Challenge answer(long challengeId, InetSocketAddress from) {
+        Entry entry = pending.get(challengeId);
+        if (entry == null || !entry.address.equals(from) || !pending.remove(challengeId, entry)) {
+            unknown.increment();
+            return null;
+        }
+        if (System.nanoTime() - entry.deadline > 0) {
+            late.increment();
+            return null;
+        }
+        return entry.challenge;
+    }
+
+    /** Removes the requests that have expired. A response that arrives after that is counted as unknown */
+    void purgeExpired() {
+        long now = System.nanoTime();
+        pending.values().removeIf(entry -> {
+            if (now - entry.deadline <= 0)
+                return false;
+            expired.increment();
+            return true;
+        });
+    }
+
+    /** Returns how many requests are waiting for a response */
+    int getPending() { return pending.size(); }
+
+    /** Returns how many responses referred to challenges that were not registered or came from another address */
+    long getUnknown() { return unknown.sum(); }
+
+    /** Returns how many responses arrived after their request had expired */
+    long getLate() { return late.sum(); }
+
+    /** Returns how many requests have expired without a response */
+    long getExpired() { return expired.sum(); }
+}
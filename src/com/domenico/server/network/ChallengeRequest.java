@@ -1,69 +1,117 @@
 package com.domenico.server.network;
 
+import com.domenico.communication.ConnectionData;
 import com.domenico.server.*;
-import com.domenico.shared.Utils;
+import com.domenico.shared.Logger;
 
-import java.nio.channels.SelectionKey;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
-/** Runnable that forwards a challenge request from the user A to the user B via UDP. After forwarding the request,
- * it waits for a response or the challenge timeout. If the challenge has been accepted by the challenged user, then
- * it gets random italian words and each translation. */
-public class ChallengeRequest implements Runnable {
+/** Forwards a challenge request from the user A to the user B via UDP. After forwarding the request, it doesn't wait:
+ * the response or the challenge timeout completes the challenge's future response, and the next steps run on the
+ * executor of the user who sent the request, as its requests do. If the challenge has been accepted by the challenged
+ * user, then it takes a set of random italian words, already translated, from the {@link WordSetPool}. When the pool
+ * is empty it makes the set on the translator threads, since it can block on the translation service. A pending
+ * challenge request doesn't hold any thread. */
+public class ChallengeRequest {
+
+    private static final Logger LOG = Logger.getLogger("Challenge");
+    private static final String CHALLENGE_FAILED = "Non è stato possibile avviare la sfida, riprova più tardi";
 
     private final UDPServer udpServer;
-    private final List<String> italianWords;
-    private final SelectionKey fromKey;
-    private final SelectionKey toKey;
+    private final Dictionary dictionary;
+    private final UserAttachment fromUser;
+    private final UserAttachment toUser;
     private final WQHandler handler;
+    //The word sets ready for the challenges, which also makes them when there are none
+    private final WordSetPool wordSets;
+    //The threads that get the translations, which block on the translation service
+    private final Executor translator;
 
-    public ChallengeRequest(WQHandler handler, UDPServer udpServer, SelectionKey fromKey, SelectionKey toKey, List<String> italianWords) {
+    public ChallengeRequest(WQHandler handler, UDPServer udpServer, UserAttachment fromUser, UserAttachment toUser,
+                            Dictionary dictionary, WordSetPool wordSets, Executor translator) {
         this.udpServer = udpServer;
-        this.fromKey = fromKey;
-        this.toKey = toKey;
-        this.italianWords = italianWords;
+        this.fromUser = fromUser;
+        this.toUser = toUser;
+        this.dictionary = dictionary;
         this.handler = handler;
+        this.wordSets = wordSets;
+        this.translator = translator;
     }
 
-    @Override
-    public void run() {
-        UserAttachment toUserAttachment = (UserAttachment) toKey.attachment();
-        Challenge challenge = toUserAttachment.getChallenge();
-        System.out.println("Forwarding challenge request from " + challenge.getFrom() + " to " + challenge.getTo());
+    /** Forwards the challenge request and returns without waiting for the response */
+    public void start() {
+        Challenge challenge = toUser.getChallenge();
+        Executor loop = fromUser.getExecutor();
+        LOG.info("Forwarding challenge request from %s to %s", challenge.getFrom(), challenge.getTo());
         //forward the challenge via udp
-        udpServer.forwardChallenge(challenge, toUserAttachment.getUdpAddress());
-        try {
-            //wait the challenge response or timeout
-            challenge.waitResponseOrTimeout(Settings.getChallengeRequestTimeout());
-        } catch (InterruptedException e) { return; }
-        //handle the response or the timeout
-        handler.handleChallengeResponse(challenge, fromKey, toKey);
-        //if the challenge is accepted, get random italian words and their english translations
-        if (challenge.isRequestAccepted()) {
-            //get random italian words
-            List<String> itWords = new ArrayList<>(Settings.getChallengeWords());
-            Utils.randomSubList(italianWords, Settings.getChallengeWords(), itWords);
-            //get the english translations
-            List<String> enWords = new ArrayList<>(Arrays.asList(Translations.translate(itWords)));
-            //print the selected words
-            printSelectedWords(itWords, enWords);
-            //update the challenge and notify that the words are ready
-            challenge.setWords(itWords, enWords);
-            handler.handleChallengeWordsReady(challenge, fromKey, toKey);
+        udpServer.forwardChallenge(challenge, toUser.getUdpAddress());
+        challenge.responseOrTimeout(Settings.getChallengeRequestTimeout())
+                .thenAcceptAsync(response -> onResponse(challenge, loop), loop)
+                .exceptionally(e -> {
+                    LOG.error("Challenge request from %s to %s failed: %s", challenge.getFrom(), challenge.getTo(), e);
+                    abort(challenge);
+                    return null;
+                });
+    }
+
+    /** Handles the response or the timeout and, if the challenge is accepted, starts getting the words */
+    private void onResponse(Challenge challenge, Executor loop) {
+        handler.handleChallengeResponse(challenge, fromUser, toUser);
+        if (!challenge.isRequestAccepted())
+            return;
+        //a set of words ready in the pool lets the challenge start at once
+        WordSetPool.WordSet ready = wordSets.poll();
+        if (ready != null) {
+            setWords(challenge, ready);
+            handler.handleChallengeWordsReady(challenge, fromUser, toUser);
+            return;
         }
+        //otherwise the words are selected and translated by the translator threads, then the challenge starts on the
+        //loop. When the translations don't block they are got on the loop as well
+        Executor executor = wordSets.isBlocking() ? translator : loop;
+        CompletableFuture.runAsync(() -> setWords(challenge, wordSets.generate()), executor)
+                .thenRunAsync(() -> handler.handleChallengeWordsReady(challenge, fromUser, toUser), loop)
+                .exceptionally(e -> {
+                    LOG.error("Cannot get the words of the challenge %s vs %s: %s", challenge.getFrom(),
+                            challenge.getTo(), e);
+                    abort(challenge);
+                    return null;
+                });
+    }
+
+    /** Ends the given challenge, which cannot start because of an error, so that both the users can play again. Who
+     * sent the request is told that the challenge has failed, and so is the challenged user if it has accepted it and
+     * it is waiting for the challenge to start */
+    private void abort(Challenge challenge) {
+        ConnectionData failed = ConnectionData.Factory.newFailResponse(CHALLENGE_FAILED);
+        if (fromUser.getChallenge() == challenge) {
+            fromUser.setChallenge(null);
+            fromUser.sendToClient(failed);
+        }
+        if (toUser.getChallenge() == challenge) {
+            toUser.setChallenge(null);
+            if (challenge.isRequestAccepted())
+                toUser.sendToClient(failed);
+        }
+    }
+
+    /** Sets the given italian words and their english translations into the given challenge */
+    private void setWords(Challenge challenge, WordSetPool.WordSet wordSet) {
+        //log the selected words
+        if (LOG.isDebugEnabled())
+            logSelectedWords(wordSet.getIds(), wordSet.getTranslations());
+        wordSet.setInto(challenge);
     }
 
-    /** Prints each italian word selected together with the translation got */
-    private void printSelectedWords(List<String> itWords, List<String> enWords) {
-        System.out.print("Selected words: [");
-        for (int i = 0; i < Settings.getChallengeWords(); i++) {
-            System.out.printf("(%s, %s)", itWords.get(i), enWords.get(i));
-            if (i == Settings.getChallengeWords() - 1)
-                System.out.println("]");
-            else
-                System.out.print(", ");
+    /** Logs each italian word selected together with the translation got */
+    private void logSelectedWords(int[] ids, String[] enWords) {
+        StringBuilder words = new StringBuilder("[");
+        for (int i = 0; i < ids.length; i++) {
+            if (i > 0)
+                words.append(", ");
+            words.append('(').append(dictionary.getWord(ids[i])).append(", ").append(enWords[i]).append(')');
         }
+        LOG.debug("Selected words: %s", words.append(']'));
     }
 }
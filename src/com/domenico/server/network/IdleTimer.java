@@ -0,0 +1,62 @@
+package com.domenico.server.network;
+
+import com.domenico.shared.TimingWheel;
+
+import java.util.concurrent.TimeUnit;
+
+/** Tells when a connection has been idle, which means that nothing has arrived from it for a given time. Each arrival
+ * just records the time, so the timer is not rescheduled for each request: when it expires it checks how long the
+ * connection has really been idle and, if it is not enough, it schedules itself again for the remaining time. */
+class IdleTimer {
+
+    private final TimingWheel wheel;
+    private final long idleMillis;
+    //Called by the wheel's thread when the connection has been idle. It should hand the work over to another thread
+    private final Runnable onIdle;
+    //When something has arrived from the connection for the last time, as given by System.nanoTime()
+    private volatile long lastActivity;
+    private volatile TimingWheel.Timeout timeout;
+    private volatile boolean stopped = false;
+
+    /**
+     * Creates a timer, which doesn't run until it is started
+     * @param wheel the wheel that runs the timer
+     * @param idleMillis after how many milliseconds without any arrival the connection is idle
+     * @param onIdle called when the connection has been idle
+     */
+    IdleTimer(TimingWheel wheel, long idleMillis, Runnable onIdle) {
+        this.wheel = wheel;
+        this.idleMillis = idleMillis;
+        this.onIdle = onIdle;
+    }
+
+    /** Starts counting the idle time from now */
+    void start() {
+        touch();
+        timeout = wheel.schedule(this::check, idleMillis);
+    }
+
+    /** Records that something has arrived from the connection */
+    void touch() {
+        lastActivity = System.nanoTime();
+    }
+
+    /** Stops the timer, for example because the connection has been closed */
+    void stop() {
+        stopped = true;
+        TimingWheel.Timeout timeout = this.timeout;
+        if (timeout != null)
+            timeout.cancel();
+    }
+
+    /** Called by the wheel when the timer expires */
+    private void check() {
+        if (stopped)
+            return;
+        long idle = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastActivity);
+        if (idle >= idleMillis)
+            onIdle.run();
+        else
+            timeout = wheel.schedule(this::check, idleMillis - idle);
+    }
+}
@@ -0,0 +1,160 @@
+package com.domenico.server.network;
+
+import com.domenico.server.Dictionary;
+import com.domenico.shared.Logger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/** The translations read from a local bilingual dictionary, so that the challenges never wait for an external
+ * service. The file has a line "italian word TAB english translation" for each word, the same format of the file
+ * saved by the {@link TranslationCache}, which can be used as it is. The translations are kept into a compact
+ * open-addressing hash table keyed by the id of the italian word: each slot is an id and the position of its
+ * translation into a single array of UTF-8 bytes. It is immutable after loading and it can be used by any thread. */
+public class LocalTranslations implements TranslationProvider {
+
+    private static final Logger LOG = Logger.getLogger("Translations");
+    private static final char SEPARATOR = '\t';
+
+    //The id plus one of the word in each slot, so that 0 means empty
+    private final int[] keys;
+    //Where the translation of the word in each slot starts and ends into the text
+    private final int[] starts;
+    private final int[] ends;
+    //All the translations, encoded in UTF-8 one after the other
+    private final byte[] text;
+    private final int size;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private LocalTranslations(int[] keys, int[] starts, int[] ends, byte[] text, int size) {
+        this.keys = keys;
+        this.starts = starts;
+        this.ends = ends;
+        this.text = text;
+        this.size = size;
+    }
+
+    /**
+     * Reads the translations of the words of the given dictionary from the given file. The lines of the words that
+     * are not in the dictionary and the malformed ones are skipped. When a word appears more than once the last line
+     * wins.
+     * @param dictionary the dictionary whose ids are the keys of the translations
+     * @param file the bilingual dictionary file
+     * @return the translations read
+     * @throws IOException if the file cannot be read
+     */
+    public static LocalTranslations load(Dictionary dictionary, Path file) throws IOException {
+        long start = System.nanoTime();
+        try (InputStream inputStream = Files.newInputStream(file)) {
+            LocalTranslations translations = read(dictionary, inputStream);
+            LOG.info("Loaded %d translations from %s in %d ms", translations.size(), file,
+                    (System.nanoTime() - start) / 1_000_000);
+            return translations;
+        }
+    }
+
+    /** Same as {@link #load(Dictionary, Path)} but the translations are read from the given stream */
+    static LocalTranslations read(Dictionary dictionary, InputStream inputStream) throws IOException {
+        //the ids of the words are needed only while loading
+        Map<String, Integer> ids = new HashMap<>(dictionary.size() * 2);
+        for (int id = 0; id < dictionary.size(); id++) {
+            ids.put(dictionary.getWord(id), id);
+        }
+        //a power of two with room for twice the words, so that the table is never full
+        int length = Integer.highestOneBit(Math.max(1, dictionary.size()) * 2 - 1) << 1;
+        int[] keys = new int[length];
+        int[] starts = new int[length];
+        int[] ends = new int[length];
+        int mask = length - 1;
+        byte[] text = new byte[1 << 12];
+        int textLength = 0;
+        int size = 0;
+        int skipped = 0;
+        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            int separator = line.indexOf(SEPARATOR);
+            Integer id = separator < 0 ? null : ids.get(line.substring(0, separator).strip());
+            String translation = separator < 0 ? "" : line.substring(separator + 1).strip();
+            if (id == null || translation.isEmpty()) {
+                if (!line.isBlank())
+                    skipped++;
+                continue;
+            }
+            byte[] bytes = translation.getBytes(StandardCharsets.UTF_8);
+            if (textLength + bytes.length > text.length)
+                text = Arrays.copyOf(text, Math.max(text.length * 2, textLength + bytes.length));
+            System.arraycopy(bytes, 0, text, textLength, bytes.length);
+            int slot = slotOf(keys, mask, id);
+            if (keys[slot] == 0) {
+                keys[slot] = id + 1;
+                size++;
+            }
+            starts[slot] = textLength;
+            textLength += bytes.length;
+            ends[slot] = textLength;
+        }
+        if (skipped > 0)
+            LOG.warn("Skipped %d lines of the translations that are malformed or not in the dictionary", skipped);
+        return new LocalTranslations(keys, starts, ends, Arrays.copyOf(text, textLength), size);
+    }
+
+    /** Returns the slot of the given id: the one which holds it or the empty one where it should be put */
+    private static int slotOf(int[] keys, int mask, int id) {
+        int hash = id * 0x9E3779B9;  //spreads the close ids
+        int slot = (hash ^ hash >>> 16) & mask;
+        while (keys[slot] != 0 && keys[slot] != id + 1) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /** Returns the translation of the word with the given id or null if there isn't one */
+    public String getTranslation(int id) {
+        int slot = slotOf(keys, keys.length - 1, id);
+        if (keys[slot] == 0)
+            return null;
+        return new String(text, starts[slot], ends[slot] - starts[slot], StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String[] translate(int[] ids) {
+        String[] enWords = new String[ids.length];
+        int found = 0;
+        for (int i = 0; i < ids.length; i++) {
+            enWords[i] = getTranslation(ids[i]);
+            if (enWords[i] != null)
+                found++;
+        }
+        hits.add(found);
+        misses.add(ids.length - found);
+        return enWords;
+    }
+
+    /** The translations are into memory, so they never block */
+    @Override
+    public boolean isBlocking() {
+        return false;
+    }
+
+    /** Returns how many words have a translation */
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("LocalTranslations{size=%d, textBytes=%d, slots=%d, hits=%d, misses=%d}", size,
+                text.length, keys.length, hits.sum(), misses.sum());
+    }
+}
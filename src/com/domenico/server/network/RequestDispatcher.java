@@ -0,0 +1,79 @@
+package com.domenico.server.network;
+
+import com.domenico.communication.Codec;
+import com.domenico.communication.ConnectionData;
+import com.domenico.server.WQHandler;
+import com.domenico.server.usersmanagement.UsersManagementException;
+import com.domenico.shared.Logger;
+
+import java.net.InetAddress;
+
+/** Calls the right handler's method for each request received via TCP. It is used by every TCP front end, so that they
+ * handle the requests in the same way. */
+class RequestDispatcher {
+
+    private static final Logger LOG = Logger.getLogger("TCP");
+    private static final String UNEXPECTED_ERROR = "C'è stato un problema, riprova più tardi";
+
+    /**
+     * Calls the right handler's method for the given request.
+     * @param handler the handler that handles the request
+     * @param received the request received
+     * @param user who has sent the request
+     * @param address the remote address of the user
+     * @return the response that should be sent back or null if there isn't one. A request whose handling fails
+     * unexpectedly gets a fail response, so that the user doesn't wait forever
+     */
+    static ConnectionData dispatch(WQHandler handler, ConnectionData received, UserAttachment user, InetAddress address) {
+        ConnectionData response = null;
+        try {
+            if (ConnectionData.Validator.isLoginRequest(received)) {
+                response = handler.handleLoginRequest(received, user, address);
+                Codec codec = Codec.forName(received.getCodecName());
+                if (codec != null && ConnectionData.Validator.isSuccessResponse(response))
+                    response = ConnectionData.Factory.newSuccessResponse(codec.getName());
+
+            } else if (ConnectionData.Validator.isLogoutRequest(received)) {
+                response = handler.handleLogoutRequest(received);
+
+            } else if (ConnectionData.Validator.isAddFriendRequest(received)) {
+                response = handler.handleAddFriendRequest(received);
+
+            } else if (ConnectionData.Validator.isFriendListRequest(received)) {
+                response = handler.handleFriendListRequest(received);
+
+            } else if (ConnectionData.Validator.isChallengeRequest(received)) {
+                response = handler.handleChallengeRequest(received, user);
+
+            } else if (ConnectionData.Validator.isChallengeWord(received)) {
+                response = handler.handleTranslationArrived(received, user);
+
+            } else if (ConnectionData.Validator.isScoreRequest(received)) {
+                response = handler.handleScoreRequest(received);
+
+            } else if (ConnectionData.Validator.isLeaderboardRequest(received)) {
+                response = handler.handleLeaderboardRequest(received);
+
+            }
+        } catch (UsersManagementException e) {
+            response = ConnectionData.Factory.newFailResponse(e.getMessage());
+        } catch (RuntimeException e) {
+            LOG.error("Cannot handle a request from %s: %s", user.getUsername(), e);
+            response = ConnectionData.Factory.newFailResponse(UNEXPECTED_ERROR);
+        }
+        return response;
+    }
+
+    /**
+     * Returns the codec that the user's connection should use after sending the given response, or null if the codec
+     * doesn't change. The response must be sent with the previous codec.
+     * @param received the request received
+     * @param response the response to the request
+     * @return the codec negotiated by a successful login request or null
+     */
+    static Codec negotiatedCodec(ConnectionData received, ConnectionData response) {
+        if (ConnectionData.Validator.isLoginRequest(received) && ConnectionData.Validator.isSuccessResponse(response))
+            return Codec.forName(received.getCodecName());
+        return null;
+    }
+}
@@ -0,0 +1,18 @@
+package com.domenico.server.network;
+
+/** Interface of the servers that accept the TCP connections of the clients and that give their requests to a
+ * {@link com.domenico.server.WQHandler}. Each front end serves the clients in its own way. */
+public interface TCPFrontEnd {
+
+    /** The available front ends */
+    enum Mode {
+        NIO,        //the selector loops of the TCPServer
+        BLOCKING    //the BlockingTCPServer, with a thread for each connection
+    }
+
+    /** Serves the clients until {@link #stopProcessing()} is called. It blocks the calling thread */
+    void startProcessing();
+
+    /** Stops serving the clients */
+    void stopProcessing();
+}
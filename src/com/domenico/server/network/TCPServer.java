@@ -1,50 +1,100 @@
 package com.domenico.server.network;
 
-import com.domenico.communication.ConnectionData;
 import com.domenico.communication.TCPConnection;
-import com.domenico.server.usersmanagement.UsersManagementException;
 import com.domenico.server.WQHandler;
+import com.domenico.shared.Logger;
 import com.domenico.shared.Multiplexer;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.ServerSocket;
-import java.net.SocketAddress;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
-import java.util.LinkedList;
-
-/** This class extends the {@link Multiplexer} class and it handles all the TCP communications from and to the clients.
- * When a message arrives, call the right handler's method and leaves it to the rest of the job. The handler sometimes
- * can return a message that should be sent back to the client. Otherwise this class also implements the functionalities
- * to send async messages to the clients.
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** This class extends the {@link Multiplexer} class and it is the acceptor of the TCP reactor group. It accepts the
+ * connections from the clients and hands each of them over to one of the {@link TCPWorker} selector loops, which then
+ * handles all the TCP communications with that client. The loop is chosen in a round robin fashion or by picking the
+ * one that is serving less connections. Each client stays on the same loop until it disconnects.
+ * The requests are handled by the loops themselves or by a pool of handler threads shared by all the loops, so that a
+ * slow request (for example one that saves the users on disk) doesn't stop the I/O of the other clients.
  */
-public class TCPServer extends Multiplexer {
-
-    //The handler that will handle the received message
-    private final WQHandler handler;
-    //A list, protected by its mutex, that contains each message that should be sent to a defined client
-    private final Object mutex = new Object();
-    private final LinkedList<ASyncResponse> aSyncResponses = new LinkedList<>();
-
-    /** Inner class that represent an async message that should be sent to a specified client */
-    private static class ASyncResponse {
-        ConnectionData data;
-        SelectionKey key;
-
-        public ASyncResponse(ConnectionData data, SelectionKey key) {
-            this.data = data;
-            this.key = key;
-        }
+public class TCPServer extends Multiplexer implements TCPFrontEnd {
+
+    private static final Logger LOG = Logger.getLogger("TCP");
+
+    /** How the acceptor chooses the loop that will serve a new connection */
+    public enum LoopBalancing {
+        ROUND_ROBIN,
+        LEAST_LOAD
+    }
+
+    /** Which threads call the handler's methods for the received requests */
+    public enum Dispatch {
+        INLINE,         //the selector loop that has read the request
+        WORKER_POOL     //a pool of handler threads, the selector loops just do the network I/O
     }
 
-    public TCPServer(WQHandler handler) throws IOException {
+    //The selector loops that handle the clients' communications
+    private final TCPWorker[] workers;
+    //The strategy used to choose a loop for each new connection
+    private final LoopBalancing balancing;
+    //The next loop that will be chosen by the round robin strategy
+    private int nextWorker;
+    //The threads that handle the requests or null if the loops handle them
+    private final ExecutorService handlerThreads;
+
+    /**
+     * Instantiates the acceptor and the selector loops. The loops start when {@link #startProcessing()} is called.
+     * @param handler the handler that will handle the received messages
+     * @param loops how many selector loops should serve the clients. Must be positive
+     * @param balancing how a loop is chosen for each new connection
+     * @param dispatch which threads handle the received requests
+     * @param handlerThreads how many threads handle the requests when the dispatch is {@link Dispatch#WORKER_POOL}
+     * @param idleTimeout after how many milliseconds without requests a connection is closed. 0 never closes it
+     * @throws IOException if an I/O error occurs
+     */
+    public TCPServer(WQHandler handler, int loops, LoopBalancing balancing, Dispatch dispatch, int handlerThreads,
+                     long idleTimeout) throws IOException {
         super(ServerSocketChannel.open(), SelectionKey.OP_ACCEPT);
+        if (loops <= 0)
+            throw new IllegalArgumentException("At least one selector loop is needed");
         ServerSocket serverSocket = ((ServerSocketChannel) channel).socket();
         serverSocket.bind(new InetSocketAddress(TCPConnection.SERVER_PORT));
-        print("Listening on port " + TCPConnection.SERVER_PORT);
-        this.handler = handler;
+        LOG.info("Listening on port %d with %d selector loops (%s)", TCPConnection.SERVER_PORT, loops, balancing);
+        this.balancing = balancing;
+        if (dispatch == Dispatch.WORKER_POOL) {
+            if (handlerThreads <= 0)
+                throw new IllegalArgumentException("At least one handler thread is needed");
+            AtomicInteger threadIndex = new AtomicInteger(0);
+            this.handlerThreads = Executors.newFixedThreadPool(handlerThreads,
+                    task -> new Thread(task, "tcp-handler-" + threadIndex.getAndIncrement()));
+            LOG.info("Requests handled by %d handler threads", handlerThreads);
+        } else {
+            this.handlerThreads = null;
+        }
+        this.workers = new TCPWorker[loops];
+        for (int i = 0; i < loops; i++) {
+            workers[i] = new TCPWorker(handler, i, this.handlerThreads, idleTimeout);
+        }
+    }
+
+    /** Starts each selector loop on its own thread and then runs the acceptor on the calling thread. When the acceptor
+     * stops, the loops and the handler threads are stopped as well. */
+    @Override
+    public void startProcessing() {
+        for (int i = 0; i < workers.length; i++) {
+            new Thread(workers[i], "tcp-loop-" + i).start();
+        }
+        super.startProcessing();
+        for (TCPWorker worker : workers) {
+            worker.stopProcessing();
+        }
+        if (handlerThreads != null)
+            handlerThreads.shutdown();
     }
 
     /** Called when the method accept() will not block the thread */
@@ -52,123 +102,37 @@ public class TCPServer extends Multiplexer {
     protected void onAcceptable(SelectionKey key) throws IOException {
         ServerSocketChannel channel = (ServerSocketChannel) key.channel();
         SocketChannel client = channel.accept();
-        print("Accepted connection for "+client.getRemoteAddress());
+        if (client == null)
+            return;
+        LOG.info("Accepted connection for %s", client.getRemoteAddress());
         client.configureBlocking(false);    //non-blocking
 
-        UserAttachment attachment = new UserAttachment(client);
-        client.register(selector, SelectionKey.OP_READ, attachment);
+        nextLoop().addClient(client);
     }
 
-    /**
-     * Called when the method read() will not block the thread
-     */
-    @Override
-    protected void onReadable(SelectionKey key) throws IOException {
-        SocketChannel client = (SocketChannel) key.channel();
-        UserAttachment attachment = (UserAttachment) key.attachment();
-        TCPConnection tcpConnection = attachment.getTcpConnection();
-
-        ConnectionData received = tcpConnection.receiveData();
-        try {
-            ConnectionData response = null;
-            if (ConnectionData.Validator.isLoginRequest(received)) {
-                response = handler.handleLoginRequest(received, key, client.socket().getInetAddress());
-
-            } else if (ConnectionData.Validator.isLogoutRequest(received)) {
-                response = handler.handleLogoutRequest(received);
-
-            } else if (ConnectionData.Validator.isAddFriendRequest(received)) {
-                response = handler.handleAddFriendRequest(received);
-
-            } else if (ConnectionData.Validator.isFriendListRequest(received)) {
-                response = handler.handleFriendListRequest(received);
-
-            } else if (ConnectionData.Validator.isChallengeRequest(received)) {
-                response = handler.handleChallengeRequest(received, key);
-
-            } else if (ConnectionData.Validator.isChallengeWord(received)) {
-                response = handler.handleTranslationArrived(received, key);
-
-            } else if (ConnectionData.Validator.isScoreRequest(received)) {
-                response = handler.handleScoreRequest(received);
-
-            } else if (ConnectionData.Validator.isLeaderboardRequest(received)) {
-                response = handler.handleLeaderboardRequest(received);
-
+    /** Returns the selector loop that should serve the next accepted connection */
+    private TCPWorker nextLoop() {
+        if (balancing == LoopBalancing.LEAST_LOAD) {
+            TCPWorker chosen = workers[0];
+            for (int i = 1; i < workers.length; i++) {
+                if (workers[i].getConnections() < chosen.getConnections())
+                    chosen = workers[i];
             }
-            attachment.setResponse(response);
-        } catch (UsersManagementException e) {
-            attachment.setResponse(ConnectionData.Factory.newFailResponse(e.getMessage()));
+            return chosen;
         }
-        print(received.toString(), "<-", client.getRemoteAddress(), attachment.getUsername());
-        //If the response is already available then go write it, otherwise stay interested on read
-        if (attachment.getResponse() != null)
-            client.register(selector, SelectionKey.OP_WRITE, attachment);
+        TCPWorker chosen = workers[nextWorker];
+        nextWorker = (nextWorker + 1) % workers.length;
+        return chosen;
     }
 
-    /** Called when the method write() will not block the thread */
     @Override
-    protected void onWritable(SelectionKey key) throws IOException {
-        SocketChannel client = (SocketChannel) key.channel();
-        UserAttachment attachment = (UserAttachment) key.attachment();
-        TCPConnection tcpConnection = attachment.getTcpConnection();
-        ConnectionData response = attachment.getResponse();
-
-        if (response != null) {
-            print(response.toString(), "->", client.getRemoteAddress(), attachment.getUsername());
-            tcpConnection.sendData(response);
-            attachment.setResponse(null);
-            key.interestOps(SelectionKey.OP_READ);
-        }
-    }
+    protected void onReadable(SelectionKey key) throws IOException {}   //never invoked, the loops read from the clients
 
-    /**
-     * Called when the connection with a client is closed
-     */
     @Override
-    protected void onEndConnection(SelectionKey key) throws IOException {
-        SocketChannel client = (SocketChannel) key.channel();
-
-        handler.handleUserDisconnected(key);
-
-        print("Ended connection with "+client.getRemoteAddress());
-    }
+    protected void onWritable(SelectionKey key) throws IOException {}   //never invoked, the loops write to the clients
 
     @Override
-    protected void onWakeUp() {
-        synchronized (mutex) {
-            //If there is at least a request to forward, then go write into the socket
-            while (!aSyncResponses.isEmpty()) {
-                ASyncResponse aSyncResponse = aSyncResponses.pop();
-                UserAttachment attachment = (UserAttachment) aSyncResponse.key.attachment();
-                attachment.setResponse(aSyncResponse.data);
-                if (aSyncResponse.key.isValid())
-                    aSyncResponse.key.interestOps(SelectionKey.OP_WRITE);
-            }
-        }
-    }
-
-    /**
-     * Sends the given message to the given client.
-     * @param data the message that should be sent
-     * @param key the key that represent the client
-     */
-    public void sendToClient(ConnectionData data, SelectionKey key) {
-        synchronized (mutex) {
-            aSyncResponses.push(new ASyncResponse(data, key));
-            super.wakeUp();
-        }
-    }
-
-    /** Print the message arrived or that was sent */
-    private void print(String message, String direction, SocketAddress toAddress, String username) {
-        System.out.printf("[TCP]: %s %s %s (%s)\n", message, direction, toAddress, username);
-    }
-
-    /** Print a generic message */
-    private void print(String str) {
-        System.out.println("[TCP]: "+str);
-    }
+    protected void onEndConnection(SelectionKey key) throws IOException {}  //never invoked, the loops handle it
 
     @Override
     protected void onTimeout() {}   //never invoked because the select() has no timeout in this thread
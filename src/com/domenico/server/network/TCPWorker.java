@@ -0,0 +1,288 @@
+package com.domenico.server.network;
+
+import com.domenico.communication.Codec;
+import com.domenico.communication.ConnectionData;
+import com.domenico.communication.TCPConnection;
+import com.domenico.server.WQHandler;
+import com.domenico.shared.Logger;
+import com.domenico.shared.Multiplexer;
+import com.domenico.shared.SerialExecutor;
+import com.domenico.shared.TimingWheel;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** This class extends the {@link Multiplexer} class and it is one of the selector loops of the {@link TCPServer}.
+ * It handles all the TCP communications from and to the clients that the acceptor has handed over to it. When a
+ * message arrives, call the right handler's method and leaves it to the rest of the job. The handler sometimes
+ * can return a message that should be sent back to the client. Otherwise this class also implements the functionalities
+ * to send async messages to the clients which are owned by this loop.
+ * The handler's methods are called by this loop or, when a pool of handler threads is given, by that pool. In the
+ * second case the requests of each client are handled one at a time and in the order they have arrived, and the
+ * responses come back to this loop, which is the only one that writes to its clients.
+ */
+public class TCPWorker extends Multiplexer implements Runnable {
+
+    //The handler that will handle the received message
+    private final WQHandler handler;
+    //The threads that call the handler's methods or null if this loop calls them
+    private final Executor handlerThreads;
+    //Logs the messages of this loop, named after its index inside the reactor group
+    private final Logger log;
+    //How many connections this loop is currently serving
+    private final AtomicInteger connections = new AtomicInteger(0);
+    //Requests completely received by the last read. Reused on each read
+    private final List<ConnectionData> received = new ArrayList<>();
+    //Clients that have new async messages to flush. They are flushed by a single task after the queued messages
+    private final List<SelectionKey> toFlush = new ArrayList<>();
+    //After how many milliseconds without requests a client is disconnected. 0 if the clients are never disconnected
+    private final long idleTimeout;
+
+    /**
+     * Instantiates a selector loop
+     * @param handler the handler that will handle the received messages
+     * @param index the index of this loop inside the reactor group
+     * @param handlerThreads the threads that call the handler's methods or null if this loop should call them
+     * @param idleTimeout after how many milliseconds without requests a client is disconnected. 0 never disconnects it
+     * @throws IOException if an I/O error occurs
+     */
+    public TCPWorker(WQHandler handler, int index, Executor handlerThreads, long idleTimeout) throws IOException {
+        super();
+        this.handler = handler;
+        this.log = Logger.getLogger("TCP-" + index);
+        this.handlerThreads = handlerThreads;
+        this.idleTimeout = idleTimeout;
+    }
+
+    @Override
+    public void run() {
+        log.info("Selector loop is running");
+        this.startProcessing();
+    }
+
+    /**
+     * Hands over an accepted client to this loop. The client is registered by this loop's thread, which is the only
+     * one that can register a channel without blocking on the selector.
+     * @param client the accepted client, already in non-blocking mode
+     */
+    public void addClient(SocketChannel client) {
+        connections.incrementAndGet();
+        execute(() -> register(client));
+    }
+
+    /** Registers the given client on this loop's selector */
+    private void register(SocketChannel client) {
+        try {
+            SelectionKey key = client.register(selector, SelectionKey.OP_READ);
+            Executor requestExecutor = handlerThreads == null ? null : new SerialExecutor(handlerThreads);
+            UserAttachment attachment = new UserAttachment(new TCPConnection(client), data -> sendToClient(data, key),
+                    requestExecutor, this::execute);
+            key.attach(attachment);
+            if (idleTimeout > 0) {
+                IdleTimer idleTimer = new IdleTimer(TimingWheel.getDefault(), idleTimeout, () -> execute(() -> closeIdle(key)));
+                attachment.setIdleTimer(idleTimer);
+                idleTimer.start();
+            }
+        } catch (ClosedChannelException e) {
+            connections.decrementAndGet();
+        }
+    }
+
+    /** Returns how many connections this loop is currently serving */
+    public int getConnections() {
+        return connections.get();
+    }
+
+    /**
+     * Called when the method read() will not block the thread. It reads all the bytes available and it handles the
+     * requests that have been completely received. When this loop calls the handler, it then sends back all their
+     * responses at once, otherwise the requests are given to the client's queue on the handler threads.
+     */
+    @Override
+    protected void onReadable(SelectionKey key) throws IOException {
+        UserAttachment attachment = (UserAttachment) key.attachment();
+        attachment.getFrameDecoder().readFrames(attachment.getTcpConnection(), received);
+        if (attachment.getIdleTimer() != null)
+            attachment.getIdleTimer().touch();
+        try {
+            for (ConnectionData request : received) {
+                if (handlerThreads == null) {
+                    reply(request, handleRequest(request, key), key);
+                } else {
+                    attachment.getRequestExecutor().execute(() -> sendToClient(request, handleRequest(request, key), key));
+                }
+            }
+        } finally {
+            received.clear();
+        }
+        if (handlerThreads == null)
+            flush(key);
+    }
+
+    /** Called when the method write() will not block the thread. It goes on sending the pending responses */
+    @Override
+    protected void onWritable(SelectionKey key) throws IOException {
+        flush(key);
+    }
+
+    /**
+     * Writes the responses queued for the given client. It stays interested on write only while some bytes are still
+     * pending, otherwise it is interested just on read.
+     * @param key the key that represent the client
+     * @throws IOException if an I/O error occurs
+     */
+    private void flush(SelectionKey key) throws IOException {
+        UserAttachment attachment = (UserAttachment) key.attachment();
+        boolean sent = attachment.getTcpConnection().flush();
+        key.interestOps(sent ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+    }
+
+    /**
+     * Queues the given response for the given client. It is sent by the next flush
+     * @param response the response that should be sent
+     * @param key the key that represent the client
+     * @throws IOException if too many responses are waiting to be sent to the client
+     */
+    private void enqueue(ConnectionData response, SelectionKey key) throws IOException {
+        SocketChannel client = (SocketChannel) key.channel();
+        UserAttachment attachment = (UserAttachment) key.attachment();
+        log.debug("%s -> %s (%s)", response, client.getRemoteAddress(), attachment.getUsername());
+        attachment.getTcpConnection().enqueueData(response);
+    }
+
+    /**
+     * Calls the right handler's method for the given request. It can be called by this loop or by a handler thread.
+     * @return the response that should be sent back or null if there isn't one
+     */
+    private ConnectionData handleRequest(ConnectionData received, SelectionKey key) {
+        SocketChannel client = (SocketChannel) key.channel();
+        UserAttachment attachment = (UserAttachment) key.attachment();
+        return RequestDispatcher.dispatch(handler, received, attachment, client.socket().getInetAddress());
+    }
+
+    /**
+     * Queues the response of the given request, if any. It must be called by this loop.
+     * @param received the request that has been handled
+     * @param response the response that should be sent or null if there isn't one
+     * @param key the key that represent the client
+     * @throws IOException if too many responses are waiting to be sent to the client
+     */
+    private void reply(ConnectionData received, ConnectionData response, SelectionKey key) throws IOException {
+        SocketChannel client = (SocketChannel) key.channel();
+        UserAttachment attachment = (UserAttachment) key.attachment();
+        log.debug("%s <- %s (%s)", received, client.getRemoteAddress(), attachment.getUsername());
+        if (response == null)
+            return;
+        enqueue(response, key);
+        //the login response is still encoded with the previous codec, the new one is used from the next message
+        Codec codec = RequestDispatcher.negotiatedCodec(received, response);
+        if (codec != null)
+            attachment.getTcpConnection().setCodec(codec);
+    }
+
+    /** Disconnects the given client, which has been idle for too long. It runs on this loop */
+    private void closeIdle(SelectionKey key) {
+        if (!key.isValid())
+            return;
+        log.info("Closing idle connection (%s)", ((UserAttachment) key.attachment()).getUsername());
+        key.cancel();
+        try {
+            onEndConnection(key);
+        } catch (IOException ignored) {}
+    }
+
+    /**
+     * Called when the connection with a client is closed
+     */
+    @Override
+    protected void onEndConnection(SelectionKey key) throws IOException {
+        SocketChannel client = (SocketChannel) key.channel();
+        UserAttachment attachment = (UserAttachment) key.attachment();
+        connections.decrementAndGet();
+        if (attachment.getIdleTimer() != null)
+            attachment.getIdleTimer().stop();
+
+        //after the requests of this client that are still queued, if any
+        if (handlerThreads == null)
+            handler.handleUserDisconnected(attachment);
+        else
+            attachment.getRequestExecutor().execute(() -> handler.handleUserDisconnected(attachment));
+
+        log.info("Ended connection with %s", client.getRemoteAddress());
+        attachment.getTcpConnection().endConnection();
+    }
+
+    /**
+     * Queues an async message for the given client. It runs on this loop. The first message queued schedules a task
+     * that flushes all the clients that got a message, so that the messages handed over together are sent together.
+     * @param request the request that the message responds to or null if the message is not a response
+     * @param data the message that should be sent or null if the request has no response
+     * @param key the key that represent the client
+     */
+    private void deliver(ConnectionData request, ConnectionData data, SelectionKey key) {
+        if (!key.isValid())
+            return;
+        try {
+            if (request != null)
+                reply(request, data, key);
+            else
+                enqueue(data, key);
+        } catch (IOException e) {
+            endConnection(key);
+            return;
+        }
+        if (toFlush.isEmpty())
+            execute(this::flushPending);
+        if (!toFlush.contains(key))
+            toFlush.add(key);
+    }
+
+    /** Flushes the clients that got async messages */
+    private void flushPending() {
+        for (SelectionKey key : toFlush) {
+            try {
+                if (key.isValid())
+                    flush(key);
+            } catch (IOException e) {
+                endConnection(key);
+            }
+        }
+        toFlush.clear();
+    }
+
+    /** Ends the connection with the given client when an I/O error occurs outside of the selection */
+    private void endConnection(SelectionKey key) {
+        key.cancel();
+        try {
+            if (key.channel().isOpen())
+                onEndConnection(key);
+        } catch (IOException ignored) {}
+    }
+
+    /**
+     * Sends the given message to the given client. The key must be owned by this loop. It is the sender of the
+     * client's {@link UserAttachment}, so it can be called by any thread.
+     * @param data the message that should be sent
+     * @param key the key that represent the client
+     */
+    private void sendToClient(ConnectionData data, SelectionKey key) {
+        sendToClient(null, data, key);
+    }
+
+    /** Hands the given response over to this loop, in order to be sent after the other messages for the same client */
+    private void sendToClient(ConnectionData request, ConnectionData data, SelectionKey key) {
+        execute(() -> deliver(request, data, key));
+    }
+
+    @Override
+    protected void onAcceptable(SelectionKey key) throws IOException {}   //never invoked because the acceptor does it
+
+    @Override
+    protected void onTimeout() {}   //never invoked because the select() has no timeout in this thread
+}
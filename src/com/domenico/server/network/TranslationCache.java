@@ -0,0 +1,295 @@
+package com.domenico.server.network;
+
+import com.domenico.server.Dictionary;
+import com.domenico.shared.Logger;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Provider of the english translations of the italian words which caches them in front of the MyMemory translation
+ * service. It has two tiers: the most recently used translations are kept into memory, up to a given number, and all
+ * the translations got are saved on disk by a {@link TranslationStore}. Only the words missing from both tiers are
+ * sent to the service, all together in one request, and a word is never asked twice at the same time: the callers
+ * that miss it while it is being translated wait for the same translation. The cache can be prewarmed with the whole
+ * dictionary at startup, so that the challenges never wait for the service. It can be used by any thread. */
+public class TranslationCache implements TranslationProvider {
+
+    private static final Logger LOG = Logger.getLogger("Translations");
+    //How many words are sent to the service with each request while prewarming
+    private static final int PREWARM_BATCH = 16;
+
+    private final Translations service;
+    //The words whose translations are cached
+    private final Dictionary dictionary;
+    //The most recently used translations, in access order. Guarded by itself
+    private final LinkedHashMap<String, String> memory;
+    //The translations saved on disk or null if they are kept only into memory
+    private final TranslationStore disk;
+    private final LongAdder memoryHits = new LongAdder();
+    private final LongAdder diskHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();       //words that have been sent to the service
+    private final LongAdder failures = new LongAdder();     //words that the service has not translated
+    private final LongAdder requests = new LongAdder();     //requests sent to the service
+    private final LongAdder coalesced = new LongAdder();    //words whose pending translation has been shared
+    //The future translation of each word which is being got from the service
+    private final Map<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+    //The words in flight which haven't been sent yet. Whoever sends a request takes all of them
+    private final Queue<String> queued = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Creates a cache
+     * @param service the translation service, used for the words that are not cached
+     * @param dictionary the words whose translations are cached
+     * @param capacity how many translations are kept into memory at most
+     * @param file the file where the translations are saved or null if they should not be saved on disk
+     * @throws IOException if the file cannot be opened
+     */
+    public TranslationCache(Translations service, Dictionary dictionary, int capacity, Path file) throws IOException {
+        this.service = service;
+        this.dictionary = dictionary;
+        this.memory = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > capacity;
+            }
+        };
+        this.disk = file == null ? null : new TranslationStore(file);
+        if (disk != null)
+            LOG.info("%d translations saved in %s", disk.size(), file);
+    }
+
+    @Override
+    public String[] translate(int[] ids) {
+        List<String> itWords = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            itWords.add(dictionary.getWord(id));
+        }
+        return translate(itWords);
+    }
+
+    /**
+     * Returns the english translations of the given italian words, by asking the service only for those which are not
+     * cached. A word which is already being translated for another caller is not asked again: the translation got
+     * for that caller is shared. The missing words of all the callers are merged into the requests, each one up to the
+     * size limit of the service. The translations that the service fails to give are null and they are not cached.
+     * @param itWords the italian words
+     * @return the translations in the same order of the words
+     */
+    public String[] translate(List<String> itWords) {
+        String[] enWords = new String[itWords.size()];
+        List<CompletableFuture<String>> futures = null;    //the pending translation of each word, if any
+        for (int i = 0; i < enWords.length; i++) {
+            String itWord = itWords.get(i);
+            enWords[i] = lookup(itWord);
+            if (enWords[i] != null)
+                continue;
+            CompletableFuture<String> future = pendingTranslation(itWord);
+            if (future == null)     //it has been cached in the meantime
+                continue;
+            if (futures == null)
+                futures = new ArrayList<>(Collections.nCopies(enWords.length, null));
+            futures.set(i, future);
+        }
+        if (futures == null)
+            return enWords;
+
+        sendQueued();
+        for (int i = 0; i < enWords.length; i++) {
+            if (futures.get(i) != null)
+                enWords[i] = futures.get(i).join();
+        }
+        return enWords;
+    }
+
+    /** Returns the future translation of the given word, which has just been found missing. If no one is getting it
+     * yet, the word is queued for the next request. It returns null if the word has been cached in the meantime */
+    private CompletableFuture<String> pendingTranslation(String itWord) {
+        CompletableFuture<String> created = new CompletableFuture<>();
+        CompletableFuture<String> future = inFlight.putIfAbsent(itWord, created);
+        if (future != null) {
+            coalesced.increment();
+            return future;
+        }
+        //the previous translation can have been cached and removed from the in flight ones after the lookup
+        String enWord = lookup(itWord);
+        if (enWord != null) {
+            inFlight.remove(itWord, created);
+            created.complete(enWord);
+            return null;
+        }
+        misses.increment();
+        queued.add(itWord);
+        return created;
+    }
+
+    /** Sends all the queued words, by merging them into as few requests as the size limit of the service allows. The
+     * words can have been queued by other callers as well */
+    private void sendQueued() {
+        List<String> batch = new ArrayList<>();
+        int batchBytes = 0;
+        String itWord;
+        while ((itWord = queued.poll()) != null) {
+            int bytes = Translations.queryLength(itWord);
+            if (!batch.isEmpty() && batchBytes + bytes > Translations.MAX_QUERY_LENGTH) {
+                send(batch);
+                batch = new ArrayList<>();
+                batchBytes = 0;
+            }
+            batch.add(itWord);
+            batchBytes += bytes;
+        }
+        if (!batch.isEmpty())
+            send(batch);
+    }
+
+    /** Sends a request with the given words, without waiting for the translations. When they arrive they are cached
+     * and given to everyone who is waiting for them */
+    private void send(List<String> itWords) {
+        requests.increment();
+        CompletableFuture<String[]> request;
+        try {
+            request = service.translateAsync(itWords);
+        } catch (RuntimeException e) {
+            //for example the URL of the service is not valid: the request is not sent but it fails as well
+            LOG.warn("Cannot send the request for %s: %s", itWords, e);
+            request = CompletableFuture.failedFuture(e);
+        }
+        request.whenComplete((translated, e) -> {
+            for (int i = 0; i < itWords.size(); i++) {
+                //whatever happens, everyone waiting for the words must be completed
+                String enWord = translated == null ? null : translated[i];
+                if (enWord == null || enWord.isEmpty()) {
+                    failures.increment();
+                    enWord = null;
+                } else {
+                    store(itWords.get(i), enWord);
+                }
+                //the translation is cached before it stops being in flight, so that it is never asked twice
+                inFlight.remove(itWords.get(i)).complete(enWord);
+            }
+        });
+    }
+
+    /**
+     * Gets the translation of each word of the dictionary that has not been saved on disk yet, a few words at a time.
+     * It blocks until the service has been asked for all of them, so it should run on a background thread.
+     */
+    public void prewarm() {
+        long start = System.nanoTime();
+        List<String> batch = new ArrayList<>(PREWARM_BATCH);
+        int translated = 0;
+        for (int id = 0; id < dictionary.size(); id++) {
+            String itWord = dictionary.getWord(id);
+            if (isCached(itWord))
+                continue;
+            batch.add(itWord);
+            if (batch.size() == PREWARM_BATCH) {
+                translated += batch.size();
+                translate(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            translated += batch.size();
+            translate(batch);
+        }
+        LOG.info("Prewarmed %d translations in %d ms (%s)", translated, (System.nanoTime() - start) / 1_000_000,
+                toString());
+    }
+
+    /** Returns the cached translation of the given word or null if it is not cached. A translation found on disk is
+     * kept into memory as well */
+    private String lookup(String itWord) {
+        String enWord;
+        synchronized (memory) {
+            enWord = memory.get(itWord);
+        }
+        if (enWord != null) {
+            memoryHits.increment();
+            return enWord;
+        }
+        if (disk == null)
+            return null;
+        try {
+            enWord = disk.get(itWord);
+        } catch (IOException e) {
+            LOG.warn("Cannot read the translation of %s: %s", itWord, e.getMessage());
+            return null;
+        }
+        if (enWord != null) {
+            diskHits.increment();
+            synchronized (memory) {
+                memory.put(itWord, enWord);
+            }
+        }
+        return enWord;
+    }
+
+    /** Returns true if the translation of the given word is cached, without changing the order of the memory tier */
+    private boolean isCached(String itWord) {
+        if (disk != null)
+            return disk.contains(itWord);
+        synchronized (memory) {
+            return memory.containsKey(itWord);
+        }
+    }
+
+    /** Caches the translation of the given word in both the tiers */
+    private void store(String itWord, String enWord) {
+        synchronized (memory) {
+            memory.put(itWord, enWord);
+        }
+        if (disk == null)
+            return;
+        try {
+            disk.put(itWord, enWord);
+        } catch (IOException e) {
+            LOG.warn("Cannot save the translation of %s: %s", itWord, e.getMessage());
+        }
+    }
+
+    /** Returns how many lookups have been served by the memory tier */
+    public long getMemoryHits() { return memoryHits.sum(); }
+
+    /** Returns how many lookups have been served by the disk tier */
+    public long getDiskHits() { return diskHits.sum(); }
+
+    /** Returns how many words have been sent to the translation service */
+    public long getMisses() { return misses.sum(); }
+
+    /** Returns how many words have shared the translation got for another caller */
+    public long getCoalesced() { return coalesced.sum(); }
+
+    /** Returns how many requests have been sent to the translation service */
+    public long getRequests() { return requests.sum(); }
+
+    /** Returns the fraction of the lookups that didn't need the translation service, or 0 if there are none */
+    public double getHitRate() {
+        long hits = getMemoryHits() + getDiskHits();
+        long lookups = hits + getMisses();
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    /** Closes the file of the translations, if there is one */
+    @Override
+    public void close() throws IOException {
+        if (disk != null)
+            disk.close();
+    }
+
+    @Override
+    public String toString() {
+        int cached;
+        synchronized (memory) {
+            cached = memory.size();
+        }
+        return String.format("TranslationCache{memory=%d, memoryHits=%d, diskHits=%d, misses=%d, failures=%d, " +
+                        "coalesced=%d, inFlight=%d, requests=%d, hitRate=%.3f}", cached, getMemoryHits(), getDiskHits(),
+                getMisses(), failures.sum(), getCoalesced(), inFlight.size(), getRequests(), getHitRate());
+    }
+}
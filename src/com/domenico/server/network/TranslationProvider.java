@@ -0,0 +1,32 @@
+package com.domenico.server.network;
+
+import java.io.IOException;
+
+/** Interface of the sources of the english translations of the words of the dictionary, which are asked for the
+ * translations of the words chosen by each challenge. Each provider gets them in its own way and it can be used by
+ * any thread. */
+public interface TranslationProvider extends AutoCloseable {
+
+    /** The available providers */
+    enum Backend {
+        MYMEMORY,   //the MyMemory service, in front of which there is the TranslationCache
+        LOCAL       //the LocalTranslations, read from a bilingual dictionary file
+    }
+
+    /**
+     * Returns the english translations of the words with the given ids
+     * @param ids the ids of the italian words in the dictionary
+     * @return the translations in the same order of the ids. The ones that cannot be got are null
+     */
+    String[] translate(int[] ids);
+
+    /** Returns true if {@link #translate(int[])} can block, for example on a remote service, so that it should not
+     * be called by the selector loops */
+    default boolean isBlocking() {
+        return true;
+    }
+
+    /** Releases the resources held by the provider */
+    @Override
+    default void close() throws IOException {}
+}
@@ -0,0 +1,127 @@
+package com.domenico.server.network;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** The translations saved on disk, by italian word, so that they survive the restarts of the server. The file is a
+ * log of lines "italian word TAB translation", to which the new translations are appended. Only the position of each
+ * translation is kept into memory: the translation itself is read from the file when it is needed. When a word
+ * appears more than once the last line wins. It can be used by any thread. */
+class TranslationStore implements AutoCloseable {
+
+    private static final byte SEPARATOR = '\t';
+    private static final byte END_OF_LINE = '\n';
+
+    private final FileChannel channel;
+    //Where the translation of each word is in the file. The high 40 bits are the position, the low 24 the length
+    private final Map<String, Long> index = new ConcurrentHashMap<>();
+
+    /**
+     * Opens the given file, creating it if it doesn't exist, and indexes the translations already saved
+     * @param file the file where the translations are saved
+     * @throws IOException if an I/O error occurs
+     */
+    TranslationStore(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        load();
+    }
+
+    /** Reads the whole file once, remembering where each translation is. A truncated last line is ignored */
+    private void load() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        byte[] line = new byte[256];
+        int lineLength = 0;
+        long lineStart = 0;
+        long position = 0;
+        while (channel.read(buffer, position) > 0) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                byte b = buffer.get();
+                position++;
+                if (b != END_OF_LINE) {
+                    if (lineLength == line.length)
+                        line = Arrays.copyOf(line, line.length * 2);
+                    line[lineLength++] = b;
+                    continue;
+                }
+                indexLine(line, lineLength, lineStart);
+                lineLength = 0;
+                lineStart = position;
+            }
+            buffer.clear();
+        }
+        //the next translations are appended after the last complete line
+        channel.truncate(lineStart);
+    }
+
+    /** Remembers the translation of the given line, which starts at the given position of the file */
+    private void indexLine(byte[] line, int length, long lineStart) {
+        for (int i = 0; i < length; i++) {
+            if (line[i] == SEPARATOR) {
+                String word = new String(line, 0, i, StandardCharsets.UTF_8);
+                index.put(word, entry(lineStart + i + 1, length - i - 1));
+                return;
+            }
+        }
+    }
+
+    /** Returns the saved translation of the given word or null if there isn't one */
+    String get(String word) throws IOException {
+        Long entry = index.get(word);
+        if (entry == null)
+            return null;
+        ByteBuffer bytes = ByteBuffer.allocate((int) (entry & 0xFFFFFF));
+        long position = entry >>> 24;
+        while (bytes.hasRemaining()) {
+            if (channel.read(bytes, position + bytes.position()) < 0)
+                throw new IOException("The translations file has been truncated");
+        }
+        return new String(bytes.array(), StandardCharsets.UTF_8);
+    }
+
+    /** Saves the translation of the given word at the end of the file. The words or the translations that would
+     * break the lines are not saved */
+    synchronized void put(String word, String translation) throws IOException {
+        if (breaksLine(word) || breaksLine(translation))
+            return;
+        byte[] wordBytes = word.getBytes(StandardCharsets.UTF_8);
+        byte[] translationBytes = translation.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer line = ByteBuffer.allocate(wordBytes.length + translationBytes.length + 2);
+        line.put(wordBytes).put(SEPARATOR).put(translationBytes).put(END_OF_LINE).flip();
+        long lineStart = channel.size();
+        while (line.hasRemaining()) {
+            channel.write(line, lineStart + line.position());
+        }
+        index.put(word, entry(lineStart + wordBytes.length + 1, translationBytes.length));
+    }
+
+    /** Returns true if the translation of the given word has been saved */
+    boolean contains(String word) {
+        return index.containsKey(word);
+    }
+
+    /** Returns how many translations are saved */
+    int size() {
+        return index.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static boolean breaksLine(String string) {
+        return string.indexOf(SEPARATOR) >= 0 || string.indexOf(END_OF_LINE) >= 0;
+    }
+
+    private static long entry(long position, int length) {
+        return position << 24 | length;
+    }
+}
@@ -1,71 +1,251 @@
 package com.domenico.server.network;
 
-import java.io.*;
-import java.net.URL;
+import com.domenico.shared.Logger;
+import org.json.simple.parser.ContentHandler;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.regex.Pattern;
 
 /** Class with all the functionalities to get the translations from the MyMemory API. It is optimized to get
- * N translations in just one HTTP GET request. */
+ * N translations in just one HTTP GET request: the words are joined into a sentence and the translated sentence is
+ * split back into words. When the translated sentence has a different number of words, for example because a
+ * translation has a period inside, each word is asked with its own request, all of them in parallel. The requests are
+ * sent by an HTTP client which keeps the connections alive, within a connect and a request timeout, and the JSON
+ * response is parsed while it is read, stopping as soon as the translation has been found. The rest of the response
+ * is then skipped, so that the connection can be reused. */
 public class Translations {
 
-    private final static int START_LEN = 34;
-    private final static int BUF_LEN = 32;
-    private final static String WORD_DIVIDER = "\\. ";
-    private final static String WORD_DIVIDER_HTTP = ".%20";
+    public final static String MYMEMORY_URL = "https://api.mymemory.translated.net/get";
+    public final static long DEFAULT_CONNECT_TIMEOUT = 2000;
+    public final static long DEFAULT_REQUEST_TIMEOUT = 5000;
+    //The longest text, in bytes, that the MyMemory API translates with one request
+    public final static int MAX_QUERY_LENGTH = 500;
+    private static final Logger LOG = Logger.getLogger("Translations");
+    private final static String WORD_DIVIDER = ". ";
+    private final static Pattern WORD_DIVIDER_PATTERN = Pattern.compile("\\.\\s+");
+    private final static String LANGUAGE_PAIR = "&langpair=it%7Cen";
+
+    //The URL of the translation service, without the query
+    private final String serviceUrl;
+    private final HttpClient client;
+    private final Duration requestTimeout;
+
+    /** @param serviceUrl the URL of a service with the MyMemory API, without the query */
+    public Translations(String serviceUrl) {
+        this(serviceUrl, DEFAULT_CONNECT_TIMEOUT, DEFAULT_REQUEST_TIMEOUT);
+    }
 
-    public static String[] translate(List<String> itWords) {
+    /**
+     * @param serviceUrl the URL of a service with the MyMemory API, without the query
+     * @param connectTimeout how many milliseconds a connection to the service can take
+     * @param requestTimeout how many milliseconds the service can take to respond to a request
+     */
+    public Translations(String serviceUrl, long connectTimeout, long requestTimeout) {
+        this.serviceUrl = serviceUrl;
+        this.client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(connectTimeout))
+                .build();
+        this.requestTimeout = Duration.ofMillis(requestTimeout);
+    }
+
+    /**
+     * Gets the english translations of the given italian words, waiting for them.
+     * @param itWords the italian words
+     * @return the translations in the same order of the words. The ones that cannot be got are null
+     */
+    public String[] translate(List<String> itWords) {
+        return translateAsync(itWords).join();
+    }
+
+    /**
+     * Gets the english translations of the given italian words with one HTTP request, without waiting for them. If
+     * the translations don't match the words, each word is sent with its own request.
+     * @param itWords the italian words
+     * @return the future translations in the same order of the words. The ones that cannot be got are null. It
+     * never completes exceptionally
+     */
+    public CompletableFuture<String[]> translateAsync(List<String> itWords) {
         if (itWords == null || itWords.isEmpty())
-            return new String[0];
+            return CompletableFuture.completedFuture(new String[0]);
+        if (itWords.size() == 1)
+            return translateEach(itWords);
+
+        return request(String.join(WORD_DIVIDER, itWords)).handle((translation, e) -> {
+            if (e != null) {
+                LOG.warn("Cannot get the translations of %s: %s", itWords, e.getCause() == null ? e : e.getCause());
+                return CompletableFuture.completedFuture(new String[itWords.size()]);
+            }
+            String[] enWords = WORD_DIVIDER_PATTERN.split(translation.strip());
+            if (enWords.length == itWords.size()) {
+                //the last word can keep the final period of the sentence
+                enWords[enWords.length - 1] = stripPeriod(enWords[enWords.length - 1]);
+                return CompletableFuture.completedFuture(enWords);
+            }
+            LOG.debug("Got %d translations for %d words, translating each word", enWords.length, itWords.size());
+            return translateEach(itWords);
+        }).thenCompose(enWords -> enWords);
+    }
+
+    /** Returns how many bytes of the text sent to the service the given word takes, the words divider included */
+    public static int queryLength(String itWord) {
+        return itWord.getBytes(StandardCharsets.UTF_8).length + WORD_DIVIDER.length();
+    }
 
-        StringBuilder words = new StringBuilder();
-        int i = 0;
-        for (; i < itWords.size()-1; i++) {
-            words.append(itWords.get(i)).append(WORD_DIVIDER_HTTP);
+    /** Sends a request for each word, all of them in parallel, and returns the future translations */
+    private CompletableFuture<String[]> translateEach(List<String> itWords) {
+        List<CompletableFuture<String>> requests = new ArrayList<>(itWords.size());
+        for (String itWord : itWords) {
+            requests.add(request(itWord).handle((translation, e) -> {
+                if (e != null) {
+                    LOG.warn("Cannot get the translation of %s: %s", itWord, e.getCause() == null ? e : e.getCause());
+                    return null;
+                }
+                return stripPeriod(translation.strip());
+            }));
         }
-        if (i < itWords.size()) {
-            words.append(itWords.get(itWords.size() - 1));
+        return CompletableFuture.allOf(requests.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+            String[] enWords = new String[requests.size()];
+            for (int i = 0; i < enWords.length; i++) {
+                enWords[i] = requests.get(i).join();
+            }
+            return enWords;
+        });
+    }
+
+    /** Sends a HTTP GET request to the translation service and returns the future translation of the given text */
+    private CompletableFuture<String> request(String text) {
+        String query = URLEncoder.encode(text, StandardCharsets.UTF_8).replace("+", "%20");
+        HttpRequest request = HttpRequest.newBuilder(URI.create(serviceUrl + "?q=" + query + LANGUAGE_PAIR))
+                .timeout(requestTimeout)
+                .GET()
+                .build();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream())
+                .thenApply(Translations::parseResponse);
+    }
+
+    /**
+     * Parses the JSON response of the translation service while it is read, stopping at the translation
+     * @param response the response of the service
+     * @return the translated text
+     * @throws TranslationException if the service has failed or the response is not valid
+     */
+    private static String parseResponse(HttpResponse<InputStream> response) {
+        try (InputStream stream = response.body()) {
+            try {
+                if (response.statusCode() != 200)
+                    throw new TranslationException("HTTP status " + response.statusCode());
+                ResponseHandler handler = new ResponseHandler();
+                new JSONParser().parse(new InputStreamReader(stream, StandardCharsets.UTF_8), handler);
+                if (handler.translatedText == null)
+                    throw new TranslationException("No translation in the response");
+                if (handler.responseStatus != null && !"200".equals(handler.responseStatus))
+                    throw new TranslationException("Response status " + handler.responseStatus);
+                return handler.translatedText;
+            } finally {
+                drain(stream);
+            }
+        } catch (IOException | ParseException e) {
+            throw new TranslationException("Invalid response: " + e);
         }
+    }
 
-        String result = "";
+    /** Reads the rest of the given body before it is closed, so that its connection goes back to the pool of the
+     * client instead of being closed */
+    private static void drain(InputStream body) {
         try {
-            URL url = new URL("https://api.mymemory.translated.net/get?q="+words+"&langpair=it|en");
-            result = getTranslationsFromURL(url);
+            body.transferTo(OutputStream.nullOutputStream());
         } catch (IOException ignored) { }
+    }
 
-        return result.split(WORD_DIVIDER);
+    /** Removes the final period from the given translation, if there is one */
+    private static String stripPeriod(String translation) {
+        return translation.endsWith(".") ? translation.substring(0, translation.length() - 1) : translation;
     }
 
-    /**
-     * Sends a HTTP GET request to the MyMemory web server, parses the response and returns it.
-     *
-     * @param url to what URL the HTTP GET request should be done
-     * @return the translation gave by the MyMemory Rest API
-     * @throws IOException an error occurs while reading the web server response
-     */
-    private static String getTranslationsFromURL(URL url) throws IOException {
-        InputStream inputStream = url.openStream();
-        //skip the starting bytes
-        inputStream.skip(START_LEN);
-        StringBuilder translations = new StringBuilder();
-        int end_index = -1;
-        byte[] bytes;
-        //Find the end index
-        while (end_index == -1) {
-            end_index = 0;
-            bytes = inputStream.readNBytes(BUF_LEN);
-            if (bytes.length == 0) { //end of file, something went wrong
-                end_index = -1;
-                break;
-            }
-            translations.append(new String(bytes, StandardCharsets.UTF_8));
-            end_index = translations.indexOf("\"", end_index + 1);
+    /** Thrown when the translation service has not given a translation */
+    private static class TranslationException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private TranslationException(String message) {
+            super(message);
+        }
+    }
+
+    /** Finds the responseData.translatedText and the responseStatus values of a MyMemory response, stopping the
+     * parsing when both of them have been found, so that the long list of the matches is never read */
+    private static class ResponseHandler implements ContentHandler {
+        private int depth = 0;              //how many objects are open
+        private String key;                 //the key of the entry being parsed at the current depth
+        private boolean inResponseData;     //true while parsing the responseData object
+        private String translatedText;
+        private String responseStatus;
+
+        @Override
+        public void startJSON() {}
+
+        @Override
+        public void endJSON() {}
+
+        @Override
+        public boolean startObject() {
+            depth++;
+            if (depth == 2 && "responseData".equals(key))
+                inResponseData = true;
+            return true;
+        }
+
+        @Override
+        public boolean endObject() {
+            if (depth == 2)
+                inResponseData = false;
+            depth--;
+            return true;
+        }
+
+        @Override
+        public boolean startObjectEntry(String key) {
+            this.key = key;
+            return true;
+        }
+
+        @Override
+        public boolean endObjectEntry() {
+            return true;
+        }
+
+        @Override
+        public boolean startArray() {
+            return true;
+        }
+
+        @Override
+        public boolean endArray() {
+            return true;
+        }
+
+        @Override
+        public boolean primitive(Object value) {
+            if (inResponseData && depth == 2 && "translatedText".equals(key) && value != null)
+                translatedText = value.toString();
+            else if (depth == 1 && "responseStatus".equals(key) && value != null)
+                responseStatus = value.toString();
+            //both the values are before the matches
+            return translatedText == null || responseStatus == null;
         }
-        //Close the stream
-        inputStream.close();
-        //Get the words
-        if (end_index != -1)
-            return translations.substring(1, end_index);
-        return "";
     }
 }
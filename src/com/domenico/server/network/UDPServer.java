@@ -3,129 +3,285 @@ package com.domenico.server.network;
 import com.domenico.communication.ConnectionData;
 import com.domenico.communication.UDPConnection;
 import com.domenico.server.Challenge;
+import com.domenico.shared.Logger;
 import com.domenico.shared.Multiplexer;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.nio.channels.ClosedChannelException;
 import java.nio.channels.DatagramChannel;
 import java.nio.channels.SelectionKey;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 /** This class extends the {@link Multiplexer} class and it handles all the UDP communications from and to the clients.
  * Basically it forwards the given challenge requests from a client to another and waits that the other user sends a
  * challenge response or that the challenge request times out.
+ * The forwards are sent as soon as they are handed over to this thread, all of them in one pass. The channel is
+ * interested on write only while the socket's buffer is full and some forwards are still waiting.
+ * Each challenge request carries the challenge id, which the challenged client sends back as an ack and then in its
+ * response. Until the ack or the response arrives, the request is sent again with an exponential backoff, so that a
+ * lost datagram doesn't make the challenge time out. The client ignores the requests that it has already received.
+ * The responses are matched to their challenges by id through a {@link ChallengeRegistry}, so the datagrams that don't
+ * refer to a pending request are dropped and counted. Both the acks and the responses are taken only from the address
+ * the request has been sent to.
  */
 public class UDPServer extends Multiplexer implements Runnable {
 
+    private static final Logger LOG = Logger.getLogger("UDP");
+    //How long a challenge request waits for its ack before being sent again. Each retransmit waits twice as long
+    private static final long RETRANSMIT_DELAY = 250;
+    //How many times a challenge request is sent at most
+    private static final int MAX_SENDS = 5;
+    //How often the expired challenge requests are removed from the registry
+    private static final long PURGE_INTERVAL = 1000;
+
     //Utility object that wraps all the work that should be done to send or receive a ConnectionData object
     private final UDPConnection udpConnection;
-    //map object that maps each address to a challenge object
-    private final Map<InetSocketAddress, Challenge> mapAddress;
-    //A linked list used to store all the challenges that should be forwarded
-    private final Object mutex = new Object();
-    private final LinkedList<Forward> forwards;
+    //The challenge requests waiting for a response, by challenge id
+    private final ChallengeRegistry registry;
+    //The challenges that should be forwarded. Used only by this thread
+    private final ArrayDeque<Forward> forwards;
+    //The challenge requests that have been sent and not acknowledged yet, by challenge id. Used only by this thread
+    private final Map<Long, Forward> unacked;
+    //The key of the channel, whose interest ops are switched between read and read-write
+    private final SelectionKey key;
+    //How many forwards have been handed over and have not been sent yet
+    private final AtomicInteger queueDepth = new AtomicInteger(0);
+    private final LongAdder sent = new LongAdder();                 //How many forwards have been sent
+    private final LongAdder sendLatencyNanos = new LongAdder();     //Total time between the hand over and the send
+    private volatile long maxSendLatencyNanos = 0;                  //Written only by this thread
+    private final LongAdder retransmits = new LongAdder();          //How many challenge requests have been sent again
+    private final LongAdder duplicateAcks = new LongAdder();        //Acks of requests that were already acknowledged
+    private final LongAdder unknownAcks = new LongAdder();          //Acks sent by someone other than the challenged user
+    private final LongAdder invalid = new LongAdder();              //Datagrams that are not acks or responses
 
     /** Inner class used to represent a challenge that should be forwarded to a given address via UDP */
     private static class Forward {
         InetSocketAddress toAddress;
         Challenge challenge;
+        long queuedAt;  //when it has been handed over, in nanoseconds
+        int sends = 0;          //how many times the challenge request has been sent
+        ScheduledTask retransmit;   //sends the challenge request again if the ack doesn't arrive
 
-        public Forward(InetSocketAddress toAddress, Challenge challenge) {
+        public Forward(InetSocketAddress toAddress, Challenge challenge, long queuedAt) {
             this.toAddress = toAddress;
             this.challenge = challenge;
+            this.queuedAt = queuedAt;
         }
     }
 
-    public UDPServer() throws IOException {
+    /**
+     * Instantiates the UDP server, bound to its port
+     * @param responseTimeout how many milliseconds a challenge request waits for its response
+     * @throws IOException if an I/O error occurs
+     */
+    public UDPServer(long responseTimeout) throws IOException {
+        this(UDPConnection.PORT, responseTimeout);
+    }
+
+    /**
+     * Instantiates the UDP server, bound to the given port
+     * @param port the UDP port or 0 for an ephemeral one
+     * @param responseTimeout how many milliseconds a challenge request waits for its response
+     * @throws IOException if an I/O error occurs
+     */
+    UDPServer(int port, long responseTimeout) throws IOException {
         super(DatagramChannel.open(), SelectionKey.OP_READ);
         DatagramChannel datagramChannel = (DatagramChannel) channel;
-        datagramChannel.socket().bind(new InetSocketAddress(UDPConnection.PORT));
+        datagramChannel.socket().bind(new InetSocketAddress(port));
         this.udpConnection = new UDPConnection(datagramChannel, null);
-        this.mapAddress = new HashMap<>();
-        this.forwards = new LinkedList<>();
+        this.registry = new ChallengeRegistry(responseTimeout);
+        this.forwards = new ArrayDeque<>();
+        this.unacked = new HashMap<>();
+        this.key = channel.keyFor(selector);
     }
 
     /** Forwards the given challenge to the user (specified by its address) via UDP */
     public void forwardChallenge(Challenge challenge, InetSocketAddress toAddress) {
+        registry.register(challenge, toAddress);
         handleChallenge(challenge, toAddress);
     }
 
     /** Sends to the challenged user that the challenge request has timed out */
     public void challengeTimedout(Challenge challenge, InetSocketAddress toAddress) {
+        registry.remove(challenge);
         handleChallenge(challenge, toAddress);
     }
 
-    /** Handles a new challenge that should be forwarded or a challenge request timeout */
+    /** Handles a new challenge that should be forwarded or a challenge request timeout. The challenge is queued by
+     * this thread, which sends it right away unless older forwards are waiting for the channel to be writable */
     private void handleChallenge(Challenge challenge, InetSocketAddress toAddress) {
-        synchronized (mutex) {
-            forwards.push(new Forward(toAddress, challenge));
-            wakeUp();
-        }
+        Forward forward = new Forward(toAddress, challenge, System.nanoTime());
+        queueDepth.incrementAndGet();
+        execute(() -> {
+            forwards.add(forward);
+            if (forwards.size() == 1)
+                sendForwards();
+        });
     }
 
     @Override
     protected void onWritable(SelectionKey key) throws IOException {
-        boolean isEmpty;
-        Forward forward = null;
-        //Pop the next forward
-        synchronized (mutex) {
-            if (!forwards.isEmpty()) {
-                forward = forwards.pop();
+        sendForwards();
+    }
+
+    /** Sends all the queued forwards until the socket's buffer is full. Then the channel is interested on write only
+     * if some forwards are left */
+    private void sendForwards() {
+        Forward forward;
+        while ((forward = forwards.peek()) != null) {
+            //Sends a new challenge request or sends that the challenge timed out
+            Challenge challenge = forward.challenge;
+            boolean timedOut = challenge.isRequestTimedOut();
+            ConnectionData data = timedOut ? ConnectionData.Factory.newFailResponse("Tempo scaduto") :
+                    ConnectionData.Factory.newChallengeRequest(challenge.getFrom(), challenge.getTo(), challenge.getId());
+
+            try {
+                if (!udpConnection.trySendData(data, forward.toAddress))
+                    break;  //the socket's buffer is full, the next ones are sent when the channel is writable
+                LOG.debug("%s -> %s (%s)", data, forward.toAddress, challenge.getTo());
+                if (!timedOut)
+                    waitAck(forward);
+                long latency = System.nanoTime() - forward.queuedAt;
+                sent.increment();
+                sendLatencyNanos.add(latency);
+                if (latency > maxSendLatencyNanos)
+                    maxSendLatencyNanos = latency;
+            } catch (IOException e) {
+                LOG.warn("Cannot send %s to %s: %s", data, forward.toAddress, e.getMessage());
+                //the failure may be transient, so the request is sent again as if its datagram got lost
+                if (!timedOut)
+                    waitAck(forward);
             }
-            isEmpty = forwards.isEmpty();
+            forwards.poll();
+            queueDepth.decrementAndGet();
         }
 
-        //Sends a new challenge request or sends that the challenge timed out
-        if (forward != null) {
-            ConnectionData data;
-            if (forward.challenge.isRequestTimedOut()) {
-                mapAddress.remove(forward.toAddress, forward.challenge);
-                data = ConnectionData.Factory.newFailResponse("Tempo scaduto");
-            } else {
-                mapAddress.put(forward.toAddress, forward.challenge);
-                data = ConnectionData.Factory.newChallengeRequest(forward.challenge.getFrom(), forward.challenge.getTo());
-            }
+        int ops = forwards.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE;
+        if (key.isValid() && key.interestOps() != ops)
+            key.interestOps(ops);
+    }
 
-            udpConnection.sendData(data, forward.toAddress);
-            print(data.toString(), forward.toAddress, forward.challenge.getTo());
+    /** Schedules the retransmit of the given challenge request, which has just been sent, unless it has been sent
+     * too many times */
+    private void waitAck(Forward forward) {
+        forward.sends++;
+        long challengeId = forward.challenge.getId();
+        if (forward.sends >= MAX_SENDS) {
+            unacked.remove(challengeId);
+            return;
         }
+        unacked.put(challengeId, forward);
+        forward.retransmit = schedule(() -> retransmit(forward), RETRANSMIT_DELAY << (forward.sends - 1));
+    }
 
-        //If there are no more challenges to forward then go read from the socket
-        if (isEmpty) {
-            channel.register(selector, SelectionKey.OP_READ);
-        }
+    /** Sends the given challenge request again, if its ack and its response have not arrived yet */
+    private void retransmit(Forward forward) {
+        if (unacked.remove(forward.challenge.getId()) == null || forward.challenge.isRequestTimedOut())
+            return;
+        retransmits.increment();
+        LOG.debug("Sending again challenge request %d to %s", forward.challenge.getId(), forward.toAddress);
+        forward.queuedAt = System.nanoTime();
+        queueDepth.incrementAndGet();
+        forwards.add(forward);
+        if (forwards.size() == 1)
+            sendForwards();
     }
 
-    @Override
-    protected void onReadable(SelectionKey key) throws IOException {
-        ConnectionData response = udpConnection.receiveData();
-        InetSocketAddress address = (InetSocketAddress) udpConnection.getAddress();
-        Challenge challenge = mapAddress.remove(address);
-        challenge.setRequestAccepted(ConnectionData.Validator.isSuccessResponse(response));
+    /**
+     * Stops sending again the challenge request with the given id, if the ack comes from the address the request has
+     * been sent to
+     * @param challengeId the challenge id carried by the ack
+     * @param from the address that sent the ack
+     * @return true if the request was waiting for an ack from that address, false otherwise
+     */
+    private boolean stopRetransmits(long challengeId, InetSocketAddress from) {
+        Forward forward = unacked.get(challengeId);
+        if (forward == null || !forward.toAddress.equals(from))
+            return false;
+        unacked.remove(challengeId);
+        forward.retransmit.cancel();
+        return true;
+    }
+
+    /** Removes the expired challenge requests from the registry, then it schedules the next purge */
+    private void purgeExpired() {
+        registry.purgeExpired();
+        schedule(this::purgeExpired, PURGE_INTERVAL);
     }
 
     @Override
-    protected void onWakeUp() {
-        synchronized (mutex) {
-            //If there is at least a request to forward, then go write into the socket
-            if (!forwards.isEmpty()) {
-                try {
-                    channel.register(selector, SelectionKey.OP_WRITE);
-                } catch (ClosedChannelException ignored) { }
-            }
+    protected void onReadable(SelectionKey key) throws IOException {
+        ConnectionData data = udpConnection.receiveData();
+        InetSocketAddress from = (InetSocketAddress) udpConnection.getAddress();
+        if (ConnectionData.Validator.isChallengeAck(data)) {
+            if (!unacked.containsKey(data.getChallengeId()))
+                duplicateAcks.increment();
+            else if (!stopRetransmits(data.getChallengeId(), from))
+                unknownAcks.increment();
+        } else if (ConnectionData.Validator.isChallengeResponse(data)) {
+            //the response acknowledges the request as well, in case its ack got lost
+            stopRetransmits(data.getChallengeId(), from);
+            Challenge challenge = registry.answer(data.getChallengeId(), from);
+            if (challenge != null)
+                challenge.setRequestAccepted(ConnectionData.Validator.isChallengeAccepted(data));
+        } else {
+            invalid.increment();
         }
     }
 
     @Override
     public void run() {
-        System.out.println("[UDP]: Server is running");
+        LOG.info("Server is running");
+        schedule(this::purgeExpired, PURGE_INTERVAL);
         this.startProcessing();
     }
 
-    /** Prints information about the challenge that has been forwarded */
-    public void print(String str, InetSocketAddress toAddress, String username) {
-        System.out.printf("[UDP]: %s -> %s (%s)\n", str, toAddress, username);
+    /** Returns the UDP port this server is bound to */
+    int getPort() { return ((DatagramChannel) channel).socket().getLocalPort(); }
+
+    /** Returns how many forwards have been handed over and have not been sent yet */
+    public int getQueueDepth() { return queueDepth.get(); }
+
+    /** Returns how many forwards have been sent */
+    public long getSent() { return sent.sum(); }
+
+    /** Returns the mean time between the hand over of a forward and its send, in nanoseconds */
+    public long getMeanSendLatencyNanos() {
+        long count = sent.sum();
+        return count == 0 ? 0 : sendLatencyNanos.sum() / count;
+    }
+
+    /** Returns the longest time between the hand over of a forward and its send, in nanoseconds */
+    public long getMaxSendLatencyNanos() { return maxSendLatencyNanos; }
+
+    /** Returns how many challenge requests have been sent again because their ack didn't arrive in time */
+    public long getRetransmits() { return retransmits.sum(); }
+
+    /** Returns how many acks have arrived for challenge requests that were already acknowledged */
+    public long getDuplicateAcks() { return duplicateAcks.sum(); }
+
+    /** Returns how many responses have been dropped because their challenge was unknown or they came from an address
+     * other than the challenged user's */
+    public long getUnknownResponses() { return registry.getUnknown(); }
+
+    /** Returns how many acks have been dropped because they came from an address other than the challenged user's */
+    public long getUnknownAcks() { return unknownAcks.sum(); }
+
+    /** Returns how many responses have been dropped because they arrived after their request had expired */
+    public long getLateResponses() { return registry.getLate(); }
+
+    /** Returns how many datagrams have been dropped because they were neither acks nor responses */
+    public long getInvalidDatagrams() { return invalid.sum(); }
+
+    @Override
+    public String toString() {
+        return String.format("UDPServer{queueDepth=%d, sent=%d, meanSendLatency=%dus, maxSendLatency=%dus, " +
+                        "retransmits=%d, duplicateAcks=%d, unknownAcks=%d, pending=%d, unknown=%d, late=%d, expired=%d, invalid=%d}",
+                getQueueDepth(), getSent(), getMeanSendLatencyNanos() / 1000, getMaxSendLatencyNanos() / 1000,
+                getRetransmits(), getDuplicateAcks(), getUnknownAcks(), registry.getPending(), getUnknownResponses(),
+                getLateResponses(), registry.getExpired(), getInvalidDatagrams());
     }
 
     @Override
@@ -1,30 +1,47 @@
 package com.domenico.server.network;
 
 import com.domenico.communication.ConnectionData;
+import com.domenico.communication.FrameDecoder;
 import com.domenico.communication.TCPConnection;
 import com.domenico.server.Challenge;
 
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
-import java.nio.channels.SocketChannel;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 
-/** Attachment for each user that connects to the server */
+/** Attachment for each user that connects to the server. It is the same for each TCP front end: the front end gives
+ * the function that sends a message to the user, so the handler doesn't know how the user is served. */
 public class UserAttachment {
 
     //Utility object that wraps all the work that should be done to send or receive a ConnectionData object
     private final TCPConnection tcpConnection;
-    //User's username
-    private String username;
+    //Accumulates the bytes received from this user until a whole request has arrived
+    private final FrameDecoder frameDecoder;
+    //User's username. Written and read by different threads when the requests are handled by the handler threads
+    private volatile String username;
     //The challenge that the user is playing or null if the user is not playing
-    private Challenge challenge;
+    private volatile Challenge challenge;
+    //The user's slot into its challenge, Challenge.FROM or Challenge.TO. Written before the challenge
+    private volatile int player;
     //The user's address (with the udp port)
-    private InetSocketAddress udpAddress;
-    //The response that should be sent to this user or null in case the response shouldn't be sent
-    private ConnectionData response;
+    private volatile InetSocketAddress udpAddress;
+    //Sends a message to this user. It can be called by any thread
+    private final Consumer<ConnectionData> sender;
+    //Runs the user's requests in order on the handler threads. Null if the front end handles them on its own
+    private final Executor requestExecutor;
+    //Runs the asynchronous work of this user, such as the steps of its challenge requests, on the thread that owns it
+    private final Executor loop;
+    //Tells when the user's connection has been idle for too long. Null if the connection is never closed when idle
+    private volatile IdleTimer idleTimer;
 
-    public UserAttachment(SocketChannel client) {
-        this.response = null;
-        this.tcpConnection = new TCPConnection(client);
+    public UserAttachment(TCPConnection tcpConnection, Consumer<ConnectionData> sender, Executor requestExecutor,
+                          Executor loop) {
+        this.tcpConnection = tcpConnection;
+        this.frameDecoder = new FrameDecoder();
+        this.sender = sender;
+        this.requestExecutor = requestExecutor;
+        this.loop = loop;
     }
 
     public String getUsername() {
@@ -43,6 +60,18 @@ public class UserAttachment {
         this.challenge = challenge;
     }
 
+    /** Sets the challenge that the user is going to play in the given slot, {@link Challenge#FROM} or
+     * {@link Challenge#TO}, so that the user's answers don't have to find it by username */
+    public void setChallenge(Challenge challenge, int player) {
+        this.player = player;
+        this.challenge = challenge;
+    }
+
+    /** Returns the user's slot into its challenge. It is meaningful only while the user has a challenge */
+    public int getPlayer() {
+        return player;
+    }
+
     public InetSocketAddress getUdpAddress() {
         return udpAddress;
     }
@@ -51,15 +80,33 @@ public class UserAttachment {
         this.udpAddress = new InetSocketAddress(address, port);
     }
 
-    public ConnectionData getResponse() {
-        return response;
+    public TCPConnection getTcpConnection() {
+        return tcpConnection;
     }
 
-    public void setResponse(ConnectionData response) {
-        this.response = response;
+    public FrameDecoder getFrameDecoder() {
+        return frameDecoder;
     }
 
-    public TCPConnection getTcpConnection() {
-        return tcpConnection;
+    public Executor getRequestExecutor() {
+        return requestExecutor;
+    }
+
+    IdleTimer getIdleTimer() {
+        return idleTimer;
+    }
+
+    void setIdleTimer(IdleTimer idleTimer) {
+        this.idleTimer = idleTimer;
+    }
+
+    /** Returns the executor that runs the asynchronous work of this user, in order with its requests if it can */
+    public Executor getExecutor() {
+        return requestExecutor != null ? requestExecutor : loop;
+    }
+
+    /** Sends the given message to this user, after the messages that have been sent before. It doesn't block */
+    public void sendToClient(ConnectionData data) {
+        sender.accept(data);
     }
 }
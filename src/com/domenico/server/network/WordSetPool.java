@@ -0,0 +1,194 @@
+package com.domenico.server.network;
+
+import com.domenico.server.AcceptedAnswers;
+import com.domenico.server.Challenge;
+import com.domenico.server.Dictionary;
+import com.domenico.shared.Logger;
+
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Pool of word sets ready for the challenges: random italian words together with their english translations. A
+ * background thread keeps the pool full, making at most one set each refill interval so that the translation service
+ * is not flooded, and an accepted challenge just takes a set from the pool without waiting for the translations.
+ * When the pool is empty the challenge makes its own set, as if there were no pool: how often this happens is counted
+ * as starvation, which means that the pool is too small or it is refilled too slowly. It can be used by any thread. */
+public class WordSetPool {
+
+    private static final Logger LOG = Logger.getLogger("WordSets");
+    //How many milliseconds the background thread waits at least after a set whose translations are missing. The wait
+    //doubles at each failure in a row, up to the maximum, so that an unreachable service is not asked continuously
+    private static final long FAILURE_BACKOFF = 1000;
+    private static final long MAX_FAILURE_BACKOFF = 60000;
+
+    /** Random italian words, by id, and their translations. The missing translations are null */
+    public static class WordSet {
+        private final int[] ids;
+        private final String[] translations;
+        //The answers accepted for the words, computed while the set is made rather than when the challenge starts
+        private final AcceptedAnswers answers;
+
+        private WordSet(int[] ids, String[] translations) {
+            this.ids = ids;
+            this.translations = translations;
+            this.answers = AcceptedAnswers.of(translations);
+        }
+
+        /** Sets the words and their accepted answers into the given challenge */
+        public void setInto(Challenge challenge) {
+            challenge.setWords(ids, answers);
+        }
+
+        public int[] getIds() {
+            return ids;
+        }
+
+        public String[] getTranslations() {
+            return translations;
+        }
+
+        /** Returns true if all the words have been translated */
+        private boolean isComplete() {
+            for (String translation : translations) {
+                if (translation == null)
+                    return false;
+            }
+            return true;
+        }
+    }
+
+    private final Dictionary dictionary;
+    private final TranslationProvider translations;
+    private final int words;                    //how many words are in each set
+    private final long refillInterval;          //how many milliseconds pass at least between two sets made
+    //The sets ready for the challenges. Its capacity is the size of the pool
+    private final BlockingQueue<WordSet> ready;
+    private final int capacity;
+    //The thread that refills the pool or null if it hasn't been started
+    private Thread producer;
+    private final LongAdder taken = new LongAdder();        //challenges that took a set from the pool
+    private final LongAdder starved = new LongAdder();      //challenges that found the pool empty
+    private final LongAdder produced = new LongAdder();     //sets put into the pool
+    private final LongAdder incomplete = new LongAdder();   //sets not put into the pool, since some translations or
+                                                            //the whole set failed
+
+    /**
+     * Creates a pool, which is empty until {@link #start()} is called
+     * @param dictionary where the words are chosen
+     * @param translations where the translations of the words are got
+     * @param words how many words are in each set
+     * @param capacity how many sets are kept ready at most. If it is 0 the pool is disabled and all the sets are made
+     *                 when they are needed
+     * @param refillInterval how many milliseconds pass at least between two sets made by the background thread
+     */
+    public WordSetPool(Dictionary dictionary, TranslationProvider translations, int words, int capacity,
+                       long refillInterval) {
+        this.dictionary = dictionary;
+        this.translations = translations;
+        this.words = words;
+        this.capacity = capacity;
+        this.refillInterval = refillInterval;
+        this.ready = new ArrayBlockingQueue<>(Math.max(1, capacity));
+    }
+
+    /** Starts refilling the pool in background, if it is enabled */
+    public synchronized void start() {
+        if (capacity == 0 || producer != null)
+            return;
+        producer = new Thread(this::refill, "word-sets");
+        producer.setDaemon(true);
+        producer.start();
+    }
+
+    /** Stops refilling the pool */
+    public synchronized void stop() {
+        if (producer != null)
+            producer.interrupt();
+    }
+
+    /** Makes the sets while the pool is not full, one each refill interval, until the thread is interrupted */
+    private void refill() {
+        long backoff = FAILURE_BACKOFF;
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                long start = System.currentTimeMillis();
+                WordSet wordSet;
+                try {
+                    wordSet = generate();
+                } catch (RuntimeException e) {
+                    //the thread keeps running, so that the pool is refilled when the failure is over
+                    LOG.warn("Cannot make a word set: %s", e);
+                    wordSet = null;
+                }
+                long interval = refillInterval;
+                if (wordSet != null && wordSet.isComplete()) {
+                    ready.put(wordSet);     //waits while the pool is full
+                    produced.increment();
+                    backoff = FAILURE_BACKOFF;
+                } else {
+                    incomplete.increment();
+                    interval = Math.max(interval, backoff);
+                    backoff = Math.min(backoff * 2, MAX_FAILURE_BACKOFF);
+                    if (wordSet != null)
+                        LOG.debug("Discarded a word set whose translations are missing");
+                }
+                long elapsed = System.currentTimeMillis() - start;
+                if (elapsed < interval)
+                    Thread.sleep(interval - elapsed);
+            }
+        } catch (InterruptedException ignored) { }
+    }
+
+    /**
+     * Takes a set from the pool in O(1) time, without waiting
+     * @return a set ready for a challenge or null if the pool is empty or disabled
+     */
+    public WordSet poll() {
+        if (capacity == 0)
+            return null;
+        WordSet wordSet = ready.poll();
+        if (wordSet == null)
+            starved.increment();
+        else
+            taken.increment();
+        return wordSet;
+    }
+
+    /** Makes a new set of random words and gets their translations. It blocks if the translation provider does */
+    public WordSet generate() {
+        int[] ids = dictionary.randomIds(words);
+        String[] enWords = translations.translate(ids);
+        //when the provider fails, the missing translations are null
+        if (enWords.length != ids.length)
+            enWords = Arrays.copyOf(enWords, ids.length);
+        return new WordSet(ids, enWords);
+    }
+
+    /** Returns true if making a set can block, since the translation provider does */
+    public boolean isBlocking() {
+        return translations.isBlocking();
+    }
+
+    /** Returns how many challenges found the pool empty */
+    public long getStarved() {
+        return starved.sum();
+    }
+
+    /** Returns how many challenges took a set from the pool */
+    public long getTaken() {
+        return taken.sum();
+    }
+
+    /** Returns how many sets are ready */
+    public int getReady() {
+        return ready.size();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("WordSetPool{capacity=%d, ready=%d, taken=%d, starved=%d, produced=%d, incomplete=%d}",
+                capacity, getReady(), getTaken(), getStarved(), produced.sum(), incomplete.sum());
+    }
+}
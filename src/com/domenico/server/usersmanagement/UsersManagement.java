@@ -5,7 +5,8 @@ import org.json.simple.JSONObject;
 import java.io.*;
 import java.util.*;
 
-/** Singleton class that manages all the Word Quizzle users */
+/** Singleton class that manages all the Word Quizzle users. Each method is synchronized because the users are
+ * managed by the RMI service and by every TCP selector loop at the same time */
 public class UsersManagement {
 
     private static UsersManagement instance;
@@ -15,13 +16,13 @@ public class UsersManagement {
         this.serverData = (HashMap<String, UserData>) Persistence.readFromDisk();
     }
 
-    public static UsersManagement getInstance() throws IOException {
+    public static synchronized UsersManagement getInstance() throws IOException {
         if (instance == null)
             instance = new UsersManagement();
         return instance;
     }
 
-    public void register(String username, String password) throws UsersManagementException {
+    public synchronized void register(String username, String password) throws UsersManagementException {
         if (serverData.get(username) != null)
             throw new UsersManagementException("Non è possibile registrarsi: questo nome utente è già utilizzato");
 
@@ -29,7 +30,7 @@ public class UsersManagement {
         Persistence.saveOnDisk(serverData);
     }
 
-    public void login(String username, String password) throws UsersManagementException {
+    public synchronized void login(String username, String password) throws UsersManagementException {
         UserData userData = serverData.get(username);
         if (userData == null || !userData.hasPassword(password))
             throw new UsersManagementException("Username o password non valida");
@@ -39,7 +40,7 @@ public class UsersManagement {
         userData.setOnline(true);
     }
 
-    public void logout(String username) throws UsersManagementException {
+    public synchronized void logout(String username) throws UsersManagementException {
         UserData userData = serverData.get(username);
         if (userData == null)
             throw new UsersManagementException("Username non valida");
@@ -49,7 +50,7 @@ public class UsersManagement {
         userData.setOnline(false);
     }
 
-    public void addFriend(String username, String friendUsername) throws UsersManagementException {
+    public synchronized void addFriend(String username, String friendUsername) throws UsersManagementException {
         if (username.equals(friendUsername))
             throw new UsersManagementException("Non puoi diventare amico con te stesso");
         UserData first = serverData.get(username);
@@ -68,14 +69,14 @@ public class UsersManagement {
         }
     }
 
-    public int getScore(String username) throws UsersManagementException {
+    public synchronized int getScore(String username) throws UsersManagementException {
         UserData userData = serverData.get(username);
         if (userData == null)
             throw new UsersManagementException("Username non valida");
         return userData.getScore();
     }
 
-    public void addScore(String username, int newScore) throws UsersManagementException {
+    public synchronized void addScore(String username, int newScore) throws UsersManagementException {
         UserData userData = serverData.get(username);
         if (userData == null)
             throw new UsersManagementException("Username non valida");
@@ -84,26 +85,26 @@ public class UsersManagement {
         Persistence.saveOnDisk(serverData);
     }
 
-    public boolean isOnline(String username) {
+    public synchronized boolean isOnline(String username) {
         UserData userData = serverData.get(username);
         return userData != null && userData.isOnline();
     }
 
-    public boolean areFriends(String firstUsername, String secondUsername) {
+    public synchronized boolean areFriends(String firstUsername, String secondUsername) {
         UserData firstData = serverData.get(firstUsername);
         if (firstData != null)
             return firstData.hasFriend(secondUsername);
         return false;
     }
 
-    public String getJSONFriendList(String username) throws UsersManagementException {
+    public synchronized String getJSONFriendList(String username) throws UsersManagementException {
         UserData userData = serverData.get(username);
         if (userData == null)
             throw new UsersManagementException("Username non valida");
         return userData.getFriendsJSON();
     }
 
-    public JSONObject getLeaderboard(String username) throws UsersManagementException {
+    public synchronized JSONObject getLeaderboard(String username) throws UsersManagementException {
         UserData userData = serverData.get(username);
         if (userData == null)
             throw new UsersManagementException("Username non valida");
@@ -0,0 +1,243 @@
+package com.domenico.shared;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Formatter;
+import java.util.IllegalFormatException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes the log messages on a background thread. The threads that log only copy the message's format and arguments
+ * into a preallocated ring buffer and return, while the writer thread formats the messages and writes them in
+ * batches. When the ring buffer is full the new messages are dropped and counted, so that who logs never waits for
+ * the output.
+ */
+public class AsyncLogWriter implements AutoCloseable {
+
+    public static final int DEFAULT_CAPACITY = 8192;
+    //How long the writer thread sleeps when there is nothing to write, if nobody wakes it up before
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final Entry[] ring;
+    private final int mask;
+    //The sequence of the next entry that will be claimed by a thread that logs
+    private final AtomicLong tail = new AtomicLong(0);
+    //The sequence of the next entry that the writer thread will write. Written only by the writer thread
+    private volatile long head = 0;
+    //How many messages have been dropped because the ring buffer was full
+    private final LongAdder dropped = new LongAdder();
+    private final Writer out;
+    private final Thread thread;
+    //The minimum level of the messages that are written
+    private volatile Logger.Level level = Logger.Level.INFO;
+    //True while the writer thread is going to sleep, so that who logs knows that it should wake it up
+    private volatile boolean sleeping = false;
+    private volatile boolean closed = false;
+    //Run by close() before the writer stops, so that what they log is still written
+    private final Queue<Runnable> beforeClose = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Creates a writer and starts its thread
+     * @param out where the messages are written
+     * @param capacity how many messages can wait to be written. It must be a power of two
+     */
+    public AsyncLogWriter(OutputStream out, int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1)
+            throw new IllegalArgumentException("The capacity must be a power of two");
+        this.ring = new Entry[capacity];
+        for (int i = 0; i < capacity; i++) {
+            ring[i] = new Entry();
+        }
+        this.mask = capacity - 1;
+        this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+        this.thread = new Thread(this::run, "log-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /** Returns the writer shared by all the loggers, which writes to the standard output */
+    public static AsyncLogWriter getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    public Logger.Level getLevel() {
+        return level;
+    }
+
+    public void setLevel(Logger.Level level) {
+        this.level = level;
+    }
+
+    /** Returns true if the messages with the given level are written */
+    public boolean isEnabled(Logger.Level level) {
+        return level.compareTo(this.level) >= 0 && level != Logger.Level.OFF;
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Puts a message in the ring buffer. It never blocks. The arguments are formatted later by the writer thread, so
+     * they should not be changed after they have been logged.
+     * @param argc how many of the arguments are used. If it is 0 the format is written as it is
+     * @return true if the message will be written, false if it has been dropped
+     */
+    boolean append(Logger.Level level, String name, String format, int argc, Object a, Object b, Object c, Object d) {
+        if (closed)
+            return false;
+        long sequence;
+        do {
+            sequence = tail.get();
+            if (sequence - head >= ring.length) {
+                dropped.increment();
+                return false;
+            }
+        } while (!tail.compareAndSet(sequence, sequence + 1));
+
+        Entry entry = ring[(int) sequence & mask];
+        entry.time = System.currentTimeMillis();
+        entry.level = level;
+        entry.name = name;
+        entry.format = format;
+        entry.argc = argc;
+        entry.a = a;
+        entry.b = b;
+        entry.c = c;
+        entry.d = d;
+        entry.sequence = sequence;  //publishes the entry to the writer thread
+        if (sleeping)
+            LockSupport.unpark(thread);
+        return true;
+    }
+
+    /**
+     * Runs the given task when this writer is closed, before it stops writing. The default writer is closed when the
+     * JVM shuts down, so the messages logged by the task are not lost as those logged by another shutdown hook can be.
+     * @param task what should run, such as logging the final statistics
+     */
+    public void runBeforeClose(Runnable task) {
+        beforeClose.add(task);
+    }
+
+    /** Runs the tasks given to {@link #runBeforeClose(Runnable)}, then writes the messages that are still in the ring
+     * buffer and stops the writer thread */
+    @Override
+    public void close() {
+        Runnable task;
+        while ((task = beforeClose.poll()) != null) {
+            task.run();
+        }
+        closed = true;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** The writer thread's loop: it writes the entries in order and flushes the output when there is nothing left */
+    private void run() {
+        StringBuilder line = new StringBuilder(256);
+        Formatter formatter = new Formatter(line);
+        long next = head;
+        long reportedDrops = 0;
+        while (true) {
+            Entry entry = ring[(int) next & mask];
+            if (entry.sequence == next) {
+                line.setLength(0);
+                format(entry, line, formatter);
+                entry.clear();
+                head = ++next;
+                write(line);
+                continue;
+            }
+            long drops = dropped.sum();
+            if (drops > reportedDrops) {
+                line.setLength(0);
+                formatter.format("%tT.%<tL %-5s [log]: %d messages dropped%n", System.currentTimeMillis(),
+                        Logger.Level.WARN, drops - reportedDrops);
+                write(line);
+                reportedDrops = drops;
+            }
+            flush();
+            //a claimed entry is always published soon, so the loop ends only when nothing has been claimed
+            if (closed && tail.get() == next)
+                return;
+            sleeping = true;
+            if (entry.sequence != next && !closed)
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            sleeping = false;
+        }
+    }
+
+    /** Appends the whole line of the given entry */
+    private static void format(Entry entry, StringBuilder line, Formatter formatter) {
+        formatter.format("%tT.%<tL %-5s [%s]: ", entry.time, entry.level, entry.name);
+        if (entry.argc == 0) {
+            line.append(entry.format);
+        } else {
+            int start = line.length();
+            Object[] args = {entry.a, entry.b, entry.c, entry.d};
+            try {
+                formatter.format(entry.format, args);
+            } catch (IllegalFormatException e) {
+                line.setLength(start);
+                line.append(entry.format);
+                for (int i = 0; i < entry.argc; i++) {
+                    line.append(' ').append(args[i]);
+                }
+            }
+        }
+        line.append(System.lineSeparator());
+    }
+
+    private void write(CharSequence line) {
+        try {
+            out.append(line);
+        } catch (IOException ignored) {}    //the messages are lost, as with System.out
+    }
+
+    private void flush() {
+        try {
+            out.flush();
+        } catch (IOException ignored) {}
+    }
+
+    /** A slot of the ring buffer. Its fields are written by who logs before publishing the sequence */
+    private static class Entry {
+        //The sequence of the message in this slot. It is -1 until the first message is published
+        private volatile long sequence = -1;
+        private long time;
+        private Logger.Level level;
+        private String name;
+        private String format;
+        private int argc;
+        private Object a, b, c, d;
+
+        /** Removes the references to the arguments, so that they can be collected */
+        private void clear() {
+            name = format = null;
+            a = b = c = d = null;
+        }
+    }
+
+    /** Creates the default writer when it is used for the first time */
+    private static class DefaultHolder {
+        private static final AsyncLogWriter INSTANCE = new AsyncLogWriter(System.out, DEFAULT_CAPACITY);
+
+        static {
+            Runtime.getRuntime().addShutdownHook(new Thread(INSTANCE::close, "log-writer-close"));
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.domenico.shared;
+
+/**
+ * Logs the messages of a component, for example "TCP-0", through an {@link AsyncLogWriter}. The messages are format
+ * strings, as in {@link String#format(String, Object...)}, which are formatted by the writer thread. When the level
+ * of a message is disabled it is discarded before doing anything else, so the arguments are never formatted. The
+ * methods take up to four arguments without creating an array for them.
+ */
+public class Logger {
+
+    /** The levels of the messages, from the least important. OFF disables all the messages */
+    public enum Level {
+        DEBUG, INFO, WARN, ERROR, OFF
+    }
+
+    private final String name;
+    private final AsyncLogWriter writer;
+
+    public Logger(String name, AsyncLogWriter writer) {
+        this.name = name;
+        this.writer = writer;
+    }
+
+    /** Returns a logger that writes through the default writer */
+    public static Logger getLogger(String name) {
+        return new Logger(name, AsyncLogWriter.getDefault());
+    }
+
+    /** Sets the minimum level of the messages written by the default writer */
+    public static void setLevel(Level level) {
+        AsyncLogWriter.getDefault().setLevel(level);
+    }
+
+    public boolean isEnabled(Level level) {
+        return writer.isEnabled(level);
+    }
+
+    public boolean isDebugEnabled() {
+        return writer.isEnabled(Level.DEBUG);
+    }
+
+    public void log(Level level, String message) {
+        if (writer.isEnabled(level))
+            writer.append(level, name, message, 0, null, null, null, null);
+    }
+
+    public void log(Level level, String format, Object a) {
+        if (writer.isEnabled(level))
+            writer.append(level, name, format, 1, a, null, null, null);
+    }
+
+    public void log(Level level, String format, Object a, Object b) {
+        if (writer.isEnabled(level))
+            writer.append(level, name, format, 2, a, b, null, null);
+    }
+
+    public void log(Level level, String format, Object a, Object b, Object c) {
+        if (writer.isEnabled(level))
+            writer.append(level, name, format, 3, a, b, c, null);
+    }
+
+    public void log(Level level, String format, Object a, Object b, Object c, Object d) {
+        if (writer.isEnabled(level))
+            writer.append(level, name, format, 4, a, b, c, d);
+    }
+
+    public void debug(String message) { log(Level.DEBUG, message); }
+
+    public void debug(String format, Object a) { log(Level.DEBUG, format, a); }
+
+    public void debug(String format, Object a, Object b) { log(Level.DEBUG, format, a, b); }
+
+    public void debug(String format, Object a, Object b, Object c) { log(Level.DEBUG, format, a, b, c); }
+
+    public void debug(String format, Object a, Object b, Object c, Object d) { log(Level.DEBUG, format, a, b, c, d); }
+
+    public void info(String message) { log(Level.INFO, message); }
+
+    public void info(String format, Object a) { log(Level.INFO, format, a); }
+
+    public void info(String format, Object a, Object b) { log(Level.INFO, format, a, b); }
+
+    public void info(String format, Object a, Object b, Object c) { log(Level.INFO, format, a, b, c); }
+
+    public void warn(String message) { log(Level.WARN, message); }
+
+    public void warn(String format, Object a) { log(Level.WARN, format, a); }
+
+    public void warn(String format, Object a, Object b) { log(Level.WARN, format, a, b); }
+
+    public void warn(String format, Object a, Object b, Object c) { log(Level.WARN, format, a, b, c); }
+
+    public void error(String message) { log(Level.ERROR, message); }
+
+    public void error(String format, Object a) { log(Level.ERROR, format, a); }
+
+    public void error(String format, Object a, Object b) { log(Level.ERROR, format, a, b); }
+
+    public void error(String format, Object a, Object b, Object c) { log(Level.ERROR, format, a, b, c); }
+}
@@ -5,7 +5,11 @@ import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.spi.AbstractSelectableChannel;
 import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -14,12 +18,23 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * selection key is passed. When the read() method call will not block on a channel, the method onReadable is called
  * and the relative selection key is passed. When the write() method call will not block on a channel, the method
  * onWritable is called and the relative selection key is passed.
+ * Other threads can hand work over to the multiplexer thread with {@link #execute(Runnable)}: the tasks are run by
+ * the multiplexer thread, in the same order they have been given, after handling the selected keys. The multiplexer
+ * thread can also schedule its own tasks after a delay with {@link #schedule(Runnable, long)}.
  */
 public abstract class Multiplexer {
 
     protected AbstractSelectableChannel channel;
     protected Selector selector;
+    //Tasks given by the other threads that should be run by the multiplexer thread
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    //True if the selector has been woken up to run the tasks and they have not been run yet
     private final AtomicBoolean wokeup;
+    //Tasks that should be run by the multiplexer thread after a delay, the first one to run at the head. Used only by
+    //the multiplexer thread
+    private final PriorityQueue<ScheduledTask> scheduled = new PriorityQueue<>();
+    //Orders the tasks scheduled at the same time, so that they run in the order they have been scheduled
+    private long scheduledCount = 0;
     private boolean running;
     private int timeout;
 
@@ -51,13 +66,27 @@ public abstract class Multiplexer {
         this.timeout = timeout;
     }
 
+    /**
+     * Instantiates this without a main channel. The channels on which the multiplexing is done are registered later
+     * by the subclass, for example when another multiplexer hands them over.
+     * @throws IOException if an I/O error occurs
+     */
+    protected Multiplexer() throws IOException {
+        this.channel = null;
+        this.timeout = 0;
+        this.selector = Selector.open();
+        this.wokeup = new AtomicBoolean(false);
+    }
+
     public void startProcessing() {
         running = true;
         try {
             while (running && !Thread.currentThread().isInterrupted()) {
-                int sel = selector.select(timeout);
+                int sel = select();
+                boolean ranScheduled = runScheduled();
                 if (sel == 0 && !wokeup.get()) {
-                    onTimeout();
+                    if (!ranScheduled)
+                        onTimeout();
                     continue;
                 }
                 Set<SelectionKey> selectedKeys = selector.selectedKeys();
@@ -82,7 +111,7 @@ public abstract class Multiplexer {
                     }
                 }
                 if (wokeup.compareAndSet(true, false)) {
-                    onWakeUp();
+                    runTasks();
                 }
             }
         } catch (IOException e) {
@@ -91,11 +120,64 @@ public abstract class Multiplexer {
     }
 
     /**
-     * Wakes up the multiplexer if it is waiting into the select() call
+     * Runs the given task on the multiplexer thread, after the tasks given before it. It can be called by any thread.
+     * The multiplexer is woken up if it is waiting into the select() call, but a burst of tasks given before the
+     * multiplexer runs them wakes it up just once.
+     * @param task the task that should be run by the multiplexer thread
      */
-    protected void wakeUp() {
-        wokeup.set(true);
-        selector.wakeup();
+    public void execute(Runnable task) {
+        tasks.add(task);
+        if (wokeup.compareAndSet(false, true))
+            selector.wakeup();
+    }
+
+    /**
+     * Runs the given task on the multiplexer thread after the given delay. It must be called by the multiplexer
+     * thread, for example by a task given to {@link #execute(Runnable)}.
+     * @param task the task that should be run
+     * @param delayMillis how many milliseconds the task should wait before running
+     * @return the scheduled task, which can be cancelled by the multiplexer thread before it runs
+     */
+    protected ScheduledTask schedule(Runnable task, long delayMillis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMillis));
+        ScheduledTask scheduledTask = new ScheduledTask(task, deadline, scheduledCount++);
+        scheduled.add(scheduledTask);
+        return scheduledTask;
+    }
+
+    /** Selects the ready channels. It doesn't wait more than the timeout and than the delay of the next scheduled task */
+    private int select() throws IOException {
+        ScheduledTask next = scheduled.peek();
+        if (next == null)
+            return selector.select(timeout);
+        //rounded up, so that the task is due when the select returns
+        long delay = TimeUnit.NANOSECONDS.toMillis(next.deadline - System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(1) - 1);
+        if (delay <= 0)
+            return selector.selectNow();
+        return selector.select(timeout > 0 ? Math.min(delay, timeout) : delay);
+    }
+
+    /** Runs the scheduled tasks that are due. Returns true if at least one of them has been run */
+    private boolean runScheduled() {
+        boolean ran = false;
+        long now = System.nanoTime();
+        ScheduledTask next;
+        while ((next = scheduled.peek()) != null && next.deadline - now <= 0) {
+            scheduled.poll();
+            if (!next.cancelled) {
+                next.task.run();
+                ran = true;
+            }
+        }
+        return ran;
+    }
+
+    /** Runs all the tasks that have been given, including those given by the tasks themselves */
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            task.run();
+        }
     }
 
     /**
@@ -106,6 +188,31 @@ public abstract class Multiplexer {
         selector.wakeup();
     }
 
+    /** A task scheduled by {@link #schedule(Runnable, long)} */
+    public static class ScheduledTask implements Comparable<ScheduledTask> {
+        private final Runnable task;
+        private final long deadline;    //when the task should run, as given by System.nanoTime()
+        private final long order;       //the order in which the task has been scheduled
+        private boolean cancelled = false;
+
+        private ScheduledTask(Runnable task, long deadline, long order) {
+            this.task = task;
+            this.deadline = deadline;
+            this.order = order;
+        }
+
+        /** Cancels this task if it has not run yet. It must be called by the multiplexer thread */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        @Override
+        public int compareTo(ScheduledTask other) {
+            int byDeadline = Long.compare(deadline - other.deadline, 0);
+            return byDeadline != 0 ? byDeadline : Long.compare(order, other.order);
+        }
+    }
+
     /**
      * Called when the method select() times out.
      * @throws IOException if an I/O error occurs
@@ -139,6 +246,4 @@ public abstract class Multiplexer {
      * @throws IOException if an I/O error occurs
      */
     abstract protected void onEndConnection(SelectionKey key) throws IOException;
-
-    abstract protected void onWakeUp();
 }
\ No newline at end of file
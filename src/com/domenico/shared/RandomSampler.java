@@ -0,0 +1,119 @@
+package com.domenico.shared;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Chooses distinct random ints with Floyd's algorithm, for example the ids of the words of a challenge. Each sample
+ * of k values draws exactly k random numbers, so it always ends, and it takes O(k) time whatever the range is. The
+ * values already chosen are kept into a small hash set, whose table is reused by each thread for all its samples.
+ */
+public class RandomSampler {
+
+    //Up to this count the chosen values are looked for in the array itself, which is faster than the hash set
+    private static final int LINEAR_COUNT = 32;
+    //The hash set of each thread. A slot holds a value plus one, so that 0 means empty
+    private static final ThreadLocal<int[]> SCRATCH = ThreadLocal.withInitial(() -> new int[64]);
+
+    private RandomSampler() {}
+
+    /**
+     * Returns distinct random values from 0 (inclusive) to the given bound (exclusive), in random order. Each subset
+     * of values is equally likely.
+     * @param bound how many values can be chosen
+     * @param count how many values should be chosen
+     * @return an array with the chosen values
+     * @throws IllegalArgumentException if count is negative or greater than bound
+     */
+    public static int[] sample(int bound, int count) {
+        int[] dest = new int[count];
+        sample(bound, count, dest);
+        return dest;
+    }
+
+    /**
+     * Same as {@link #sample(int, int)} but the values are written into the given array, from its start.
+     * @throws IllegalArgumentException if count is negative or greater than bound or than the array's length
+     */
+    public static void sample(int bound, int count, int[] dest) {
+        if (count < 0 || count > bound)
+            throw new IllegalArgumentException("Cannot choose " + count + " distinct values out of " + bound);
+        if (count > dest.length)
+            throw new IllegalArgumentException("The array is too small");
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (count <= LINEAR_COUNT) {
+            sampleLinear(random, bound, count, dest);
+            shuffle(random, count, dest);
+            return;
+        }
+        //a power of two with room for twice the values, so that the set is never full
+        int length = Integer.highestOneBit(Math.max(1, count) * 2 - 1) << 1;
+        int[] table = scratchTable(length);
+        int mask = length - 1;
+        //Floyd's algorithm: for each j a random value up to j is chosen, or j itself if the value was already chosen
+        int i = 0;
+        for (int j = bound - count; j < bound; j++) {
+            int value = random.nextInt(j + 1);
+            if (!add(table, mask, value)) {
+                add(table, mask, j);    //j has never been chosen, since the values chosen before are less than it
+                value = j;
+            }
+            dest[i++] = value;
+        }
+        shuffle(random, count, dest);
+    }
+
+    /** Floyd's algorithm for a few values, which are looked for in the array */
+    private static void sampleLinear(ThreadLocalRandom random, int bound, int count, int[] dest) {
+        int i = 0;
+        for (int j = bound - count; j < bound; j++) {
+            int value = random.nextInt(j + 1);
+            for (int k = 0; k < i; k++) {
+                if (dest[k] == value) {
+                    value = j;
+                    break;
+                }
+            }
+            dest[i++] = value;
+        }
+    }
+
+    /** Shuffles the first count values, since the values chosen last by Floyd's algorithm are more likely to be large */
+    private static void shuffle(ThreadLocalRandom random, int count, int[] dest) {
+        for (int k = count - 1; k > 0; k--) {
+            int other = random.nextInt(k + 1);
+            int value = dest[k];
+            dest[k] = dest[other];
+            dest[other] = value;
+        }
+    }
+
+    /** Returns the thread's hash set, whose first slots, as many as the given length, are empty. Only those slots
+     * are cleared and used, so a large table left by a large sample doesn't slow down the small ones */
+    private static int[] scratchTable(int length) {
+        int[] table = SCRATCH.get();
+        if (table.length < length) {
+            table = new int[length];
+            SCRATCH.set(table);
+        } else {
+            Arrays.fill(table, 0, length, 0);
+        }
+        return table;
+    }
+
+    /**
+     * Adds the given value to the hash set, by using the slots up to the mask
+     * @return true if the value has been added, false if it was already in the set
+     */
+    private static boolean add(int[] table, int mask, int value) {
+        int hash = value * 0x9E3779B9;  //spreads the close values
+        int slot = (hash ^ hash >>> 16) & mask;
+        while (table[slot] != 0) {
+            if (table[slot] == value + 1)
+                return false;
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = value + 1;
+        return true;
+    }
+}
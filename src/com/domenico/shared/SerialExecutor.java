@@ -0,0 +1,53 @@
+package com.domenico.shared;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Executor that runs the given tasks one at a time and in the same order they have been given, by using the threads
+ * of another executor. Many serial executors can share the same executor: the tasks of different serial executors
+ * can run in parallel while the tasks of the same serial executor never overlap. At most one task of this executor is
+ * scheduled on the shared executor at any time, and it gives the thread back after a batch of tasks so that a busy
+ * serial executor cannot starve the others.
+ */
+public class SerialExecutor implements Executor {
+
+    //How many tasks are run before giving the shared executor's thread back
+    private static final int MAX_BATCH = 16;
+
+    private final Executor executor;    //the executor that runs the tasks
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    //true while a task of this executor is scheduled on the shared executor or it is running
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+    public SerialExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        tasks.add(task);
+        scheduleNext();
+    }
+
+    /** Schedules the drain of the tasks if there are tasks to run and if a drain is not already scheduled */
+    private void scheduleNext() {
+        if (!tasks.isEmpty() && scheduled.compareAndSet(false, true))
+            executor.execute(this::drain);
+    }
+
+    /** Runs a batch of the queued tasks, then it schedules the next batch if some tasks are still queued */
+    private void drain() {
+        try {
+            Runnable task;
+            for (int i = 0; i < MAX_BATCH && (task = tasks.poll()) != null; i++) {
+                task.run();
+            }
+        } finally {
+            scheduled.set(false);
+            scheduleNext();
+        }
+    }
+}
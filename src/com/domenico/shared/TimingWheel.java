@@ -0,0 +1,247 @@
+package com.domenico.shared;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashed timing wheel that runs tasks after a delay. The time is divided in ticks and the wheel has a bucket for each
+ * tick, used circularly: a task is put in the bucket of the tick when it is due, together with how many turns of the
+ * wheel it should wait. Scheduling and cancelling a task take constant time, and a cancelled task is removed at once.
+ * The wheel is turned by its own thread, which runs the due tasks: they should be short, so they usually hand their
+ * work over to another thread. The tasks never run before their delay, but they can run up to a tick later.
+ * When there isn't any task to run the thread waits without ticking.
+ */
+public class TimingWheel implements AutoCloseable {
+
+    public static final long DEFAULT_TICK_MILLIS = 50;
+    public static final int DEFAULT_BUCKETS = 512;
+
+    private static final Logger LOG = Logger.getLogger("Timer");
+
+    private final long tickNanos;
+    private final Timeout[] buckets;    //the head of each bucket's list, or null if the bucket is empty
+    private final int mask;
+    //When the tick 0 has started, as given by System.nanoTime()
+    private final long startTime;
+    private final Thread thread;
+    //The last tick whose bucket has been processed. Guarded by this
+    private long tick = 0;
+    //How many tasks are waiting to run. Guarded by this
+    private int pending = 0;
+    private volatile boolean closed = false;
+    //How late the last tick and the latest tick ever have been processed, in nanoseconds
+    private volatile long tickLag = 0;
+    private volatile long maxTickLag = 0;
+
+    /**
+     * Creates a wheel and starts its thread
+     * @param tickMillis how many milliseconds a tick is long
+     * @param buckets how many buckets the wheel has. It must be a power of two
+     * @param name the name of the wheel's thread
+     */
+    public TimingWheel(long tickMillis, int buckets, String name) {
+        if (tickMillis <= 0)
+            throw new IllegalArgumentException("The tick must be positive");
+        if (buckets <= 0 || Integer.bitCount(buckets) != 1)
+            throw new IllegalArgumentException("The buckets must be a power of two");
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.buckets = new Timeout[buckets];
+        this.mask = buckets - 1;
+        this.startTime = System.nanoTime();
+        this.thread = new Thread(this::run, name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /** Returns the wheel shared by all the server's timeouts */
+    public static TimingWheel getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    /**
+     * Runs the given task on the wheel's thread after the given delay. It can be called by any thread.
+     * @param task the task that should be run
+     * @param delayMillis how many milliseconds the task should wait before running
+     * @return the scheduled task, which can be cancelled before it runs
+     */
+    public Timeout schedule(Runnable task, long delayMillis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMillis));
+        Timeout timeout = new Timeout(task);
+        synchronized (this) {
+            if (closed)
+                throw new IllegalStateException("The timing wheel is closed");
+            if (pending == 0)
+                tick = Math.max(tick, elapsedTicks(System.nanoTime()));    //the wheel has not ticked while idle
+            //rounded up, so that the task never runs early. The tick already processed cannot be used anymore
+            long dueTick = Math.max(tick + 1, (deadline - startTime + tickNanos - 1) / tickNanos);
+            timeout.rounds = (dueTick - tick - 1) / buckets.length;
+            timeout.bucket = (int) dueTick & mask;
+            link(timeout);
+            if (pending++ == 0)
+                notifyAll();
+        }
+        return timeout;
+    }
+
+    /** Returns how many tasks are waiting to run */
+    public synchronized int getPending() {
+        return pending;
+    }
+
+    /** Returns how late the last tick has been processed, in nanoseconds */
+    public long getTickLagNanos() {
+        return tickLag;
+    }
+
+    /** Returns how late the latest tick ever has been processed, in nanoseconds */
+    public long getMaxTickLagNanos() {
+        return maxTickLag;
+    }
+
+    /** Stops the wheel's thread. The tasks that are still waiting never run */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("TimingWheel{pending=%d, tickLag=%dus, maxTickLag=%dus}", getPending(),
+                getTickLagNanos() / 1000, getMaxTickLagNanos() / 1000);
+    }
+
+    /** Returns how many ticks have ended at the given time */
+    private long elapsedTicks(long now) {
+        return (now - startTime) / tickNanos;
+    }
+
+    /** The wheel's thread: it waits for the end of the next tick, then it runs the tasks due in that tick */
+    private void run() {
+        List<Runnable> due = new ArrayList<>();
+        while (true) {
+            synchronized (this) {
+                try {
+                    if (!waitNextTick())
+                        return;
+                } catch (InterruptedException e) {
+                    return;
+                }
+                expire(++tick, due);
+            }
+            for (Runnable task : due) {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    LOG.error("A scheduled task has failed: %s", e);
+                }
+            }
+            due.clear();
+        }
+    }
+
+    /**
+     * Waits until the next tick has ended, or while there isn't any task. It must hold the lock of this.
+     * @return true if the next tick should be processed, false if the wheel has been closed
+     */
+    private boolean waitNextTick() throws InterruptedException {
+        while (!closed) {
+            if (pending == 0) {
+                wait();
+                continue;
+            }
+            long now = System.nanoTime();
+            long tickEnd = startTime + (tick + 1) * tickNanos;
+            long delay = tickEnd - now;
+            if (delay <= 0) {
+                tickLag = -delay;
+                if (tickLag > maxTickLag)
+                    maxTickLag = tickLag;
+                return true;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, delay);
+        }
+        return false;
+    }
+
+    /** Removes from the bucket of the given tick the tasks that are due and it adds them to the given list */
+    private void expire(long tick, List<Runnable> due) {
+        Timeout timeout = buckets[(int) tick & mask];
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            if (timeout.rounds == 0) {
+                unlink(timeout);
+                timeout.state = Timeout.EXPIRED;
+                pending--;
+                due.add(timeout.task);
+            } else {
+                timeout.rounds--;
+            }
+            timeout = next;
+        }
+    }
+
+    /** Adds the given task to the head of its bucket */
+    private void link(Timeout timeout) {
+        Timeout head = buckets[timeout.bucket];
+        timeout.next = head;
+        if (head != null)
+            head.prev = timeout;
+        buckets[timeout.bucket] = timeout;
+    }
+
+    /** Removes the given task from its bucket */
+    private void unlink(Timeout timeout) {
+        if (timeout.prev != null)
+            timeout.prev.next = timeout.next;
+        else
+            buckets[timeout.bucket] = timeout.next;
+        if (timeout.next != null)
+            timeout.next.prev = timeout.prev;
+        timeout.prev = timeout.next = null;
+    }
+
+    /** A task scheduled by {@link #schedule(Runnable, long)} */
+    public class Timeout {
+        private static final int WAITING = 0, EXPIRED = 1, CANCELLED = 2;
+
+        private final Runnable task;
+        //The fields below are guarded by the wheel
+        private int state = WAITING;
+        private int bucket;
+        private long rounds;    //how many turns of the wheel the task should still wait
+        private Timeout prev, next;
+
+        private Timeout(Runnable task) {
+            this.task = task;
+        }
+
+        /**
+         * Cancels the task, so that it will not run. It can be called by any thread.
+         * @return true if the task has been cancelled, false if it has already run or it was already cancelled
+         */
+        public boolean cancel() {
+            synchronized (TimingWheel.this) {
+                if (state != WAITING)
+                    return false;
+                state = CANCELLED;
+                unlink(this);
+                pending--;
+                return true;
+            }
+        }
+    }
+
+    /** Creates the default wheel when it is used for the first time */
+    private static class DefaultHolder {
+        private static final TimingWheel INSTANCE = new TimingWheel(DEFAULT_TICK_MILLIS, DEFAULT_BUCKETS, "timing-wheel");
+    }
+}
@@ -4,7 +4,6 @@ import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.*;
-import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Class that contains some useful methods for general purposes
@@ -71,31 +70,6 @@ public class Utils {
         return String.format("%-" + width  + "s", String.format("%" + right + "s", s));
     }
 
-    /**
-     * Creates a list with a desired size that contains random elements from the given list. Each element in the
-     * created list are different.
-     *
-     * @param list the list from where the elements should be taken
-     * @param desiredSize the desired size of the random sub list
-     * @param dest where to add the entire sublist
-     * @param <T> the type of each list's element
-     */
-    public static <T> void randomSubList(List<T> list, int desiredSize, List<T> dest) {
-        if (desiredSize > list.size())
-            throw new IllegalArgumentException("The list has less elements that the ones required");
-        ThreadLocalRandom random = ThreadLocalRandom.current();
-
-        int i = 0;
-        while( i < desiredSize) {
-            int index = random.nextInt(list.size());
-            T elem = list.get(index);
-            if (!dest.contains(elem)) {
-                dest.add(elem);
-                i++;
-            }
-        }
-    }
-
     /**
      * Encrypts the given string by using the given algorithm
      * @param string the string that has to be encrypted
@@ -0,0 +1,53 @@
+package com.domenico.shared;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the executors that run each task on a new virtual thread. The virtual threads are available since Java 21
+ * while the project is compiled for an older release, so they are looked up by reflection. When the running JVM
+ * doesn't have them, the executors run each task on a cached platform thread instead.
+ */
+public class VirtualThreads {
+
+    //Thread.ofVirtual(), which returns the builder of the virtual threads, or null if they are not available
+    private static final Method OF_VIRTUAL = findMethod(Thread.class, "ofVirtual");
+
+    /** Returns true if the running JVM supports the virtual threads */
+    public static boolean isAvailable() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * Creates an executor that runs each task on a new virtual thread or, if they are not available, on a cached
+     * platform thread. The threads are named with the given prefix followed by a counter.
+     * @param name the prefix of the threads' names
+     * @return the executor
+     */
+    public static ExecutorService newThreadPerTaskExecutor(String name) {
+        if (OF_VIRTUAL != null) {
+            try {
+                Object builder = OF_VIRTUAL.invoke(null);
+                Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+                builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, name + "-", 0L);
+                ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+                Method newExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+                return (ExecutorService) newExecutor.invoke(null, factory);
+            } catch (ReflectiveOperationException ignored) { }  //falls back to the platform threads
+        }
+        AtomicInteger counter = new AtomicInteger(0);
+        return Executors.newCachedThreadPool(task -> new Thread(task, name + "-" + counter.getAndIncrement()));
+    }
+
+    /** Returns the public method with the given name and no parameters, or null if it doesn't exist */
+    private static Method findMethod(Class<?> clazz, String name) {
+        try {
+            return clazz.getMethod(name);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.domenico.communication;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BufferPoolTest {
+
+    private BufferPool pool;
+
+    @BeforeEach
+    void setUp() {
+        pool = new BufferPool(2);
+    }
+
+    @Test
+    void sizeClasses() {
+        assertEquals(BufferPool.MIN_SIZE, pool.acquire(1).capacity());
+        assertEquals(BufferPool.MIN_SIZE, pool.acquire(BufferPool.MIN_SIZE).capacity());
+        assertEquals(BufferPool.MIN_SIZE * 2, pool.acquire(BufferPool.MIN_SIZE + 1).capacity());
+        assertEquals(BufferPool.MAX_SIZE, pool.acquire(BufferPool.MAX_SIZE).capacity());
+        assertTrue(pool.acquire(100).isDirect());
+        assertEquals(5, pool.getMisses());
+    }
+
+    @Test
+    void reusesReleasedBuffers() {
+        ByteBuffer buffer = pool.acquire(1000);
+        buffer.putInt(42).flip();
+        pool.release(buffer);
+
+        ByteBuffer reused = pool.acquire(600);
+        assertSame(buffer, reused);
+        assertEquals(0, reused.position());
+        assertEquals(reused.capacity(), reused.limit());
+        assertEquals(1, pool.getHits());
+        assertEquals(1, pool.getMisses());
+        assertEquals(0, pool.getPooled());
+    }
+
+    @Test
+    void dropsWhenClassIsFull() {
+        ByteBuffer[] buffers = {pool.acquire(10), pool.acquire(10), pool.acquire(10)};
+        for (ByteBuffer buffer : buffers) {
+            pool.release(buffer);
+        }
+        assertEquals(2, pool.getPooled());
+        assertEquals(1, pool.getDropped());
+    }
+
+    @Test
+    void oversizedAndForeignBuffers() {
+        ByteBuffer big = pool.acquire(BufferPool.MAX_SIZE + 1);
+        assertFalse(big.isDirect());
+        assertEquals(1, pool.getOversized());
+        pool.release(big);
+        pool.release(ByteBuffer.allocate(BufferPool.MIN_SIZE));
+        pool.release(ByteBuffer.allocateDirect(BufferPool.MIN_SIZE + 1));
+        assertEquals(0, pool.getPooled());
+    }
+}
@@ -0,0 +1,155 @@
+package com.domenico.communication;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CodecTest {
+
+    private static final ConnectionData[] MESSAGES = {
+            ConnectionData.Factory.newLoginRequest("username", "password", 1234, "binary"),
+            ConnectionData.Factory.newLoginRequest("username", "password", 1234),
+            ConnectionData.Factory.newLogoutRequest("username"),
+            ConnectionData.Factory.newAddFriendRequest("username", "friend"),
+            ConnectionData.Factory.newChallengeRequest("username", "friend"),
+            ConnectionData.Factory.newChallengeStart(60000, 8, "città"),
+            ConnectionData.Factory.newChallengeEnd(3, 2, 1, 4, -2, 0),
+            ConnectionData.Factory.newChallengeWord("ciao mondo"),
+            ConnectionData.Factory.newLeaderboardRequest("username"),
+            ConnectionData.Factory.newSuccessResponse(),
+            ConnectionData.Factory.newSuccessResponse("[\"friend\"]"),
+            ConnectionData.Factory.newFailResponse("Utente non trovato"),
+    };
+
+    @Test
+    void binaryRoundTrip() {
+        for (ConnectionData message : MESSAGES) {
+            ByteBuffer frame = Codec.BINARY.encode(message);
+            assertTrue(BinaryCodec.isBinary(frame.get(frame.position())), message.toString());
+            assertEquals(message.toString(), Codec.decodeFrame(frame).toString());
+        }
+    }
+
+    @Test
+    void textRoundTrip() {
+        for (ConnectionData message : MESSAGES) {
+            ByteBuffer frame = Codec.TEXT.encode(message);
+            assertFalse(BinaryCodec.isBinary(frame.get(frame.position())), message.toString());
+            assertEquals(message.toString(), Codec.decodeFrame(frame).toString());
+        }
+    }
+
+    @Test
+    void udpMessagesKeepTheirChallengeId() {
+        ConnectionData[] messages = {
+                ConnectionData.Factory.newChallengeRequest("username", "friend", 42),
+                ConnectionData.Factory.newChallengeAck(42),
+                ConnectionData.Factory.newChallengeResponse(42, true),
+        };
+        for (ConnectionData message : messages) {
+            for (Codec codec : new Codec[]{Codec.TEXT, Codec.BINARY}) {
+                ConnectionData decoded = Codec.decodeFrame(codec.encode(message));
+                assertEquals(message.toString(), decoded.toString());
+                assertEquals(42, decoded.getChallengeId());
+            }
+        }
+        assertTrue(ConnectionData.Validator.isChallengeAck(messages[1]));
+        assertTrue(ConnectionData.Validator.isChallengeAccepted(messages[2]));
+        assertFalse(ConnectionData.Validator.isChallengeAccepted(ConnectionData.Factory.newChallengeResponse(42, false)));
+        assertEquals(-1, ConnectionData.Factory.newChallengeRequest("username", "friend").getChallengeId());
+    }
+
+    @Test
+    void binaryIsSmaller() {
+        ConnectionData message = ConnectionData.Factory.newChallengeEnd(3, 2, 1, 4, -2, 0);
+        assertTrue(Codec.BINARY.encode(message).remaining() < Codec.TEXT.encode(message).remaining());
+    }
+
+    @Test
+    void truncatedBinaryFrame() {
+        ByteBuffer frame = Codec.BINARY.encode(ConnectionData.Factory.newAddFriendRequest("username", "friend"));
+        frame.limit(frame.limit() - 3);
+        assertTrue(ConnectionData.Validator.isFailResponse(Codec.decodeFrame(frame)));
+    }
+
+    @Test
+    void textDecodesLikeParseLine() {
+        String[] lines = {
+                "LOGIN_REQUEST username password 1234", "LOGIN_REQUEST username password 1234 binary",
+                "LOGIN_REQUEST username password +80", "LOGIN_REQUEST username password 4294967295",
+                "LOGIN_REQUEST username password 4294967296", "LOGIN_REQUEST username password -1",
+                "LOGIN_REQUEST username password port", "LOGIN_REQUEST username password", "LOGIN_REQUEST  password 1",
+                "LOGOUT_REQUEST username", "LOGOUT_REQUEST username   ", "LOGOUT_REQUEST  username", "LOGOUT_REQUEST",
+                "ADD_FRIEND_REQUEST username friend", "ADD_FRIEND_REQUEST username", "FRIEND_LIST_REQUEST username",
+                "CHALLENGE_REQUEST username friend", "CHALLENGE_START 60000;8;città", "CHALLENGE_END 1;2;3;4;5;6",
+                "CHALLENGE_WORD ciao", "CHALLENGE_WORD ciao  mondo ", "CHALLENGE_WORD", "SCORE_REQUEST username",
+                "LEADERBOARD_REQUEST username", "SUCCESS_RESPONSE", "SUCCESS_RESPONSE ", "SUCCESS_RESPONSE {\"a\":1}",
+                "FAIL_RESPONSE", "FAIL_RESPONSE Utente non trovato", "UNKNOWN_REQUEST username", "LOGIN", "",
+                "login_request username password 1", "CHALLENGE_REQUEST username friend 7",
+                "CHALLENGE_REQUEST username friend -7", "CHALLENGE_REQUEST username friend x", "CHALLENGE_ACK 7",
+                "CHALLENGE_ACK +7", "CHALLENGE_ACK", "CHALLENGE_ACK 7 8", "CHALLENGE_ACK 99999999999999999999",
+                "CHALLENGE_RESPONSE 7 accepted", "CHALLENGE_RESPONSE 7 declined", "CHALLENGE_RESPONSE 7 maybe",
+                "CHALLENGE_RESPONSE 7", "CHALLENGE_RESPONSE x accepted",
+        };
+        for (String line : lines) {
+            ByteBuffer frame = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+            assertEquals(ConnectionData.Factory.parseLine(line).toString(), Codec.TEXT.decode(frame).toString(), line);
+        }
+    }
+
+    @Test
+    void textDecodesDirectBuffers() {
+        byte[] bytes = "ADD_FRIEND_REQUEST utente amicò".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer frame = ByteBuffer.allocateDirect(bytes.length + 2);
+        frame.put((byte) 0).put(bytes).put((byte) 0).flip().position(1).limit(bytes.length + 1);
+        ConnectionData data = Codec.TEXT.decode(frame.slice());
+        assertEquals("utente", data.getUsername());
+        assertEquals("amicò", data.getFriendUsername());
+    }
+
+    @Test
+    void encodesIntoTheGivenBufferAsTheStringWouldBe() {
+        String[] words = {"ascii", "città", "ß€", "\uD83D\uDE00 emoji", "lone \uD83D surrogate", "\uDE00"};
+        for (String word : words) {
+            ConnectionData message = ConnectionData.Factory.newChallengeWord(word);
+            byte[] expected = message.toString().getBytes(StandardCharsets.UTF_8);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(64);
+            assertTrue(Codec.TEXT.encodeInto(message, buffer));
+            assertEquals(expected.length, buffer.position(), word);
+            assertEquals(ByteBuffer.wrap(expected), buffer.flip(), word);
+            assertEquals(word.getBytes(StandardCharsets.UTF_8).length, TextCodec.utf8Length(word), word);
+        }
+    }
+
+    @Test
+    void tellsWhenTheBufferHasNoRoom() {
+        ConnectionData message = ConnectionData.Factory.newFailResponse("Utente non trovato");
+        for (Codec codec : new Codec[]{Codec.TEXT, Codec.BINARY}) {
+            int length = codec.encode(message).remaining();
+            assertFalse(codec.encodeInto(message, ByteBuffer.allocate(length - 1)));
+            assertTrue(codec.encodeInto(message, ByteBuffer.allocate(length)));
+        }
+    }
+
+    @Test
+    void encodesTheFramesBiggerThanTheSmallestBuffers() {
+        Connection connection = new Connection() {
+            @Override
+            void write(ByteBuffer buffer) {}
+
+            @Override
+            int read(ByteBuffer buffer) { return 0; }
+
+            @Override
+            void endConnection() {}
+        };
+        ConnectionData message = ConnectionData.Factory.newSuccessResponse("è".repeat(BufferPool.MIN_SIZE));
+        ByteBuffer frame = connection.encode(message);
+        assertTrue(frame.isDirect());
+        assertEquals(frame.remaining() - Integer.BYTES, frame.getInt());
+        assertEquals(message.toString(), Codec.decodeFrame(frame).toString());
+    }
+}
@@ -0,0 +1,107 @@
+package com.domenico.communication;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FrameDecoderTest {
+
+    private ChunkedConnection connection;
+    private FrameDecoder decoder;
+    private List<ConnectionData> frames;
+
+    /** Connection that returns the queued chunks, one for each read, like a stream that splits and merges frames */
+    private static class ChunkedConnection extends Connection {
+        private final LinkedList<byte[]> chunks = new LinkedList<>();
+        private boolean closed = false;
+
+        @Override
+        void write(ByteBuffer buffer) { }
+
+        @Override
+        int read(ByteBuffer buffer) {
+            if (chunks.isEmpty())
+                return closed ? -1 : 0;
+            byte[] chunk = chunks.peek();
+            int len = Math.min(chunk.length, buffer.remaining());
+            buffer.put(chunk, 0, len);
+            chunks.pop();
+            if (len < chunk.length) {
+                byte[] rest = new byte[chunk.length - len];
+                System.arraycopy(chunk, len, rest, 0, rest.length);
+                chunks.push(rest);
+            }
+            return len;
+        }
+
+        @Override
+        void endConnection() { }
+    }
+
+    private static byte[] frame(ConnectionData data) {
+        byte[] payload = data.toString().getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(Integer.BYTES + payload.length).putInt(payload.length).put(payload).array();
+    }
+
+    @BeforeEach
+    void setUp() {
+        connection = new ChunkedConnection();
+        decoder = new FrameDecoder();
+        frames = new ArrayList<>();
+    }
+
+    @Test
+    void splitFrame() throws IOException {
+        byte[] bytes = frame(ConnectionData.Factory.newScoreRequest("username"));
+        for (byte b : bytes) {
+            assertEquals(0, frames.size());
+            connection.chunks.add(new byte[]{b});
+            decoder.readFrames(connection, frames);
+        }
+        assertEquals(1, frames.size());
+        assertTrue(ConnectionData.Validator.isScoreRequest(frames.get(0)));
+        assertEquals("username", frames.get(0).getUsername());
+    }
+
+    @Test
+    void coalescedFrames() throws IOException {
+        byte[] first = frame(ConnectionData.Factory.newLoginRequest("username", "password", 1234));
+        byte[] second = frame(ConnectionData.Factory.newChallengeWord("hello world"));
+        byte[] both = ByteBuffer.allocate(first.length + second.length).put(first).put(second).array();
+        connection.chunks.add(both);
+
+        assertEquals(2, decoder.readFrames(connection, frames));
+        assertTrue(ConnectionData.Validator.isLoginRequest(frames.get(0)));
+        assertEquals("hello world", frames.get(1).getResponseData());
+    }
+
+    @Test
+    void frameBiggerThanBuffer() throws IOException {
+        String data = "x".repeat(5000);
+        connection.chunks.add(frame(ConnectionData.Factory.newSuccessResponse(data)));
+
+        assertEquals(1, decoder.readFrames(connection, frames));
+        assertEquals(data, frames.get(0).getResponseData());
+    }
+
+    @Test
+    void closedConnection() {
+        connection.closed = true;
+        assertThrows(EOFException.class, () -> decoder.readFrames(connection, frames));
+    }
+
+    @Test
+    void invalidLength() {
+        connection.chunks.add(ByteBuffer.allocate(Integer.BYTES).putInt(-1).array());
+        assertThrows(IOException.class, () -> decoder.readFrames(connection, frames));
+    }
+}
@@ -0,0 +1,136 @@
+package com.domenico.communication;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OutboundQueueTest {
+
+    private BufferPool pool;
+    private OutboundQueue queue;
+    private SlowChannel channel;
+
+    /** A channel which accepts at most a given number of bytes with each write, as a full socket buffer does */
+    private static class SlowChannel implements GatheringByteChannel {
+        private final ByteArrayOutputStream written = new ByteArrayOutputStream();
+        private int bytesPerWrite;
+        private int writes = 0;
+
+        SlowChannel(int bytesPerWrite) {
+            this.bytesPerWrite = bytesPerWrite;
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) {
+            writes++;
+            long count = 0;
+            for (int i = offset; i < offset + length && count < bytesPerWrite; i++) {
+                while (srcs[i].hasRemaining() && count < bytesPerWrite) {
+                    written.write(srcs[i].get());
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs) {
+            return write(srcs, 0, srcs.length);
+        }
+
+        @Override
+        public int write(ByteBuffer src) {
+            return (int) write(new ByteBuffer[]{src});
+        }
+
+        @Override
+        public boolean isOpen() { return true; }
+
+        @Override
+        public void close() { }
+    }
+
+    @BeforeEach
+    void setUp() {
+        pool = new BufferPool(8);
+        queue = new OutboundQueue(pool, 3);
+        channel = new SlowChannel(5);
+    }
+
+    private ByteBuffer frame(String text) {
+        ByteBuffer frame = pool.acquire(text.length());
+        frame.put(text.getBytes()).flip();
+        return frame;
+    }
+
+    @Test
+    void resumesTheFrameWrittenPartially() throws IOException {
+        queue.add(frame("abc"));
+        queue.add(frame("defgh"));
+        queue.add(frame("ij"));
+
+        //the first write takes "abc" and part of "defgh", which stays at the head of the queue
+        assertFalse(queue.flush(channel));
+        assertEquals("abcde", channel.written.toString());
+        assertEquals(2, queue.size());
+        assertEquals(1, pool.getPooled());
+
+        //the rest of "defgh" and the whole "ij" fit into the next write
+        assertTrue(queue.flush(channel));
+        assertEquals("abcdefghij", channel.written.toString());
+        assertTrue(queue.isEmpty());
+        assertEquals(3, pool.getPooled());
+    }
+
+    @Test
+    void isFlushedWhenTheChannelTakesEverything() throws IOException {
+        channel.bytesPerWrite = 3;
+        queue.add(frame("ab"));
+        queue.add(frame("cdefgh"));
+        //the connection keeps the interest on write as long as the flush returns false
+        assertFalse(queue.flush(channel));
+        assertFalse(queue.flush(channel));
+        assertEquals(1, queue.size());
+
+        channel.bytesPerWrite = 100;
+        assertTrue(queue.flush(channel));
+        assertEquals("abcdefgh", channel.written.toString());
+        assertTrue(queue.isEmpty());
+        assertEquals(3, channel.writes);
+        //nothing is written when there is nothing to send
+        assertTrue(queue.flush(channel));
+        assertEquals(3, channel.writes);
+    }
+
+    @Test
+    void gathersTheFramesIntoASingleWrite() throws IOException {
+        channel.bytesPerWrite = 1000;
+        for (int i = 0; i < 3; i++) {
+            queue.add(frame("frame" + i));
+        }
+        assertTrue(queue.flush(channel));
+        assertEquals(1, channel.writes);
+        assertEquals("frame0frame1frame2", channel.written.toString());
+    }
+
+    @Test
+    void failsWhenTooManyFramesAreWaiting() throws IOException {
+        for (int i = 0; i < 3; i++) {
+            queue.add(frame("frame" + i));
+        }
+        //the caller closes the connection with the endpoint which is not reading
+        assertThrows(IOException.class, () -> queue.add(frame("frame3")));
+        assertEquals(3, queue.size());
+        assertEquals(1, pool.getPooled());
+
+        queue.clear();
+        assertTrue(queue.isEmpty());
+        assertEquals(4, pool.getPooled());
+    }
+}
@@ -0,0 +1,75 @@
+package com.domenico.communication;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compares the time and the memory needed to decode the text frames with {@link TextCodec#decode(ByteBuffer)} and
+ * with {@link ConnectionData.Factory#parseLine(String)}, which needs the whole line as a string. It is not a test, it
+ * should be run with its main method after compiling the tests.
+ */
+public class TextCodecBenchmark {
+
+    private static final String[] LINES = {
+            "LOGIN_REQUEST username password 51234",
+            "ADD_FRIEND_REQUEST username friend",
+            "CHALLENGE_WORD parola tradotta",
+            "SUCCESS_RESPONSE {\"username\":120,\"friend\":95,\"other\":40}",
+            "UNKNOWN_REQUEST username",
+    };
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int ROUNDS = 10;
+    private static final int ITERATIONS = 200_000;
+    //Where the result of each run is written, so that the decoded objects are not optimized away
+    private static volatile int sink;
+
+    private interface Decoder {
+        ConnectionData decode(ByteBuffer frame);
+    }
+
+    public static void main(String[] args) {
+        ByteBuffer[] frames = new ByteBuffer[LINES.length];
+        for (int i = 0; i < LINES.length; i++) {
+            frames[i] = ByteBuffer.wrap(LINES[i].getBytes(StandardCharsets.UTF_8));
+        }
+        //the old decoder: the frame becomes a string that is parsed by parseLine
+        Decoder parseLine = frame -> ConnectionData.Factory.parseLine(
+                new String(frame.array(), frame.position(), frame.remaining(), StandardCharsets.UTF_8));
+        Decoder inPlace = Codec.TEXT::decode;
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            run(parseLine, frames);
+            run(inPlace, frames);
+        }
+        report("parseLine", parseLine, frames);
+        report("in place ", inPlace, frames);
+    }
+
+    private static void report(String name, Decoder decoder, ByteBuffer[] frames) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long bestNanos = Long.MAX_VALUE;
+        long allocated = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            long bytesBefore = threads.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            run(decoder, frames);
+            bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+            allocated += threads.getThreadAllocatedBytes(threadId) - bytesBefore;
+        }
+        long decoded = (long) ITERATIONS * frames.length;
+        System.out.printf("%s: %6.1f ns/frame, %6.1f bytes/frame%n", name,
+                (double) bestNanos / decoded, (double) allocated / ROUNDS / decoded);
+    }
+
+    private static void run(Decoder decoder, ByteBuffer[] frames) {
+        int hash = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            for (ByteBuffer frame : frames) {
+                hash += decoder.decode(frame.duplicate()).hashCode();
+            }
+        }
+        sink = hash;
+    }
+}
@@ -0,0 +1,57 @@
+package com.domenico.server;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AcceptedAnswersTest {
+
+    @Test
+    void normalizesCaseAccentsPunctuationAndArticles() {
+        assertEquals("cafe", AcceptedAnswers.normalize("  Café "));
+        assertEquals("ice cream", AcceptedAnswers.normalize("Ice-Cream!"));
+        assertEquals("dog", AcceptedAnswers.normalize("the dog"));
+        assertEquals("go", AcceptedAnswers.normalize("(to) go"));
+        assertEquals("apple", AcceptedAnswers.normalize("An apple."));
+        assertEquals("a", AcceptedAnswers.normalize("a"));
+        assertEquals("", AcceptedAnswers.normalize("..."));
+    }
+
+    @Test
+    void acceptsTheAlternatesOfEachWordOnly() {
+        AcceptedAnswers answers = AcceptedAnswers.of(new String[]{"dog, hound", "to go", null, "naïve / Naive"});
+        assertEquals(4, answers.getWords());
+        assertTrue(answers.accepts(0, "DOG"));
+        assertTrue(answers.accepts(0, "the hound"));
+        //the whole translation is right as well
+        assertTrue(answers.accepts(0, "Dog, hound"));
+        assertFalse(answers.accepts(0, "hound dog"));
+        assertTrue(answers.accepts(1, "go"));
+        assertTrue(answers.accepts(1, "To go."));
+        assertFalse(answers.accepts(1, "dog"));         //right for another word
+        assertFalse(answers.accepts(2, "anything"));
+        assertTrue(answers.accepts(3, "naive"));
+        assertFalse(answers.accepts(3, ""));
+        assertFalse(answers.accepts(3, null));
+        assertFalse(answers.accepts(4, "dog"));
+    }
+
+    @Test
+    void acceptsTheWholeTranslationTypedExactly() {
+        AcceptedAnswers answers = AcceptedAnswers.of(new String[]{"Hello, world", "yes/no", "to be; to exist"});
+        assertTrue(answers.accepts(0, "hello, world"));
+        assertTrue(answers.accepts(0, "world"));
+        assertTrue(answers.accepts(1, "yes/no"));
+        assertTrue(answers.accepts(2, "to be; to exist"));
+        assertTrue(answers.accepts(2, "exist"));
+    }
+
+    @Test
+    void theSameAnswerCanBeRightForManyWords() {
+        AcceptedAnswers answers = AcceptedAnswers.of(new String[]{"word", "word", "word", "other"});
+        for (int i = 0; i < 3; i++) {
+            assertTrue(answers.accepts(i, "Word"));
+        }
+        assertFalse(answers.accepts(3, "word"));
+    }
+}
@@ -0,0 +1,118 @@
+package com.domenico.server;
+
+import com.domenico.shared.TimingWheel;
+import com.sun.management.HotSpotDiagnosticMXBean;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class ChallengeTest {
+
+    private static final int WORDS = 8;
+    private static final int CHALLENGES = 100_000;
+    //How many bytes a challenge can take while its request waits for the response, and then while it is played with
+    //its words and its timer. They hold with the compressed references, which the JVM uses on heaps up to 32 GB
+    private static final long BYTES_PER_REQUEST_BUDGET = 340;
+    private static final long BYTES_PER_CHALLENGE_BUDGET = 470;
+
+    private static Dictionary newDictionary(int size) {
+        List<String> words = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            words.add("parola" + i);
+        }
+        return Dictionary.of(words);
+    }
+
+    @Test
+    void playersAreAddressedBySlot() {
+        Dictionary dictionary = newDictionary(10);
+        Challenge challenge = new Challenge("user1", "user2");
+        challenge.setWords(new int[]{3, 7}, new String[]{"word3", null});
+        assertEquals(Challenge.FROM, challenge.playerOf("user1"));
+        assertEquals(Challenge.TO, challenge.playerOf("user2"));
+        assertEquals(-1, challenge.playerOf("user3"));
+
+        assertEquals("parola3", challenge.getNextItWord(dictionary, Challenge.FROM));
+        challenge.checkAndGoNext(Challenge.FROM, "WORD3");
+        assertEquals("parola7", challenge.getNextItWord(dictionary, Challenge.FROM));
+        assertEquals("parola3", challenge.getNextItWord(dictionary, Challenge.TO));
+        //a word without translation is never right
+        challenge.checkAndGoNext(Challenge.FROM, "anything");
+        assertTrue(challenge.hasPlayerEnded(Challenge.FROM));
+        assertNull(challenge.getNextItWord(dictionary, Challenge.FROM));
+        assertFalse(challenge.isGameEnded());
+        assertEquals(1, challenge.getRightCounter(Challenge.FROM));
+        assertEquals(1, challenge.getWrongCounter(Challenge.FROM));
+
+        challenge.checkAndGoNext(Challenge.TO, "wrong");
+        challenge.checkAndGoNext(Challenge.TO, "wrong");
+        challenge.checkAndGoNext(Challenge.TO, "ignored");
+        assertEquals(2, challenge.getWrongCounter(Challenge.TO));
+        assertTrue(challenge.isGameEnded());
+    }
+
+    @Test
+    void fitsTheMemoryBudgetWithManyChallenges() {
+        assumeTrue(usesCompressedOops(), "the budgets are measured with the compressed references");
+        Dictionary dictionary = newDictionary(1000);
+        //the translations are owned by the translation service, so they are shared here and not measured, while the
+        //table of the accepted answers of each challenge is
+        String[] translations = new String[WORDS];
+        Arrays.fill(translations, "word");
+        //what the challenge timer refers to in the server: the attachments of the two players
+        Object fromUser = new Object(), toUser = new Object();
+        Challenge[] challenges = new Challenge[CHALLENGES];
+        long before = usedMemory();
+        //each request waits for its response with a timeout
+        for (int i = 0; i < CHALLENGES; i++) {
+            challenges[i] = new Challenge("user1", "user2");
+            challenges[i].responseOrTimeout(60_000);
+        }
+        long bytesPerRequest = (usedMemory() - before) / CHALLENGES;
+        //then it is accepted and the match is played with its words and its timer
+        for (Challenge challenge : challenges) {
+            challenge.setRequestAccepted(true);
+            challenge.setWords(dictionary.randomIds(WORDS), translations.clone());
+            challenge.setTimer(TimingWheel.getDefault().schedule(
+                    () -> keepAlive(challenge, fromUser, toUser), 60_000));
+        }
+        long bytesPerChallenge = (usedMemory() - before) / CHALLENGES;
+        for (Challenge challenge : challenges) {
+            challenge.cancelTimer();
+        }
+        assertTrue(bytesPerRequest <= BYTES_PER_REQUEST_BUDGET, bytesPerRequest + " bytes for each request, " +
+                BYTES_PER_REQUEST_BUDGET + " at most");
+        assertTrue(bytesPerChallenge <= BYTES_PER_CHALLENGE_BUDGET, bytesPerChallenge + " bytes for each challenge, " +
+                BYTES_PER_CHALLENGE_BUDGET + " at most");
+    }
+
+    /** The timer task of a challenge, which refers to the challenge and to its players as the server's one does */
+    private static void keepAlive(Challenge challenge, Object fromUser, Object toUser) { }
+
+    /** Returns true if the JVM uses the compressed references, false if it doesn't or if it cannot be known */
+    private static boolean usesCompressedOops() {
+        try {
+            HotSpotDiagnosticMXBean bean = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+            return bean != null && Boolean.parseBoolean(bean.getVMOption("UseCompressedOops").getValue());
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /** Returns how many bytes of the heap are used, after collecting the garbage */
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+}
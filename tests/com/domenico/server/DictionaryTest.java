@@ -0,0 +1,55 @@
+package com.domenico.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DictionaryTest {
+
+    private static final List<String> WORDS = List.of("perché", "città", "casa", "", "più");
+
+    @Test
+    void mappedFileHasTheSameWords() throws IOException {
+        Path file = Files.createTempFile("dictionary", Dictionary.FILE_EXTENSION);
+        try {
+            Dictionary.write(WORDS, file);
+            Dictionary dictionary = Dictionary.map(file);
+            assertEquals(WORDS.size(), dictionary.size());
+            for (int id = 0; id < WORDS.size(); id++) {
+                assertEquals(WORDS.get(id), dictionary.getWord(id));
+            }
+            assertThrows(IndexOutOfBoundsException.class, () -> dictionary.getWord(WORDS.size()));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void rejectsFilesInOtherFormats() throws IOException {
+        Path file = Files.createTempFile("dictionary", ".txt");
+        try {
+            Files.write(file, String.join("\n", WORDS).getBytes(StandardCharsets.UTF_8));
+            assertThrows(IOException.class, () -> Dictionary.map(file));
+            List<String> read = Dictionary.readText(Files.newInputStream(file));
+            assertEquals(List.of("perché", "città", "casa", "più"), read);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void randomIdsAreDistinct() {
+        Dictionary dictionary = Dictionary.of(List.of("a", "b", "c", "d"));
+        int[] ids = dictionary.randomIds(4);
+        assertArrayEquals(new int[]{0, 1, 2, 3}, Arrays.stream(ids).sorted().toArray());
+        assertThrows(IllegalArgumentException.class, () -> dictionary.randomIds(5));
+        assertEquals(0, Dictionary.of(List.of()).size());
+    }
+}
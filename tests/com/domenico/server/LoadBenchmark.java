@@ -0,0 +1,121 @@
+package com.domenico.server;
+
+import com.domenico.communication.Codec;
+import com.domenico.communication.ConnectionData;
+import com.domenico.communication.RMIConnection;
+import com.domenico.communication.TCPConnection;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Measures the throughput and the latency of the TCP front end of a running server. Many clients log in and send
+ * score requests one after the other, each waiting for the response before sending the next one. Run it once with
+ * tcp_front_end=nio and once with tcp_front_end=blocking to compare the front ends on the same hardware. It is not a
+ * test, it should be run with its main method after compiling the tests and after starting the server.
+ * Usage: LoadBenchmark [clients] [requests per client]
+ */
+public class LoadBenchmark {
+
+    private static final String PASSWORD = "password";
+    private static final int DEFAULT_CLIENTS = 100;
+    private static final int DEFAULT_REQUESTS = 2_000;
+    //The first requests of each client are not measured, so that the server's code is compiled by the JIT
+    private static final int WARMUP_REQUESTS = 200;
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_CLIENTS;
+        int requests = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_REQUESTS;
+
+        Registry registry = LocateRegistry.getRegistry(RMIConnection.REGISTRY_PORT);
+        RMIConnection rmi = (RMIConnection) registry.lookup(RMIConnection.SERVICE_NAME);
+        String prefix = "load" + System.currentTimeMillis() % 100_000 + "_";
+        for (int i = 0; i < clients; i++) {
+            rmi.register(prefix + i, PASSWORD);
+        }
+
+        long[][] latencies = new long[clients][requests];
+        CountDownLatch ready = new CountDownLatch(clients);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(clients);
+        for (int i = 0; i < clients; i++) {
+            String username = prefix + i;
+            long[] clientLatencies = latencies[i];
+            new Thread(() -> {
+                try (Socket socket = new Socket(TCPConnection.SERVER_HOST, TCPConnection.SERVER_PORT)) {
+                    socket.setTcpNoDelay(true);
+                    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                    DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                    send(out, ConnectionData.Factory.newLoginRequest(username, PASSWORD, 40_000));
+                    receive(in);
+                    ConnectionData scoreRequest = ConnectionData.Factory.newScoreRequest(username);
+                    for (int j = 0; j < WARMUP_REQUESTS; j++) {
+                        send(out, scoreRequest);
+                        receive(in);
+                    }
+                    ready.countDown();
+                    start.await();
+                    for (int j = 0; j < clientLatencies.length; j++) {
+                        long sent = System.nanoTime();
+                        send(out, scoreRequest);
+                        receive(in);
+                        clientLatencies[j] = System.nanoTime() - sent;
+                    }
+                    send(out, ConnectionData.Factory.newLogoutRequest(username));
+                    receive(in);
+                } catch (IOException | InterruptedException e) {
+                    System.err.println(username + ": " + e);
+                    ready.countDown();
+                } finally {
+                    done.countDown();
+                }
+            }, "load-" + i).start();
+        }
+
+        ready.await();
+        long startTime = System.nanoTime();
+        start.countDown();
+        done.await();
+        long elapsed = System.nanoTime() - startTime;
+
+        long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).filter(l -> l > 0).sorted().toArray();
+        System.out.printf("%d clients, %d requests in %d ms: %.0f requests/s%n", clients, all.length,
+                elapsed / 1_000_000, all.length / (elapsed / 1e9));
+        System.out.printf("latency p50=%d us p99=%d us p99.9=%d us max=%d us%n", percentile(all, 0.50),
+                percentile(all, 0.99), percentile(all, 0.999), all.length > 0 ? all[all.length - 1] / 1000 : 0);
+    }
+
+    /** Returns the given percentile of the sorted latencies, in microseconds */
+    private static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0)
+            return 0;
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1);
+        return sorted[Math.max(index, 0)] / 1000;
+    }
+
+    /** Writes the given request with its length before it, as the server expects */
+    private static void send(DataOutputStream out, ConnectionData data) throws IOException {
+        ByteBuffer frame = Codec.TEXT.encode(data);
+        byte[] bytes = new byte[frame.remaining()];
+        frame.get(bytes);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+        out.flush();
+    }
+
+    /** Reads a whole response */
+    private static ConnectionData receive(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return Codec.decodeFrame(ByteBuffer.wrap(bytes));
+    }
+}
@@ -0,0 +1,64 @@
+package com.domenico.server.network;
+
+import com.domenico.server.Challenge;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChallengeRegistryTest {
+
+    private static final InetSocketAddress USER2 = new InetSocketAddress("127.0.0.1", 5002);
+    private static final InetSocketAddress USER4 = new InetSocketAddress("127.0.0.1", 5004);
+
+    @Test
+    void matchesResponsesByChallengeId() {
+        ChallengeRegistry registry = new ChallengeRegistry(10000);
+        Challenge first = new Challenge("user1", "user2");
+        Challenge second = new Challenge("user3", "user4");
+        registry.register(first, USER2);
+        registry.register(second, USER4);
+        assertEquals(2, registry.getPending());
+
+        assertSame(second, registry.answer(second.getId(), USER4));
+        assertSame(first, registry.answer(first.getId(), USER2));
+        //a response sent again is unknown, because the request has already been answered
+        assertNull(registry.answer(first.getId(), USER2));
+        assertNull(registry.answer(first.getId() + 1, USER2));
+        assertEquals(2, registry.getUnknown());
+        assertEquals(0, registry.getPending());
+    }
+
+    @Test
+    void dropsLateResponsesAndPurgesExpiredRequests() throws InterruptedException {
+        ChallengeRegistry registry = new ChallengeRegistry(20);
+        Challenge answeredLate = new Challenge("user1", "user2");
+        Challenge neverAnswered = new Challenge("user3", "user4");
+        registry.register(answeredLate, USER2);
+        registry.register(neverAnswered, USER4);
+        Thread.sleep(50);
+
+        assertNull(registry.answer(answeredLate.getId(), USER2));
+        assertEquals(1, registry.getLate());
+        registry.purgeExpired();
+        assertEquals(1, registry.getExpired());
+        assertEquals(0, registry.getPending());
+        assertNull(registry.answer(neverAnswered.getId(), USER4));
+        assertEquals(1, registry.getUnknown());
+    }
+
+    @Test
+    void dropsResponsesFromOtherAddresses() {
+        ChallengeRegistry registry = new ChallengeRegistry(10000);
+        Challenge challenge = new Challenge("user1", "user2");
+        registry.register(challenge, USER2);
+
+        //another user cannot answer for the challenged one, whose response is still awaited
+        assertNull(registry.answer(challenge.getId(), USER4));
+        assertNull(registry.answer(challenge.getId(), new InetSocketAddress("127.0.0.2", USER2.getPort())));
+        assertEquals(2, registry.getUnknown());
+        assertEquals(1, registry.getPending());
+        assertSame(challenge, registry.answer(challenge.getId(), USER2));
+    }
+}
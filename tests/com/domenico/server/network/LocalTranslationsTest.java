@@ -0,0 +1,50 @@
+package com.domenico.server.network;
+
+import com.domenico.server.Dictionary;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalTranslationsTest {
+
+    private static LocalTranslations read(Dictionary dictionary, String text) throws IOException {
+        return LocalTranslations.read(dictionary, new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void translatesTheWordsById() throws IOException {
+        Dictionary dictionary = Dictionary.of(List.of("cane", "gatto", "città", "casa"));
+        LocalTranslations translations = read(dictionary,
+                "cane\tdog\n" +
+                "città\tcity\n" +
+                "\n" +
+                "senza traduzione\n" +          //malformed
+                "albero\ttree\n" +              //not in the dictionary
+                "gatto\tkitten\n" +
+                "gatto\tcat\n");                //the last line wins
+        assertEquals(3, translations.size());
+        assertArrayEquals(new String[]{"city", null, "dog", "cat"}, translations.translate(new int[]{2, 3, 0, 1}));
+        assertFalse(translations.isBlocking());
+    }
+
+    @Test
+    void findsEveryWordOfALargeDictionary() throws IOException {
+        List<String> words = new ArrayList<>();
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            words.add("parola" + i);
+            if (i % 3 != 0)
+                text.append("parola").append(i).append('\t').append("word").append(i).append('\n');
+        }
+        LocalTranslations translations = read(Dictionary.of(words), text.toString());
+        for (int id = 0; id < words.size(); id++) {
+            assertEquals(id % 3 != 0 ? "word" + id : null, translations.getTranslation(id));
+        }
+    }
+}
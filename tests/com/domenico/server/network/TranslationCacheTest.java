@@ -0,0 +1,208 @@
+package com.domenico.server.network;
+
+import com.domenico.server.Dictionary;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TranslationCacheTest {
+
+    private static final Dictionary DICTIONARY = Dictionary.of(List.of("cane", "gatto", "casa", "città"));
+
+    //A stub of the translation service, which translates each word w into w_en
+    private HttpServer service;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final List<String> queries = new ArrayList<>();
+    private Translations translations;
+    //When it is set, the service doesn't respond until it is opened
+    private volatile CountDownLatch gate;
+
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void startService() throws IOException {
+        service = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        service.setExecutor(Executors.newCachedThreadPool());
+        service.createContext("/get", exchange -> {
+            String query = exchange.getRequestURI().getQuery();
+            String words = query.substring(2, query.indexOf("&langpair"));
+            synchronized (queries) {
+                queries.add(words);
+            }
+            requests.incrementAndGet();
+            try {
+                if (gate != null)
+                    gate.await();
+            } catch (InterruptedException ignored) { }
+            String body = "{\"responseData\":{\"translatedText\":\"" + words.replace(". ", "_en. ") + "_en\"}}";
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        service.start();
+        translations = new Translations("http://localhost:" + service.getAddress().getPort() + "/get");
+    }
+
+    @AfterEach
+    void stopService() {
+        service.stop(0);
+    }
+
+    @Test
+    void asksTheServiceOnlyForTheMissingWords() throws IOException {
+        try (TranslationCache cache = new TranslationCache(translations, DICTIONARY, 100, null)) {
+            assertArrayEquals(new String[]{"cane_en", "gatto_en"}, cache.translate(List.of("cane", "gatto")));
+            assertArrayEquals(new String[]{"gatto_en", "casa_en", "cane_en"},
+                    cache.translate(List.of("gatto", "casa", "cane")));
+            assertEquals(2, requests.get());
+            assertEquals(List.of("cane. gatto", "casa"), queries);
+            assertEquals(2, cache.getMemoryHits());
+            assertEquals(3, cache.getMisses());
+
+            cache.translate(List.of("casa", "cane"));
+            assertEquals(2, requests.get());
+            assertEquals(4.0 / 7, cache.getHitRate(), 1e-9);
+        }
+    }
+
+    @Test
+    void servesTheTranslationsSavedOnDiskAfterARestart() throws IOException {
+        Path file = dir.resolve("translations.cache");
+        try (TranslationCache cache = new TranslationCache(translations, DICTIONARY, 100, file)) {
+            cache.translate(List.of("cane", "città"));
+        }
+        try (TranslationCache cache = new TranslationCache(translations, DICTIONARY, 100, file)) {
+            assertArrayEquals(new String[]{"città_en", "cane_en"}, cache.translate(new int[]{3, 0}));
+            assertEquals(2, cache.getDiskHits());
+            assertEquals(1, requests.get());
+            //the translations read from the disk are kept into memory
+            cache.translate(List.of("cane"));
+            assertEquals(1, cache.getMemoryHits());
+        }
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedTranslation() throws IOException {
+        try (TranslationCache cache = new TranslationCache(translations, DICTIONARY, 2, null)) {
+            cache.translate(List.of("uno", "due"));
+            cache.translate(List.of("uno"));
+            cache.translate(List.of("tre"));        //evicts "due", which has not been used since
+            cache.translate(List.of("uno"));
+            assertEquals(2, cache.getMemoryHits());
+            cache.translate(List.of("due"));
+            assertEquals(List.of("uno. due", "tre", "due"), queries);
+        }
+    }
+
+    @Test
+    void doesNotCacheTheFailedTranslations() throws IOException {
+        Translations unreachable = new Translations("http://localhost:" + service.getAddress().getPort() + "/none");
+        try (TranslationCache cache = new TranslationCache(unreachable, DICTIONARY, 100, dir.resolve("translations.cache"))) {
+            assertArrayEquals(new String[]{null, null}, cache.translate(List.of("cane", "gatto")));
+            cache.translate(List.of("cane"));
+            assertEquals(0, cache.getMemoryHits() + cache.getDiskHits());
+            assertEquals(3, cache.getMisses());
+        }
+    }
+
+    @Test
+    void releasesTheWaitersWhenTheRequestCannotBeSent() throws Exception {
+        //the URL is not valid, so the request fails before being sent
+        Translations invalid = new Translations("http://bad host/get");
+        try (TranslationCache cache = new TranslationCache(invalid, DICTIONARY, 100, null)) {
+            CompletableFuture<String[]> first = CompletableFuture.supplyAsync(
+                    () -> cache.translate(List.of("cane", "gatto")));
+            assertArrayEquals(new String[]{null, null}, first.get(5, TimeUnit.SECONDS));
+            //the failed words are not in flight anymore, so they are asked again
+            CompletableFuture<String[]> second = CompletableFuture.supplyAsync(() -> cache.translate(List.of("cane")));
+            assertArrayEquals(new String[]{null}, second.get(5, TimeUnit.SECONDS));
+            assertEquals(0, cache.getCoalesced());
+            assertEquals(2, cache.getRequests());
+            assertTrue(cache.toString().contains("inFlight=0"), cache.toString());
+        }
+    }
+
+    @Test
+    void prewarmsTheWholeDictionary() throws IOException {
+        List<String> words = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            words.add("parola" + i);
+        }
+        Path file = dir.resolve("translations.cache");
+        try (TranslationCache cache = new TranslationCache(translations, Dictionary.of(words), 100, file)) {
+            cache.prewarm();
+            assertEquals(3, requests.get());
+            assertArrayEquals(new String[]{"parola7_en"}, cache.translate(List.of("parola7")));
+            assertEquals(3, requests.get());
+        }
+        //after a restart only the words that are not on disk yet are translated
+        words.add("nuova");
+        try (TranslationCache cache = new TranslationCache(translations, Dictionary.of(words), 100, file)) {
+            cache.prewarm();
+            assertEquals(4, requests.get());
+            assertEquals("nuova", queries.get(3));
+        }
+    }
+
+    @Test
+    void sharesTheTranslationsInFlight() throws Exception {
+        gate = new CountDownLatch(1);
+        try (TranslationCache cache = new TranslationCache(translations, DICTIONARY, 100, null)) {
+            CompletableFuture<String[]> first = CompletableFuture.supplyAsync(
+                    () -> cache.translate(List.of("cane", "gatto")));
+            while (requests.get() < 1) {
+                Thread.sleep(5);
+            }
+            //"gatto" is already being translated, so only "casa" is asked
+            CompletableFuture<String[]> second = CompletableFuture.supplyAsync(
+                    () -> cache.translate(List.of("gatto", "casa")));
+            while (requests.get() < 2) {
+                Thread.sleep(5);
+            }
+            gate.countDown();
+            assertArrayEquals(new String[]{"cane_en", "gatto_en"}, first.get());
+            assertArrayEquals(new String[]{"gatto_en", "casa_en"}, second.get());
+            assertEquals(List.of("cane. gatto", "casa"), queries);
+            assertEquals(1, cache.getCoalesced());
+            assertEquals(3, cache.getMisses());
+        }
+    }
+
+    @Test
+    void splitsTheRequestsAtTheSizeLimitOfTheService() throws IOException {
+        List<String> words = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            words.add("parola" + i);
+        }
+        try (TranslationCache cache = new TranslationCache(translations, Dictionary.of(words), 100, null)) {
+            String[] enWords = cache.translate(words);
+            for (int i = 0; i < words.size(); i++) {
+                assertEquals("parola" + i + "_en", enWords[i]);
+            }
+            assertEquals(2, requests.get());
+            for (String query : queries) {
+                assertTrue(query.length() + 2 <= Translations.MAX_QUERY_LENGTH, query);
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.domenico.server.network;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TranslationsTest {
+
+    //A stub of the translation service, which answers with the given translation of each text
+    private HttpServer service;
+    private final Map<String, String> responses = new ConcurrentHashMap<>();
+    private final AtomicInteger requests = new AtomicInteger();
+    //The client's port of each request, which tells if the connection has been reused
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+    private volatile long delay = 0;
+    private String url;
+
+    @BeforeEach
+    void startService() throws IOException {
+        service = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        service.setExecutor(Executors.newCachedThreadPool());
+        service.createContext("/get", exchange -> {
+            requests.incrementAndGet();
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            String query = exchange.getRequestURI().getQuery();
+            String text = query.substring(2, query.indexOf("&langpair"));
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException ignored) { }
+            String body = responses.getOrDefault(text, "{\"responseData\":{\"translatedText\":\"\"}}");
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        service.start();
+        url = "http://localhost:" + service.getAddress().getPort() + "/get";
+    }
+
+    @AfterEach
+    void stopService() {
+        service.stop(0);
+    }
+
+    private void respond(String text, String translation) {
+        responses.put(text, "{\"responseData\":{\"translatedText\":\"" + translation + "\",\"match\":1}," +
+                "\"quotaFinished\":false,\"responseStatus\":200,\"matches\":[{\"translation\":\"ignored\"}]}");
+    }
+
+    @Test
+    void translatesAllTheWordsWithOneRequest() {
+        respond("cane. gatto. casa", "dog. cat. house.");
+        assertArrayEquals(new String[]{"dog", "cat", "house"},
+                new Translations(url).translate(List.of("cane", "gatto", "casa")));
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    void translatesEachWordWhenTheTranslationsAreMisaligned() {
+        //the translation of "ecc" has a period inside, so the sentence has one more word
+        respond("ecc. gatto", "etc. . cat");
+        respond("ecc", "etc.");
+        respond("gatto", "cat");
+        assertArrayEquals(new String[]{"etc", "cat"}, new Translations(url).translate(List.of("ecc", "gatto")));
+        assertEquals(3, requests.get());
+    }
+
+    @Test
+    void decodesTheEscapedCharacters() {
+        respond("perché", "why \\\"not\\\" \\u00e8");
+        assertArrayEquals(new String[]{"why \"not\" è"}, new Translations(url).translate(List.of("perché")));
+    }
+
+    @Test
+    void failedTranslationsAreNull() {
+        responses.put("cane", "{\"responseData\":{\"translatedText\":\"MYMEMORY WARNING: YOU USED ALL AVAILABLE " +
+                "FREE TRANSLATIONS FOR TODAY\"},\"responseStatus\":\"429\"}");
+        responses.put("gatto", "not json");
+        assertArrayEquals(new String[]{null}, new Translations(url).translate(List.of("cane")));
+        assertArrayEquals(new String[]{null}, new Translations(url).translate(List.of("gatto")));
+        assertArrayEquals(new String[]{null, null},
+                new Translations(url + "/none").translate(List.of("cane", "gatto")));
+    }
+
+    @Test
+    void reusesTheConnectionAfterSkippingTheMatches() {
+        StringBuilder matches = new StringBuilder("{\"translation\":\"ignored\"}");
+        for (int i = 0; i < 2000; i++) {
+            matches.append(",{\"translation\":\"ignored\",\"quality\":\"74\"}");
+        }
+        for (String[] pair : new String[][]{{"cane", "dog"}, {"gatto", "cat"}, {"casa", "house"}}) {
+            responses.put(pair[0], "{\"responseData\":{\"translatedText\":\"" + pair[1] + "\"}," +
+                    "\"responseStatus\":200,\"matches\":[" + matches + "]}");
+        }
+        Translations translations = new Translations(url);
+        assertArrayEquals(new String[]{"dog"}, translations.translate(List.of("cane")));
+        assertArrayEquals(new String[]{"cat"}, translations.translate(List.of("gatto")));
+        assertArrayEquals(new String[]{"house"}, translations.translate(List.of("casa")));
+        assertEquals(1, clientPorts.size(), "connections: " + clientPorts);
+    }
+
+    @Test
+    void givesUpAfterTheRequestTimeout() {
+        respond("cane", "dog");
+        delay = 2000;
+        long start = System.nanoTime();
+        assertArrayEquals(new String[]{null}, new Translations(url, 1000, 100).translate(List.of("cane")));
+        assertTrue(System.nanoTime() - start < 1_500_000_000L);
+    }
+}
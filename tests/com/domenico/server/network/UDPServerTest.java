@@ -0,0 +1,139 @@
+package com.domenico.server.network;
+
+import com.domenico.communication.ConnectionData;
+import com.domenico.communication.UDPConnection;
+import com.domenico.server.Challenge;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UDPServerTest {
+
+    private UDPServer server;
+    private InetSocketAddress serverAddress;
+    //The challenged user and someone else, both on the loopback address
+    private Client user;
+    private Client stranger;
+
+    /** A client which receives the datagrams of the server, waiting for them at most a given time */
+    private static class Client {
+        private final DatagramChannel channel;
+        private final UDPConnection connection;
+        private final Selector selector;
+
+        Client(InetSocketAddress serverAddress) throws IOException {
+            channel = DatagramChannel.open();
+            channel.bind(new InetSocketAddress("127.0.0.1", 0));
+            channel.configureBlocking(false);
+            selector = Selector.open();
+            channel.register(selector, SelectionKey.OP_READ);
+            connection = new UDPConnection(channel, serverAddress);
+        }
+
+        InetSocketAddress getAddress() throws IOException {
+            return (InetSocketAddress) channel.getLocalAddress();
+        }
+
+        /** Returns the next datagram or null if none arrives in the given milliseconds */
+        ConnectionData receive(long millis) throws IOException {
+            selector.selectedKeys().clear();
+            if (selector.select(millis) == 0)
+                return null;
+            return connection.receiveData();
+        }
+
+        void send(ConnectionData data) throws IOException {
+            connection.sendData(data);
+        }
+
+        void close() throws IOException {
+            selector.close();
+            channel.close();
+        }
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new UDPServer(0, 10000);
+        serverAddress = new InetSocketAddress("127.0.0.1", server.getPort());
+        new Thread(server, "test-udp-server").start();
+        user = new Client(serverAddress);
+        stranger = new Client(serverAddress);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.stopProcessing();
+        user.close();
+        stranger.close();
+    }
+
+    @Test
+    void sendsTheRequestAgainWithBackoffUntilItIsAcknowledged() throws Exception {
+        Challenge challenge = new Challenge("user1", "user2");
+        server.forwardChallenge(challenge, user.getAddress());
+
+        long[] arrivals = new long[3];
+        for (int i = 0; i < arrivals.length; i++) {
+            ConnectionData request = user.receive(2000);
+            assertNotNull(request);
+            assertEquals(challenge.getId(), request.getChallengeId());
+            arrivals[i] = System.nanoTime();
+        }
+        //the first retransmit waits 250 ms, the second one twice as long
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(arrivals[1] - arrivals[0]) >= 200);
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(arrivals[2] - arrivals[1]) >= 450);
+
+        user.send(ConnectionData.Factory.newChallengeAck(challenge.getId()));
+        assertNull(user.receive(1500));
+        assertEquals(2, server.getRetransmits());
+
+        //the client acks each copy of the request it receives, and the late copies are just counted
+        user.send(ConnectionData.Factory.newChallengeAck(challenge.getId()));
+        awaitEquals(1, server::getDuplicateAcks);
+        assertEquals(2, server.getRetransmits());
+    }
+
+    @Test
+    void takesTheAckAndTheResponseOnlyFromTheChallengedUser() throws Exception {
+        Challenge challenge = new Challenge("user1", "user2");
+        server.forwardChallenge(challenge, user.getAddress());
+        assertNotNull(user.receive(2000));
+
+        stranger.send(ConnectionData.Factory.newChallengeAck(challenge.getId()));
+        stranger.send(ConnectionData.Factory.newChallengeResponse(challenge.getId(), true));
+        awaitEquals(1, server::getUnknownResponses);
+        assertEquals(1, server.getUnknownAcks());
+        assertFalse(challenge.isRequestAccepted());
+        //the request is still waiting for the challenged user's ack
+        assertNotNull(user.receive(2000));
+
+        user.send(ConnectionData.Factory.newChallengeResponse(challenge.getId(), true));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (!challenge.isRequestAccepted() && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(challenge.isRequestAccepted());
+        //the response acknowledges the request as well
+        assertNull(user.receive(1200));
+    }
+
+    /** Waits up to two seconds for the given counter to reach the expected value */
+    private static void awaitEquals(long expected, LongSupplier counter) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (counter.getAsLong() != expected && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(expected, counter.getAsLong());
+    }
+}
@@ -0,0 +1,118 @@
+package com.domenico.server.network;
+
+import com.domenico.server.Dictionary;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WordSetPoolTest {
+
+    private static final Dictionary DICTIONARY;
+    static {
+        List<String> words = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            words.add("parola" + i);
+        }
+        DICTIONARY = Dictionary.of(words);
+    }
+
+    /** Translates each word with id n into "word n" and counts the calls */
+    private static TranslationProvider counting(AtomicInteger calls) {
+        return ids -> {
+            calls.incrementAndGet();
+            String[] enWords = new String[ids.length];
+            for (int i = 0; i < ids.length; i++) {
+                enWords[i] = "word " + ids[i];
+            }
+            return enWords;
+        };
+    }
+
+    private static void waitReady(WordSetPool pool, int count) throws InterruptedException {
+        for (int i = 0; i < 200 && pool.getReady() < count; i++) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void keepsTheSetsReadyAndCountsStarvation() throws InterruptedException {
+        AtomicInteger calls = new AtomicInteger();
+        WordSetPool pool = new WordSetPool(DICTIONARY, counting(calls), 8, 3, 0);
+        pool.start();
+        try {
+            waitReady(pool, 3);
+            assertEquals(3, pool.getReady());
+            WordSetPool.WordSet wordSet = pool.poll();
+            assertEquals(8, wordSet.getIds().length);
+            for (int i = 0; i < 8; i++) {
+                assertEquals("word " + wordSet.getIds()[i], wordSet.getTranslations()[i]);
+            }
+            //taking the sets faster than they are made leaves the pool empty
+            pool.stop();
+            while (pool.poll() != null);
+            assertEquals(1, pool.getStarved());
+            assertTrue(pool.getTaken() >= 3);
+        } finally {
+            pool.stop();
+        }
+    }
+
+    @Test
+    void refillsAtTheGivenRate() throws InterruptedException {
+        AtomicInteger calls = new AtomicInteger();
+        WordSetPool pool = new WordSetPool(DICTIONARY, counting(calls), 8, 10, 100);
+        pool.start();
+        try {
+            Thread.sleep(250);
+            assertTrue(calls.get() <= 3, calls.get() + " sets made in 250 ms");
+        } finally {
+            pool.stop();
+        }
+    }
+
+    @Test
+    void neverPoolsTheSetsWithoutTranslations() throws InterruptedException {
+        WordSetPool pool = new WordSetPool(DICTIONARY, ids -> new String[0], 8, 3, 0);
+        pool.start();
+        try {
+            Thread.sleep(50);
+            assertNull(pool.poll());
+            //a set made when needed has the missing translations set to null
+            assertArrayEquals(new String[8], pool.generate().getTranslations());
+        } finally {
+            pool.stop();
+        }
+    }
+
+    @Test
+    void keepsRefillingAfterTheProviderThrows() throws InterruptedException {
+        AtomicInteger calls = new AtomicInteger();
+        TranslationProvider translations = counting(calls);
+        WordSetPool pool = new WordSetPool(DICTIONARY, ids -> {
+            if (calls.get() == 0 && calls.incrementAndGet() == 1)
+                throw new IllegalStateException("service down");
+            return translations.translate(ids);
+        }, 8, 1, 0);
+        pool.start();
+        try {
+            //the set is made again after the failure backoff
+            waitReady(pool, 1);
+            assertEquals(1, pool.getReady());
+            assertTrue(pool.toString().contains("incomplete=1"), pool.toString());
+        } finally {
+            pool.stop();
+        }
+    }
+
+    @Test
+    void aDisabledPoolIsNeverStarved() {
+        WordSetPool pool = new WordSetPool(DICTIONARY, counting(new AtomicInteger()), 8, 0, 0);
+        pool.start();
+        assertNull(pool.poll());
+        assertEquals(0, pool.getStarved());
+    }
+}
@@ -0,0 +1,121 @@
+package com.domenico.shared;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AsyncLogWriterTest {
+
+    @Test
+    void writesInOrderFromManyThreads() throws InterruptedException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AsyncLogWriter writer = new AsyncLogWriter(out, 1024);
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            Logger log = new Logger("T" + t, writer);
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 200; i++) {
+                    log.info("message %d", i);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        writer.close();
+
+        assertEquals(0, writer.getDropped());
+        String[] lines = out.toString(StandardCharsets.UTF_8).split(System.lineSeparator());
+        assertEquals(800, lines.length);
+        int[] next = new int[threads.length];
+        for (String line : lines) {
+            int t = line.charAt(line.indexOf("[T") + 2) - '0';
+            assertTrue(line.endsWith("]: message " + next[t]), line);
+            next[t]++;
+        }
+    }
+
+    @Test
+    void writesWhatIsLoggedBeforeClosing() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AsyncLogWriter writer = new AsyncLogWriter(out, 16);
+        Logger log = new Logger("test", writer);
+        writer.runBeforeClose(() -> log.info("final statistics"));
+        writer.close();
+        log.info("after closing");
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split(System.lineSeparator());
+        assertEquals(1, lines.length);
+        assertTrue(lines[0].endsWith("INFO  [test]: final statistics"), lines[0]);
+    }
+
+    @Test
+    void skipsDisabledLevelsWithoutFormatting() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AsyncLogWriter writer = new AsyncLogWriter(out, 16);
+        Logger log = new Logger("test", writer);
+        Object neverFormatted = new Object() {
+            @Override
+            public String toString() {
+                throw new AssertionError("A disabled message has been formatted");
+            }
+        };
+        log.debug("%s", neverFormatted);
+        writer.setLevel(Logger.Level.OFF);
+        log.error("%s", neverFormatted);
+        writer.setLevel(Logger.Level.DEBUG);
+        log.debug("%s and %s", "one", 2);
+        log.warn("not a format: 100%");
+        writer.close();
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split(System.lineSeparator());
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].endsWith("DEBUG [test]: one and 2"), lines[0]);
+        assertTrue(lines[1].endsWith("WARN  [test]: not a format: 100%"), lines[1]);
+    }
+
+    @Test
+    void dropsWhenFullInsteadOfBlocking() throws InterruptedException {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        OutputStream slowOut = new OutputStream() {
+            @Override
+            public void write(int b) {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                writing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ignored) {}
+                written.write(b, off, len);
+            }
+        };
+        AsyncLogWriter writer = new AsyncLogWriter(slowOut, 4);
+        Logger log = new Logger("test", writer);
+        log.info("first");
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+        //the writer thread is stuck on the output, so only the ring buffer's capacity can be logged
+        for (int i = 0; i < 10; i++) {
+            log.info("message %d", i);
+        }
+        assertEquals(6, writer.getDropped());
+        release.countDown();
+        writer.close();
+
+        String output = written.toString(StandardCharsets.UTF_8);
+        assertTrue(output.contains("message 3"), output);
+        assertFalse(output.contains("message 4"), output);
+        assertTrue(output.contains("6 messages dropped"), output);
+    }
+}
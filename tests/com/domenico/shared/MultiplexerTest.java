@@ -0,0 +1,70 @@
+package com.domenico.shared;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MultiplexerTest {
+
+    private Loop loop;
+
+    /** A multiplexer without channels, which just runs the tasks */
+    private static class Loop extends Multiplexer {
+        Loop() throws IOException {
+            super();
+        }
+
+        @Override
+        protected void onTimeout() {}
+
+        @Override
+        protected void onAcceptable(SelectionKey key) {}
+
+        @Override
+        protected void onReadable(SelectionKey key) {}
+
+        @Override
+        protected void onWritable(SelectionKey key) {}
+
+        @Override
+        protected void onEndConnection(SelectionKey key) {}
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        loop = new Loop();
+        new Thread(loop::startProcessing, "test-loop").start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        loop.stopProcessing();
+    }
+
+    @Test
+    void runsScheduledTasksInDeadlineOrder() throws InterruptedException {
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(3);
+        long start = System.nanoTime();
+        loop.execute(() -> {
+            loop.schedule(() -> { order.add("late"); done.countDown(); }, 60);
+            loop.schedule(() -> { order.add("first"); done.countDown(); }, 20);
+            loop.schedule(() -> { order.add("second"); done.countDown(); }, 20);
+            loop.schedule(() -> order.add("cancelled"), 40).cancel();
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(60));
+        Thread.sleep(50);
+        assertEquals(List.of("first", "second", "late"), order);
+    }
+}
@@ -0,0 +1,70 @@
+package com.domenico.shared;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Measures how long it takes to choose the distinct random ids of a challenge with {@link RandomSampler}, compared
+ * with drawing random ids until they are all different, which is how the words were chosen before. The JMH harness is
+ * not part of the build, so each case is warmed up and then timed in a loop. It is not a test, it should be run with
+ * its main method after compiling the tests.
+ * Usage: RandomSamplerBenchmark [dictionary size]
+ */
+public class RandomSamplerBenchmark {
+
+    private static final int DEFAULT_DICTIONARY_SIZE = 1_000_000;
+    private static final int[] COUNTS = {8, 64, 1024, 16384};
+    //The samples of each case that are not measured, so that the code is compiled by the JIT
+    private static final long WARMUP_NANOS = 1_000_000_000L;
+    private static final long MEASURE_NANOS = 2_000_000_000L;
+
+    //Keeps the results alive, so that the JIT cannot remove the measured code
+    private static long sink;
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_DICTIONARY_SIZE;
+        System.out.printf("%-10s %8s %14s%n", "sampler", "count", "ns/sample");
+        for (int count : COUNTS) {
+            int[] dest = new int[count];
+            System.out.printf("%-10s %8d %14.1f%n", "floyd", count, measure(() -> RandomSampler.sample(size, count, dest), dest));
+            System.out.printf("%-10s %8d %14.1f%n", "rejection", count, measure(() -> rejection(size, count, dest), dest));
+        }
+        System.out.println(sink == 42 ? "" : "done");
+    }
+
+    /** Returns the mean nanoseconds of a sample, after warming it up */
+    private static double measure(Runnable sample, int[] dest) {
+        run(sample, dest, WARMUP_NANOS);
+        long start = System.nanoTime();
+        long samples = run(sample, dest, MEASURE_NANOS);
+        return (double) (System.nanoTime() - start) / samples;
+    }
+
+    /** Runs the sample for at least the given time and returns how many times it has run */
+    private static long run(Runnable sample, int[] dest, long nanos) {
+        long end = System.nanoTime() + nanos;
+        long samples = 0;
+        do {
+            for (int i = 0; i < 100; i++) {
+                sample.run();
+                sink += dest[0];
+            }
+            samples += 100;
+        } while (System.nanoTime() < end);
+        return samples;
+    }
+
+    /** The previous way: random ids are drawn and each one is compared with those already chosen */
+    private static void rejection(int bound, int count, int[] dest) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int i = 0;
+        while (i < count) {
+            int value = random.nextInt(bound);
+            boolean found = false;
+            for (int j = 0; j < i && !found; j++) {
+                found = dest[j] == value;
+            }
+            if (!found)
+                dest[i++] = value;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.domenico.shared;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RandomSamplerTest {
+
+    @Test
+    void choosesDistinctValuesInRange() {
+        for (int count : new int[]{0, 1, 8, 100, 5000}) {
+            int[] values = RandomSampler.sample(1_000_000, count);
+            assertEquals(count, values.length);
+            assertEquals(count, Arrays.stream(values).distinct().count());
+            assertTrue(Arrays.stream(values).allMatch(v -> v >= 0 && v < 1_000_000));
+        }
+        //the whole range is a permutation
+        int[] all = RandomSampler.sample(1000, 1000);
+        Arrays.sort(all);
+        for (int i = 0; i < all.length; i++) {
+            assertEquals(i, all[i]);
+        }
+        assertThrows(IllegalArgumentException.class, () -> RandomSampler.sample(5, 6));
+    }
+
+    @Test
+    void everyValueIsEquallyLikely() {
+        int bound = 10, count = 3, samples = 100_000;
+        int[] hits = new int[bound];
+        int[] firstHits = new int[bound];
+        int[] dest = new int[count];
+        for (int i = 0; i < samples; i++) {
+            RandomSampler.sample(bound, count, dest);
+            for (int value : dest) {
+                hits[value]++;
+            }
+            firstHits[dest[0]]++;
+        }
+        //each value is expected 30000 times, and 10000 times in the first position
+        for (int value = 0; value < bound; value++) {
+            assertEquals(samples * count / bound, hits[value], samples * count / bound / 20.0);
+            assertEquals(samples / bound, firstHits[value], samples / bound / 10.0);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.domenico.shared;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SerialExecutorTest {
+
+    private static final int TASKS = 1000;
+
+    private ExecutorService pool;
+
+    @BeforeEach
+    void setUp() {
+        pool = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void runsInOrderWithoutOverlapping() throws InterruptedException {
+        SerialExecutor executor = new SerialExecutor(pool);
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger running = new AtomicInteger(0);
+        CountDownLatch done = new CountDownLatch(TASKS);
+        for (int i = 0; i < TASKS; i++) {
+            int task = i;
+            executor.execute(() -> {
+                assertEquals(1, running.incrementAndGet());
+                order.add(task);
+                running.decrementAndGet();
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < TASKS; i++) {
+            assertEquals(i, order.get(i));
+        }
+    }
+
+    @Test
+    void executorsShareThePool() throws InterruptedException {
+        //the first executor blocks its thread, the second one must still make progress
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        new SerialExecutor(pool).execute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException ignored) {}
+        });
+        new SerialExecutor(pool).execute(done::countDown);
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        release.countDown();
+    }
+}
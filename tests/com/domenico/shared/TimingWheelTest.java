@@ -0,0 +1,60 @@
+package com.domenico.shared;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimingWheelTest {
+
+    private TimingWheel wheel;
+
+    @BeforeEach
+    void setUp() {
+        //a small wheel, so that the tasks below wait more than one turn
+        wheel = new TimingWheel(5, 4, "test-wheel");
+    }
+
+    @AfterEach
+    void tearDown() {
+        wheel.close();
+    }
+
+    @Test
+    void runsTasksInOrderAndNeverEarly() throws InterruptedException {
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(3);
+        long start = System.nanoTime();
+        wheel.schedule(() -> { order.add("late"); done.countDown(); }, 80);
+        wheel.schedule(() -> { order.add("first"); done.countDown(); }, 10);
+        wheel.schedule(() -> { order.add("second"); done.countDown(); }, 40);
+        assertEquals(3, wheel.getPending());
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(80));
+        assertEquals(List.of("first", "second", "late"), order);
+        assertEquals(0, wheel.getPending());
+    }
+
+    @Test
+    void cancelledTasksNeverRun() throws InterruptedException {
+        CountDownLatch ran = new CountDownLatch(1);
+        TimingWheel.Timeout cancelled = wheel.schedule(() -> fail("A cancelled task has run"), 20);
+        TimingWheel.Timeout kept = wheel.schedule(ran::countDown, 30);
+        assertTrue(cancelled.cancel());
+        assertFalse(cancelled.cancel());
+        assertEquals(1, wheel.getPending());
+
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+        assertFalse(kept.cancel());
+        Thread.sleep(20);
+        assertEquals(0, wheel.getPending());
+    }
+}